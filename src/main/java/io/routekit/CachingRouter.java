@@ -0,0 +1,259 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import io.routekit.util.MutableCharArray;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@link Router} with the cache of the routing results in front of it, for the skewed traffic where
+ * a few concrete inputs (e.g. {@code /user/123456}) make up most of the requests.
+ * The cache is keyed by the input chars and holds the matched handler and the variable offsets,
+ * so a hit skips the state machine and fills the {@link MatchHolder} without allocating anything.
+ * <p>
+ * The lookup is a single {@link ConcurrentHashMap} read, a hit only sets the reference bit of the entry.
+ * The entries are evicted by CLOCK (second chance): when the estimated size of the entries exceeds the byte
+ * budget, the entries are scanned in the insertion order, the referenced ones have the bit cleared and are moved
+ * to the end, the rest are removed. The eviction is done by the inserting thread under the lock, so the budget
+ * may be exceeded by the entries inserted concurrently with the eviction.
+ * <p>
+ * The long tail of the inputs seen once would only churn the cache, hence an input is admitted on its second miss:
+ * the first one is recorded in the doorkeeper bitset (same as in TinyLFU), which is cleared periodically.
+ * <p>
+ * The cache pays off when the hot inputs fit the budget: with the long tail of the distinct inputs, a miss
+ * costs the lookup on top of the routing, and both are bound by the memory access.
+ * <p>
+ * Optionally, the misses are cached instead or as well (same admission and eviction, see {@link Mode}),
+ * so the repeated unroutable inputs, e.g. from the scanners, are rejected by the lookup. Unlike a Bloom filter, the set of misses is exact:
+ * a false positive would reject the routable input. See also {@link RouterBuilder#setRejectDeadPrefixes}.
+ * <p>
+ * The routing is assumed to depend only on the input (true for the built-in tokens).
+ * The cache is bound to the router: a new one is created when the rules change (e.g. with {@link ReloadableRouter}).
+ *
+ * @param <T> handler type
+ */
+public final class CachingRouter<T> {
+    // The estimated bytes per entry besides the key chars and the offsets: the entry, the key view,
+    // the arrays headers, the hash map and the queue nodes (with the compressed oops).
+    private static final int ENTRY_OVERHEAD = 32 + 24 + 16 + 16 + 32 + 24;
+    private static final int[] NO_OFFSETS = new int[0];
+
+    private final Router<T> router;
+    private final long maxBytes;
+    private final boolean cacheMatches;
+    private final boolean cacheMisses;
+    private final ConcurrentHashMap<CharArray, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<T>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final ReentrantLock evictLock = new ReentrantLock();
+    private final long[] doorkeeper;
+    private int doorkeeperAdds = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingRouter(Router<T> router, long maxBytes) {
+        this(router, maxBytes, Mode.MATCHES);
+    }
+
+    public CachingRouter(Router<T> router, long maxBytes, Mode mode) {
+        if (maxBytes <= 0) {
+            throw new RouteException("The cache size must be positive: %d bytes".formatted(maxBytes));
+        }
+        this.router = router;
+        this.maxBytes = maxBytes;
+        this.cacheMatches = mode != Mode.MISSES;
+        this.cacheMisses = mode != Mode.MATCHES;
+        // About 8 bits per entry of the average size, the entries are at least ENTRY_OVERHEAD bytes
+        this.doorkeeper = new long[(int) Math.min(Long.highestOneBit(Math.max(maxBytes / 128, 64)), 1 << 24)];
+    }
+
+    public Router<T> router() {
+        return router;
+    }
+
+    public Match<T> routeOrNull(String input) {
+        return routeOrNull((CharSequence) input);
+    }
+
+    public Match<T> routeOrNull(CharSequence input) {
+        MatchHolder<T> holder = MatchHolder.borrowLocal();
+        try {
+            CharArray view = holder.view(input);
+            MutableCharArray array = holder.reset(view);
+            Entry<T> entry = lookup(holder);
+            if (entry != null) {
+                // Shares the immutable entry
+                return entry.handler != null ? new Match<>(entry.handler, entry.schema, entry.key, entry.offsets) : null;
+            }
+            return routeAndCache(view, array, holder) ? holder.toMatchOrNull() : null;
+        } finally {
+            holder.giveBack();
+        }
+    }
+
+    /**
+     * Same as {@link Router#routeInto(CharArray, MatchHolder)}, the cache hit doesn't allocate anything.
+     */
+    public boolean routeInto(CharArray input, MatchHolder<T> out) {
+        MutableCharArray array = out.reset(input);
+        Entry<T> entry = lookup(out);
+        if (entry != null) {
+            if (entry.handler == null) {
+                return false;  // the cached miss
+            }
+            int[] offsets = entry.offsets;
+            for (int i = 0; i < offsets.length; i += 2) {
+                out.addVariable(offsets[i], offsets[i + 1]);
+            }
+            out.setMatch(entry.handler, entry.schema);
+            return true;
+        }
+        return routeAndCache(input, array, out);
+    }
+
+    public boolean routeInto(CharSequence input, MatchHolder<T> out) {
+        return routeInto(out.view(input), out);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of the cached entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated size of the cached entries in bytes.
+     */
+    public long estimatedBytes() {
+        return bytes.get();
+    }
+
+    // Looks up the input the holder is reset to: the input is hashed once for the lookup, the constant index
+    // and the admission (see `MatchHolder.inputHash`).
+    private Entry<T> lookup(MatchHolder<T> holder) {
+        Entry<T> entry = entries.get(holder.hashedInput());
+        if (entry != null) {
+            if (!entry.referenced) {
+                entry.referenced = true;  // a racy write is fine: the bit is a hint
+            }
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    private boolean routeAndCache(CharArray input, MutableCharArray array, MatchHolder<T> out) {
+        if (!router.routeReset(input, array, out)) {
+            if (cacheMisses && admit(out.inputHash())) {
+                cache(input, null, VariableSchema.EMPTY, NO_OFFSETS);
+            }
+            return false;
+        }
+        if (cacheMatches && admit(out.inputHash())) {
+            int[] offsets = new int[2 * out.size()];
+            for (int i = 0; i < out.size(); i++) {
+                offsets[2 * i] = out.start(i);
+                offsets[2 * i + 1] = out.end(i);
+            }
+            cache(input, out.handler(), out.schema(), offsets);
+        }
+        return true;
+    }
+
+    // The `handler` is null for the miss.
+    private void cache(CharArray input, T handler, VariableSchema schema, int[] offsets) {
+        long size = ENTRY_OVERHEAD + 2L * input.length() + 4L * offsets.length;
+        if (size > maxBytes) {
+            return;
+        }
+        // Note: the key is copied, the input may be the caller's mutable buffer or the scratch
+        Entry<T> entry = new Entry<>(new CharArray((CharSequence) input), handler, schema, offsets, size);
+        if (entries.putIfAbsent(entry.key, entry) == null) {
+            clock.offer(entry);
+            if (bytes.addAndGet(size) > maxBytes) {
+                evict();
+            }
+        }
+    }
+
+    // Returns true if the input of the `hash` has been seen since the last reset, otherwise records it.
+    // Note: the doorkeeper is updated racily: a lost bit only delays the admission.
+    private boolean admit(int hash) {
+        int bit = (hash ^ (hash >>> 16)) & (64 * doorkeeper.length - 1);
+        long mask = 1L << bit;
+        if ((doorkeeper[bit >>> 6] & mask) != 0) {
+            return true;
+        }
+        doorkeeper[bit >>> 6] |= mask;
+        if (++doorkeeperAdds >= 16 * doorkeeper.length) {  // a quarter of the bits
+            doorkeeperAdds = 0;
+            Arrays.fill(doorkeeper, 0);
+        }
+        return false;
+    }
+
+    private void evict() {
+        if (!evictLock.tryLock()) {
+            return;  // the concurrent eviction frees the space
+        }
+        try {
+            // The referenced entries lose the bit, so the scan ends unless they are all hit again meanwhile
+            while (bytes.get() > maxBytes) {
+                Entry<T> entry = clock.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.offer(entry);
+                } else {
+                    entries.remove(entry.key, entry);
+                    bytes.addAndGet(-entry.bytes);
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    /**
+     * The routing results to cache.
+     */
+    public enum Mode {
+        MATCHES,
+        MISSES,
+        ALL
+    }
+
+    private static final class Entry<T> {
+        private final CharArray key;
+        private final T handler;  // null for the miss
+        private final VariableSchema schema;
+        private final int[] offsets;
+        private final long bytes;
+        private volatile boolean referenced;  // volatile for the visibility to the evicting thread
+
+        private Entry(CharArray key, T handler, VariableSchema schema, int[] offsets, long bytes) {
+            this.key = key;
+            this.handler = handler;
+            this.schema = schema;
+            this.offsets = offsets;
+            this.bytes = bytes;
+        }
+    }
+}
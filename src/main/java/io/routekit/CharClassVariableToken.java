@@ -0,0 +1,216 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.util.Arrays;
+
+/**
+ * A variable constrained by the char class, e.g. {@code {slug:[a-z0-9-]+}} or {@code {hex:hex}}: matches
+ * the allowed chars until the first disallowed one or the {@code separator}, and the rule continues from there
+ * (e.g. {@code /{id:[0-9]+}.json}). The variable doesn't match if the first char is disallowed, so the input falls
+ * through to the sibling rules, and the navigation backtracks to the siblings if the rest of the rule fails.
+ * <p>
+ * The class is compiled when parsed: the allowed ASCII chars are the 128-bit bitmap, the non-ASCII chars are checked
+ * against the sorted ranges (see {@link #isAllowed}), so the matching is a single scan without the regex.
+ * The UTF-8 input is scanned as is while it's ASCII, the non-ASCII bytes are decoded.
+ * <p>
+ * The class syntax: {@code [...]} of the chars and the {@code a-z} ranges, negated by the leading {@code ^},
+ * optionally followed by {@code +}. The {@code \} escapes the next char. The named classes are listed in {@link #named}.
+ * The separator is never allowed.
+ */
+public final class CharClassVariableToken extends Variable implements Token {
+    private final String constraint;
+    private final char separator;
+    private final long low;       // the allowed chars 0-63
+    private final long high;      // the allowed chars 64-127
+    private final char[] ranges;  // the non-ASCII [from, to] pairs, sorted and disjoint
+    private final boolean negated;
+
+    private CharClassVariableToken(String name, String constraint, char separator, long low, long high,
+                                   char[] ranges, boolean negated) {
+        super(name);
+        this.constraint = constraint;
+        this.separator = separator;
+        this.low = separator < 64 ? low & ~(1L << separator) : low;
+        this.high = separator >= 64 && separator < 128 ? high & ~(1L << separator) : high;
+        this.ranges = ranges;
+        this.negated = negated;
+    }
+
+    /**
+     * Returns the variable of the {@code constraint} class: either {@code [...]} or one of the {@link #named} classes.
+     *
+     * @throws QueryParseException if the class is malformed or unknown
+     */
+    public static CharClassVariableToken of(String name, String constraint, char separator) {
+        return of(name, constraint, separator, "{%s:%s}".formatted(name, constraint));
+    }
+
+    public static CharClassVariableToken of(String name, String constraint) {
+        return of(name, constraint, SimpleQueryParser.DEFAULT_SEPARATOR);
+    }
+
+    // Same as above, the errors refer to the parsed `query`.
+    /*package*/ static CharClassVariableToken of(String name, String constraint, char separator, CharSequence query) {
+        String pattern = named(constraint);
+        if (pattern == null) {
+            pattern = constraint;
+        }
+        int end = pattern.endsWith("+") ? pattern.length() - 1 : pattern.length();
+        if (end < 2 || pattern.charAt(0) != '[' || pattern.charAt(end - 1) != ']' || isEscaped(pattern, end - 1)) {
+            throw new QueryParseException("Unknown variable class `%s`: %s".formatted(constraint, query));
+        }
+        int from = 1;
+        boolean negated = end > 2 && pattern.charAt(1) == '^';
+        if (negated) {
+            from++;
+        }
+
+        long low = 0;
+        long high = 0;
+        StringBuilder ranges = new StringBuilder();
+        for (int i = from; i < end - 1; i++) {
+            char first = pattern.charAt(i);
+            if (first == '\\') {
+                first = pattern.charAt(++i);
+            }
+            char last = first;
+            if (i + 2 < end - 1 && pattern.charAt(i + 1) == '-') {
+                i += 2;
+                last = pattern.charAt(i);
+                if (last == '\\' && i + 1 < end - 1) {
+                    last = pattern.charAt(++i);
+                }
+                if (last < first) {
+                    throw new QueryParseException("Invalid range `%c-%c` in the variable class `%s`: %s"
+                                                  .formatted(first, last, constraint, query));
+                }
+            }
+            for (int ch = first; ch <= Math.min(last, 127); ch++) {
+                if (ch < 64) {
+                    low |= 1L << ch;
+                } else {
+                    high |= 1L << ch;
+                }
+            }
+            if (last >= 128) {
+                ranges.append((char) Math.max(first, 128)).append(last);
+            }
+        }
+        if (low == 0 && high == 0 && ranges.isEmpty() && !negated) {
+            throw new QueryParseException("Empty variable class `%s`: %s".formatted(constraint, query));
+        }
+        if (negated) {
+            low = ~low;
+            high = ~high;
+        }
+        return new CharClassVariableToken(name, constraint, separator, low, high, mergeRanges(ranges), negated);
+    }
+
+    /**
+     * Returns the pattern of the named class or null if there's no such class:
+     * {@code alpha}, {@code digit}, {@code alnum} and {@code hex} (ASCII only, in either case).
+     */
+    public static String named(String name) {
+        return switch (name) {
+            case "alpha" -> "[a-zA-Z]";
+            case "digit" -> "[0-9]";
+            case "alnum" -> "[a-zA-Z0-9]";
+            case "hex" -> "[0-9a-fA-F]";
+            default -> null;
+        };
+    }
+
+    @Override
+    public int match(CharArray charArray) {
+        int length = charArray.length();
+        for (int i = 0; i < length; i++) {
+            if (!isAllowed(charArray.charAt(i))) {
+                return handleEmptyMatch(i);  // match until the disallowed char or separator
+            }
+        }
+        return handleEmptyMatch(length);
+    }
+
+    @Override
+    public int match(ByteArray byteArray) {
+        int length = byteArray.length();
+        for (int i = 0; i < length; i++) {
+            int b = byteArray.at(i);
+            if (b >= 128) {
+                return Token.super.match(byteArray);  // decodes the non-ASCII chars
+            }
+            if (((b < 64 ? low : high) >>> b & 1) == 0) {
+                return handleEmptyMatch(i);
+            }
+        }
+        return handleEmptyMatch(length);
+    }
+
+    /**
+     * Returns true if the {@code ch} belongs to the class (the separator never does).
+     */
+    public boolean isAllowed(char ch) {
+        if (ch < 128) {
+            return ((ch < 64 ? low : high) >>> ch & 1) != 0;  // the shift takes the lower 6 bits
+        }
+        return ch != separator && isInRanges(ch) != negated;
+    }
+
+    public char separator() {
+        return separator;
+    }
+
+    @Override
+    public String constraint() {
+        return constraint;
+    }
+
+    @Override
+    public String toString() {
+        return "CharClassVariableToken[%s:%s]".formatted(name(), constraint);
+    }
+
+    private boolean isInRanges(char ch) {
+        // Binary search of the last range starting at or before `ch`
+        int lo = 0;
+        int hi = ranges.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ranges[2 * mid] <= ch) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi >= 0 && ch <= ranges[2 * hi + 1];
+    }
+
+    private static char[] mergeRanges(CharSequence pairs) {
+        int count = pairs.length() / 2;
+        int[][] sorted = new int[count][];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = new int[] { pairs.charAt(2 * i), pairs.charAt(2 * i + 1) };
+        }
+        Arrays.sort(sorted, (lhs, rhs) -> Integer.compare(lhs[0], rhs[0]));
+        StringBuilder merged = new StringBuilder();
+        for (int[] range : sorted) {
+            int last = merged.length() - 1;
+            if (last > 0 && range[0] <= merged.charAt(last) + 1) {
+                merged.setCharAt(last, (char) Math.max(merged.charAt(last), range[1]));
+            } else {
+                merged.append((char) range[0]).append((char) range[1]);
+            }
+        }
+        return merged.toString().toCharArray();
+    }
+
+    private static boolean isEscaped(String pattern, int index) {
+        int slashes = 0;
+        while (index - slashes - 1 >= 0 && pattern.charAt(index - slashes - 1) == '\\') {
+            slashes++;
+        }
+        return slashes % 2 == 1;
+    }
+}
@@ -0,0 +1,457 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * A lookup structure over the children of the {@link Router.Node}, which avoids probing every child on each step.
+ * <p>
+ * The {@link ConstToken} children are sorted by their buffers, so that the children with the same first char
+ * form a contiguous range. The ranges for ASCII chars are stored in a dense table (for the nodes with many children),
+ * the rest is found by binary search. Within the range, the longest const prefix of the input is found by a binary search
+ * as well, so the cost doesn't grow linearly with the fan-out.
+ * <p>
+ * Any two matching const children are prefixes of each other, hence the longest const match is unique.
+ * All other children (variables, wildcards, custom tokens) are the fallback and are probed unless the const match
+ * is decided (see {@link #isDecided}). Since the keys are sorted, the key that isn't a prefix of the next one
+ * can't be extended by a longer match, so the linear search stops at it.
+ * <p>
+ * Optionally, the hits of the children are counted (see {@link #withHits}), and the hottest keys are probed
+ * before the search in the dispatch rebuilt from the counts (see {@link #withHotKeys}).
+ * <p>
+ * The same lookup is maintained for the UTF-8 encoded keys, which is used for routing the bytes.
+ * <p>
+ * The node with a constrained variable child (see {@link Variable#constraint()}) and the siblings is backtracking:
+ * if the rest of the rule fails after the greedy choice, the navigation tries the other matching children.
+ */
+/*package*/ final class ChildDispatch {
+    private static final int[] NONE = new int[0];
+    private static final int[] FIRST = { 0 };
+    private static final boolean[] NOT_EXTENDED = { false };
+    private static final ChildDispatch EMPTY =
+            new ChildDispatch(new CharArray[0], NONE, null, NOT_EXTENDED, new ByteArray[0], NONE, null, NOT_EXTENDED, NONE, null, false);
+    private static final int ASCII = 128;
+    private static final int DENSE_MIN_SIZE = 8;
+    private static final int LINEAR_MAX_SIZE = 4;
+    private static final int MAX_HOT_KEYS = 4;
+    private static final int MIN_HOT_SHARE = 8;  // the hot key has at least 1/8 of the hits of the node
+
+    private final CharArray[] keys;     // sorted const buffers
+    private final int[] indexes;        // the index of the child in `Node.next` for each key
+    private final int[] asciiRanges;    // the start of the range for each ASCII char (null if not dense)
+    private final boolean[] extended;   // the key is a prefix of the next one
+    private final ByteArray[] byteKeys; // sorted UTF-8 const buffers (the order may differ from chars)
+    private final int[] byteIndexes;
+    private final int[] byteAsciiRanges;
+    private final boolean[] byteExtended;
+    private final int[] fallback;       // the indexes of the other children in `Node.next`
+    private final boolean[] decisive;   // by the child index: no fallback can match longer (null if no fallback)
+    private final long[] hits;          // by the child index (null if not counted)
+    private final int[] hotKeys;        // the key positions to probe first
+    private final int[] hotByteKeys;
+    private final boolean backtracking;
+
+    private ChildDispatch(CharArray[] keys, int[] indexes, int[] asciiRanges, boolean[] extended,
+                          ByteArray[] byteKeys, int[] byteIndexes, int[] byteAsciiRanges, boolean[] byteExtended,
+                          int[] fallback, boolean[] decisive, boolean backtracking) {
+        this(keys, indexes, asciiRanges, extended, byteKeys, byteIndexes, byteAsciiRanges, byteExtended,
+             fallback, decisive, null, NONE, NONE, backtracking);
+    }
+
+    private ChildDispatch(CharArray[] keys, int[] indexes, int[] asciiRanges, boolean[] extended,
+                          ByteArray[] byteKeys, int[] byteIndexes, int[] byteAsciiRanges, boolean[] byteExtended,
+                          int[] fallback, boolean[] decisive, long[] hits, int[] hotKeys, int[] hotByteKeys,
+                          boolean backtracking) {
+        this.keys = keys;
+        this.indexes = indexes;
+        this.asciiRanges = asciiRanges;
+        this.extended = extended;
+        this.byteKeys = byteKeys;
+        this.byteIndexes = byteIndexes;
+        this.byteAsciiRanges = byteAsciiRanges;
+        this.byteExtended = byteExtended;
+        this.fallback = fallback;
+        this.decisive = decisive;
+        this.hits = hits;
+        this.hotKeys = hotKeys;
+        this.hotByteKeys = hotByteKeys;
+        this.backtracking = backtracking;
+    }
+
+    public static ChildDispatch of(Token[] tokens) {
+        // The most nodes in the large trees are the leaves and the chains, which need no sorting.
+        if (tokens.length == 0) {
+            return EMPTY;
+        }
+        if (tokens.length == 1) {
+            return tokens[0] instanceof ConstToken constToken && constToken.buffer().isNotEmpty() ?
+                    new ChildDispatch(new CharArray[] { constToken.buffer() }, FIRST, null, NOT_EXTENDED,
+                                      new ByteArray[] { new ByteArray(constToken.bytes()) }, FIRST, null, NOT_EXTENDED,
+                                      NONE, null, false) :
+                    new ChildDispatch(EMPTY.keys, NONE, null, NOT_EXTENDED, EMPTY.byteKeys, NONE, null, NOT_EXTENDED,
+                                      FIRST, null, false);
+        }
+
+        int[] consts = IntStream.range(0, tokens.length)
+                .filter(i -> tokens[i] instanceof ConstToken constToken && constToken.buffer().isNotEmpty())
+                .boxed()
+                .sorted(Comparator.comparing(i -> ((ConstToken) tokens[i]).buffer(), ChildDispatch::compare))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] fallback = IntStream.range(0, tokens.length)
+                .filter(i -> !(tokens[i] instanceof ConstToken constToken && constToken.buffer().isNotEmpty()))
+                .toArray();
+        CharArray[] keys = Arrays.stream(consts).mapToObj(i -> ((ConstToken) tokens[i]).buffer()).toArray(CharArray[]::new);
+
+        int[] byteConsts = Arrays.stream(consts)
+                .boxed()
+                .sorted(Comparator.comparing(i -> ((ConstToken) tokens[i]).bytes(), Arrays::compareUnsigned))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        ByteArray[] byteKeys = Arrays.stream(byteConsts)
+                .mapToObj(i -> new ByteArray(((ConstToken) tokens[i]).bytes()))
+                .toArray(ByteArray[]::new);
+
+        boolean[] extended = new boolean[keys.length];
+        for (int k = 0; k + 1 < keys.length; k++) {
+            extended[k] = keys[k + 1].startsWith(keys[k]);
+        }
+        boolean[] byteExtended = new boolean[byteKeys.length];
+        for (int k = 0; k + 1 < byteKeys.length; k++) {
+            byteExtended[k] = byteKeys[k + 1].startsWith(byteKeys[k]);
+        }
+        boolean[] decisive = null;
+        if (fallback.length > 0 && consts.length > 0) {
+            decisive = new boolean[tokens.length];
+            for (int i : consts) {
+                decisive[i] = isDecisive(((ConstToken) tokens[i]).buffer(), tokens, fallback);
+            }
+        }
+
+        return new ChildDispatch(keys, consts, asciiRanges(keys.length, k -> keys[k].charAt(0)), extended,
+                                 byteKeys, byteConsts, asciiRanges(byteKeys.length, k -> byteKeys[k].at(0)), byteExtended,
+                                 fallback.length > 0 ? fallback : NONE, decisive,
+                                 Arrays.stream(tokens).anyMatch(token -> token instanceof Variable variable && variable.constraint() != null));
+    }
+
+    // The key wins over every fallback child for any input: the fallback variables (constrained or not) stop at the separator,
+    // which is inside the key, so they match less. The wildcards and the custom tokens may match more.
+    private static boolean isDecisive(CharArray key, Token[] tokens, int[] fallback) {
+        for (int i : fallback) {
+            int separator = separatorOf(tokens[i]);
+            if (separator < 0 || !key.contains((char) separator)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int separatorOf(Token token) {
+        if (token instanceof SeparableVariableToken variable) {
+            return variable.separator();
+        }
+        if (token instanceof TypedVariableToken typed) {
+            return typed.separator();
+        }
+        return token instanceof CharClassVariableToken variable ? variable.separator() : -1;
+    }
+
+    /**
+     * Returns the copy of the dispatch which counts the hits of the children (see {@link #recordHit}).
+     * Only the nodes with more const children than the linear search covers count the hits.
+     */
+    public ChildDispatch withHits() {
+        if (keys.length <= LINEAR_MAX_SIZE) {
+            return this;  // the hot keys won't apply
+        }
+        return new ChildDispatch(keys, indexes, asciiRanges, extended, byteKeys, byteIndexes, byteAsciiRanges, byteExtended,
+                                 fallback, decisive, new long[indexes.length + fallback.length], hotKeys, hotByteKeys,
+                                 backtracking);
+    }
+
+    /**
+     * Returns the copy of the dispatch, which probes up to a few keys with the most counted hits first
+     * (if they make a large share of the hits), and counts the hits anew. Only the keys that aren't extended by the longer keys are probed first,
+     * so the hot key match is the longest one. Returns this dispatch if the hits aren't counted.
+     */
+    public ChildDispatch withHotKeys() {
+        if (hits == null) {
+            return this;
+        }
+        long total = Arrays.stream(hits).sum();
+        int[] hot = IntStream.range(0, keys.length)
+                .filter(k -> !extended[k] && hits[indexes[k]] > 0 && hits[indexes[k]] * MIN_HOT_SHARE >= total)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer k) -> hits[indexes[k]]).reversed())
+                .limit(MAX_HOT_KEYS)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] hotBytes = Arrays.stream(hot)
+                .map(k -> indexOf(byteIndexes, indexes[k]))
+                .filter(k -> !byteExtended[k])
+                .toArray();
+        return new ChildDispatch(keys, indexes, asciiRanges, extended, byteKeys, byteIndexes, byteAsciiRanges, byteExtended,
+                                 fallback, decisive, new long[hits.length], hot, hotBytes, backtracking);
+    }
+
+    private static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] asciiRanges(int size, IntUnaryOperator firstChar) {
+        if (size < DENSE_MIN_SIZE) {
+            return null;
+        }
+        int[] asciiRanges = new int[ASCII + 1];
+        int k = 0;
+        for (int ch = 0; ch <= ASCII; ch++) {
+            while (k < size && firstChar.applyAsInt(k) < ch) {
+                k++;
+            }
+            asciiRanges[ch] = k;
+        }
+        return asciiRanges;
+    }
+
+    /**
+     * Returns the indexes of the children that must always be probed, in the original order.
+     */
+    public int[] fallback() {
+        return fallback;
+    }
+
+    /**
+     * Returns true if the navigation tries the other matching children when the greedy choice fails.
+     */
+    public boolean isBacktracking() {
+        return backtracking;
+    }
+
+    /**
+     * Returns true if the fallback children can't beat the const {@code child} match, so they don't need to be probed:
+     * either they always match less (see {@link #isDecisive(int)}), or the match is {@code exhausted} the input
+     * and the const child wins the tie by the declaration order.
+     */
+    public boolean isDecided(int child, boolean exhausted) {
+        return fallback.length == 0 || decisive[child] || exhausted && child < fallback[0];
+    }
+
+    /**
+     * Returns true if the fallback children always match less than the const {@code child}.
+     */
+    public boolean isDecisive(int child) {
+        return fallback.length == 0 || decisive[child];
+    }
+
+    // Note: the racy increments lose some hits, the counts are only the hint for `withHotKeys()`.
+    public void recordHit(int child) {
+        if (hits != null) {
+            hits[child]++;
+        }
+    }
+
+    /*package*/ long[] hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the index of the child in {@code Node.next} by the key position.
+     */
+    public int childIndex(int pos) {
+        return indexes[pos];
+    }
+
+    /**
+     * Returns the match length of the child by the key position.
+     */
+    public int keyLength(int pos) {
+        return keys[pos].length();
+    }
+
+    /**
+     * Returns the key position of the const child, which is the longest prefix of the {@code input}, or -1 if none.
+     */
+    public int longestConstMatch(CharArray input) {
+        if (keys.length == 0 || input.isEmpty()) {
+            return -1;
+        }
+        for (int pos : hotKeys) {
+            if (keys[pos].charAt(0) == input.charAt(0) && input.startsWith(keys[pos])) {
+                return pos;
+            }
+        }
+        int lo = 0;
+        int hi = keys.length;
+        if (asciiRanges != null) {
+            char first = input.charAt(0);
+            if (first < ASCII) {
+                lo = asciiRanges[first];
+                hi = asciiRanges[first + 1];
+            } else {
+                lo = asciiRanges[ASCII];
+            }
+        }
+        return (hi - lo <= LINEAR_MAX_SIZE) ? linearSearch(input, lo, hi) : binarySearch(input, lo, hi);
+    }
+
+    public int byteChildIndex(int pos) {
+        return byteIndexes[pos];
+    }
+
+    public int byteKeyLength(int pos) {
+        return byteKeys[pos].length();
+    }
+
+    /**
+     * Same as {@link #longestConstMatch(CharArray)} for the UTF-8 encoded input. Returns the byte key position.
+     */
+    public int longestConstMatch(ByteArray input) {
+        if (byteKeys.length == 0 || input.isEmpty()) {
+            return -1;
+        }
+        for (int pos : hotByteKeys) {
+            if (byteKeys[pos].byteAt(0) == input.byteAt(0) && input.startsWith(byteKeys[pos])) {
+                return pos;
+            }
+        }
+        int lo = 0;
+        int hi = byteKeys.length;
+        if (byteAsciiRanges != null) {
+            int first = input.at(0);
+            if (first < ASCII) {
+                lo = byteAsciiRanges[first];
+                hi = byteAsciiRanges[first + 1];
+            } else {
+                lo = byteAsciiRanges[ASCII];
+            }
+        }
+        return (hi - lo <= LINEAR_MAX_SIZE) ? linearSearch(input, lo, hi) : binarySearch(input, lo, hi);
+    }
+
+    // The matching keys are the prefixes of each other, so the later one is longer.
+    private int linearSearch(CharArray input, int lo, int hi) {
+        int best = -1;
+        for (int i = lo; i < hi; i++) {
+            if (input.startsWith(keys[i])) {
+                best = i;
+                if (!extended[i]) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Finds the greatest key `<= input[0:limit]`. If it's not a prefix, the longest prefix key (if any) can only be
+    // shorter than their common prefix, hence the search is repeated with the shorter limit, which terminates.
+    private int binarySearch(CharArray input, int lo, int hi) {
+        int limit = input.length();
+        while (lo < hi) {
+            int pos = upperBound(input, limit, lo, hi) - 1;
+            if (pos < lo) {
+                return -1;
+            }
+            CharArray key = keys[pos];
+            int common = Math.min(key.commonPrefix(input), limit);
+            if (common == key.length()) {
+                return pos;
+            }
+            limit = common;
+            hi = pos;
+        }
+        return -1;
+    }
+
+    private int upperBound(CharArray input, int limit, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(keys[mid], input, limit) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int linearSearch(ByteArray input, int lo, int hi) {
+        int best = -1;
+        for (int i = lo; i < hi; i++) {
+            if (input.startsWith(byteKeys[i])) {
+                best = i;
+                if (!byteExtended[i]) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int binarySearch(ByteArray input, int lo, int hi) {
+        int limit = input.length();
+        while (lo < hi) {
+            int pos = upperBound(input, limit, lo, hi) - 1;
+            if (pos < lo) {
+                return -1;
+            }
+            ByteArray key = byteKeys[pos];
+            int common = Math.min(key.commonPrefix(input), limit);
+            if (common == key.length()) {
+                return pos;
+            }
+            limit = common;
+            hi = pos;
+        }
+        return -1;
+    }
+
+    private int upperBound(ByteArray input, int limit, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(byteKeys[mid], input, limit) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Compares `lhs` with `rhs[0:limit]` lexicographically (unsigned bytes).
+    private static int compare(ByteArray lhs, ByteArray rhs, int limit) {
+        int length = Math.min(lhs.length(), limit);
+        for (int i = 0; i < length; i++) {
+            int diff = (lhs.byteAt(i) & 0xff) - (rhs.byteAt(i) & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return lhs.length() - limit;
+    }
+
+    private static int compare(CharArray lhs, CharArray rhs) {
+        return compare(lhs, rhs, rhs.length());
+    }
+
+    // Compares `lhs` with `rhs[0:limit]` lexicographically.
+    private static int compare(CharArray lhs, CharArray rhs, int limit) {
+        int length = Math.min(lhs.length(), limit);
+        for (int i = 0; i < length; i++) {
+            int diff = lhs.charAt(i) - rhs.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return lhs.length() - limit;
+    }
+}
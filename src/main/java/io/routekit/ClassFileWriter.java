@@ -0,0 +1,343 @@
+package io.routekit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal class file writer, just enough for the {@link TrieCompiler}: the constant pool, the methods and the code
+ * with branches and switches. No fields, no interfaces, no attributes except {@code Code}.
+ * <p>
+ * The class file version is 49 (Java 5), so that the verifier infers the types itself
+ * and the writer doesn't have to compute the stack map frames.
+ */
+/*package*/ final class ClassFileWriter {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    /*package*/ static final int ACC_PUBLIC = 0x0001;
+    /*package*/ static final int ACC_PRIVATE = 0x0002;
+    /*package*/ static final int ACC_STATIC = 0x0008;
+    /*package*/ static final int ACC_FINAL = 0x0010;
+    /*package*/ static final int ACC_SUPER = 0x0020;
+
+    /*package*/ static final int ICONST_M1 = 0x02;
+    /*package*/ static final int ICONST_0 = 0x03;
+    /*package*/ static final int BIPUSH = 0x10;
+    /*package*/ static final int SIPUSH = 0x11;
+    /*package*/ static final int LDC_W = 0x13;
+    /*package*/ static final int ILOAD = 0x15;
+    /*package*/ static final int ALOAD = 0x19;
+    /*package*/ static final int ISTORE = 0x36;
+    /*package*/ static final int IADD = 0x60;
+    /*package*/ static final int ISUB = 0x64;
+    /*package*/ static final int ISHR = 0x7a;
+    /*package*/ static final int IFNE = 0x9a;
+    /*package*/ static final int IFLT = 0x9b;
+    /*package*/ static final int IF_ICMPNE = 0xa0;
+    /*package*/ static final int IF_ICMPLT = 0xa1;
+    /*package*/ static final int IF_ICMPGE = 0xa2;
+    /*package*/ static final int IF_ICMPGT = 0xa3;
+    /*package*/ static final int GOTO = 0xa7;
+    /*package*/ static final int TABLESWITCH = 0xaa;
+    /*package*/ static final int LOOKUPSWITCH = 0xab;
+    /*package*/ static final int IRETURN = 0xac;
+    /*package*/ static final int RETURN = 0xb1;
+    /*package*/ static final int INVOKEVIRTUAL = 0xb6;
+    /*package*/ static final int INVOKESPECIAL = 0xb7;
+    /*package*/ static final int INVOKESTATIC = 0xb8;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolSize = 1;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    private final String className;
+    private final String superName;
+
+    public ClassFileWriter(String className, String superName) {
+        this.className = className;
+        this.superName = superName;
+    }
+
+    public String className() {
+        return className;
+    }
+
+    /**
+     * Returns the number of the constant pool entries: must not exceed 65535.
+     */
+    public int poolSize() {
+        return poolSize;
+    }
+
+    public int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    public int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    public int classRef(String name) {
+        int nameIndex = utf8(name);
+        return constant("C" + name, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + ' ' + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + owner + '.' + name + descriptor, out -> {
+            out.writeByte(CONSTANT_METHODREF);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    public void addMethod(int access, String name, String descriptor, Code code) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new DataOutputStream(bytes), out -> {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);                          // attributes: Code
+            out.writeShort(codeIndex);
+            out.writeInt(12 + code.size());
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(code.size());
+            out.write(code.resolve());
+            out.writeShort(0);                          // exception table
+            out.writeShort(0);                          // attributes
+        });
+        methods.add(bytes.toByteArray());
+    }
+
+    public byte[] toByteArray() {
+        int thisIndex = classRef(className);
+        int superIndex = classRef(superName);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new DataOutputStream(bytes), out -> {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0);                          // interfaces
+            out.writeShort(0);                          // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);                          // attributes
+        });
+        return bytes.toByteArray();
+    }
+
+    private int constant(String key, Output output) {
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            write(poolOut, output);
+            index = poolSize++;
+            poolIndex.put(key, index);
+        }
+        return index;
+    }
+
+    private static void write(DataOutputStream out, Output output) {
+        try {
+            output.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // never happens for the in-memory streams
+        }
+    }
+
+    private interface Output {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * A branch target within the {@link Code}.
+     */
+    /*package*/ static final class Label {
+        private int position = -1;
+    }
+
+    /**
+     * The bytecode of a single method. The jump offsets are patched when the method is added to the class.
+     */
+    /*package*/ final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private final List<int[]> fixups = new ArrayList<>();  // {label, opcode position, offset position, width}
+        private final int maxStack;
+        private final int maxLocals;
+
+        public Code(int maxStack, int maxLocals) {
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        public int size() {
+            return bytes.size();
+        }
+
+        public Code op(int opcode) {
+            bytes.write(opcode);
+            return this;
+        }
+
+        public Code iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                return op(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH);
+                bytes.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(SIPUSH);
+                u2(value);
+            } else {
+                op(LDC_W);
+                u2(integer(value));
+            }
+            return this;
+        }
+
+        public Code iload(int local) {
+            op(ILOAD);
+            bytes.write(local);
+            return this;
+        }
+
+        public Code istore(int local) {
+            op(ISTORE);
+            bytes.write(local);
+            return this;
+        }
+
+        public Code aload(int local) {
+            op(ALOAD);
+            bytes.write(local);
+            return this;
+        }
+
+        public Code invoke(int opcode, String owner, String name, String descriptor) {
+            op(opcode);
+            u2(methodRef(owner, name, descriptor));
+            return this;
+        }
+
+        public Code jump(int opcode, Label label) {
+            int at = size();
+            op(opcode);
+            reference(label, at, 2);
+            return this;
+        }
+
+        public Code tableswitch(int low, Label otherwise, Label[] labels) {
+            int at = size();
+            op(TABLESWITCH);
+            align();
+            reference(otherwise, at, 4);
+            u4(low);
+            u4(low + labels.length - 1);
+            for (Label label : labels) {
+                reference(label, at, 4);
+            }
+            return this;
+        }
+
+        public Code lookupswitch(Label otherwise, int[] keys, Label[] labels) {
+            assert keys.length == labels.length : "Keys and labels don't match";
+            int at = size();
+            op(LOOKUPSWITCH);
+            align();
+            reference(otherwise, at, 4);
+            u4(keys.length);
+            for (int i = 0; i < keys.length; i++) {  // the keys must be sorted
+                u4(keys[i]);
+                reference(labels[i], at, 4);
+            }
+            return this;
+        }
+
+        public Code mark(Label label) {
+            assert label.position < 0 : "The label is already marked";
+            label.position = size();
+            return this;
+        }
+
+        // Note: the 16-bit jump offsets overflow for the code over 32K, the caller must keep the methods smaller.
+        private byte[] resolve() {
+            byte[] code = bytes.toByteArray();
+            for (int[] fixup : fixups) {
+                Label label = labels.get(fixup[0]);
+                assert label.position >= 0 : "The label is referenced, but never marked";
+                int offset = label.position - fixup[1];
+                for (int i = 0; i < fixup[3]; i++) {
+                    code[fixup[2] + i] = (byte) (offset >>> (8 * (fixup[3] - 1 - i)));
+                }
+            }
+            return code;
+        }
+
+        private void reference(Label label, int opcodeAt, int width) {
+            labels.add(label);
+            fixups.add(new int[] { labels.size() - 1, opcodeAt, size(), width });
+            if (width == 2) {
+                u2(0);
+            } else {
+                u4(0);
+            }
+        }
+
+        private void align() {
+            while (size() % 4 != 0) {
+                bytes.write(0);
+            }
+        }
+
+        private void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        private void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+    }
+}
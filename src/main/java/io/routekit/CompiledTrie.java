@@ -0,0 +1,61 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import io.routekit.util.MutableCharArray;
+
+/**
+ * The base class of the routing trie compiled into bytecode by the {@link TrieCompiler}.
+ * <p>
+ * The generated subclass has a static method per trie node, which calls back into this class
+ * for the terminal rules, for the const lookup of the nodes with too many children to inline
+ * and for the interpreted navigation of the nodes which are not compiled.
+ *
+ * @param <T> handler type
+ */
+/*package*/ abstract class CompiledTrie<T> {
+    private final RouterSetup.Rule<T>[] rules;
+    private final ChildDispatch[] dispatches;
+    private final Router.Node<T>[] continuations;
+
+    /*package*/ CompiledTrie(RouterSetup.Rule<T>[] rules, ChildDispatch[] dispatches, Router.Node<T>[] continuations) {
+        this.rules = rules;
+        this.dispatches = dispatches;
+        this.continuations = continuations;
+    }
+
+    /**
+     * Same as the interpreted navigation in the {@link Router}: stores the variables and the matched rule into
+     * the {@code out} holder, which must be already reset to the {@code input}.
+     */
+    /*package*/ abstract boolean navigate(CharArray input, MatchHolder<T> out);
+
+    // Called by the generated code: the node is terminal.
+    /*package*/ final boolean terminal(MatchHolder<T> out, int rule) {
+        out.setMatch(rules[rule].handler(), rules[rule].schema());
+        return true;
+    }
+
+    // Called by the generated code: returns the key position of the longest const child of the node or -1.
+    /*package*/ final int constMatch(int node, CharArray input, int pos, MatchHolder<T> out) {
+        MutableCharArray cursor = out.cursor();
+        cursor.reset(input);
+        cursor.offsetStart(pos);
+        return dispatches[node].longestConstMatch(cursor);
+    }
+
+    // Called by the generated code: continues with the interpreter from the node that is not compiled.
+    /*package*/ final boolean interpret(int continuation, CharArray input, int pos, MatchHolder<T> out) {
+        MutableCharArray cursor = out.cursor();
+        cursor.reset(input);
+        cursor.offsetStart(pos);
+        return Router.navigate(input, cursor, continuations[continuation], out);
+    }
+
+    /*package*/ final int constLength(int node, int key) {
+        return dispatches[node].keyLength(key);
+    }
+
+    /*package*/ final int constChild(int node, int key) {
+        return dispatches[node].childIndex(key);
+    }
+}
@@ -1,7 +1,9 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
@@ -9,9 +11,11 @@ import java.util.Objects;
  */
 public final class ConstToken implements Token {
     private final CharArray token;
+    private final byte[] bytes;
 
     public ConstToken(CharArray token) {
         this.token = token;
+        this.bytes = token.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     public ConstToken(String token) {
@@ -25,10 +29,22 @@ public final class ConstToken implements Token {
         return charArray.startsWith(token) ? token.length() : -1;
     }
 
+    @Override
+    public int match(ByteArray byteArray) {
+        return byteArray.startsWith(bytes) ? bytes.length : -1;
+    }
+
     public CharArray buffer() {
         return token;
     }
 
+    /**
+     * Returns the UTF-8 encoded token. Note: the array must not be modified.
+     */
+    /*package*/ byte[] bytes() {
+        return bytes;
+    }
+
     @Override
     public String toString() {
         return "ConstToken[%s]".formatted(token);
@@ -0,0 +1,93 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.util.Collection;
+
+/**
+ * A bit set of the ASCII pairs of the first two chars that some rule can start with, derived from the constant
+ * rules and the trie root's children. The input starting with any other pair can't match, so it's rejected
+ * before hashing it for the constant index or navigating the trie (e.g. the scanner traffic: {@code /.env},
+ * {@code /wp-admin/...}).
+ * <p>
+ * The inputs shorter than two chars or starting with non-ASCII chars are never rejected. The filter doesn't apply
+ * (see {@link #of}) if the root has a non-const child, since it can start with any chars.
+ * The same bits are used for the UTF-8 input, since the ASCII bytes are the same as the chars.
+ */
+/*package*/ final class DeadPrefixFilter {
+    private static final int ASCII = 128;
+
+    private final long[] pairs = new long[ASCII * ASCII / 64];
+
+    private DeadPrefixFilter() {}
+
+    /**
+     * Returns the filter for the {@code constants} and the state machine {@code root}, or null if it doesn't apply.
+     */
+    public static DeadPrefixFilter of(Collection<CharArray> constants, Router.Node<?> root) {
+        DeadPrefixFilter filter = new DeadPrefixFilter();
+        for (CharArray key : constants) {
+            if (key.length() >= 2) {
+                filter.allow(key.charAt(0), key.charAt(1));
+            }
+        }
+        for (Router.Node<?> child : root.next()) {
+            if (!(child.token() instanceof ConstToken token) || token.buffer().isEmpty()) {
+                return null;
+            }
+            CharArray buffer = token.buffer();
+            if (buffer.length() >= 2) {
+                filter.allow(buffer.charAt(0), buffer.charAt(1));
+                continue;
+            }
+            // The second char comes from the grandchildren
+            for (Router.Node<?> grandchild : child.next()) {
+                if (grandchild.token() instanceof ConstToken next && next.buffer().isNotEmpty()) {
+                    filter.allow(buffer.charAt(0), next.buffer().charAt(0));
+                } else {
+                    filter.allowAll(buffer.charAt(0));
+                }
+            }
+        }
+        return filter;
+    }
+
+    public boolean isDead(CharArray input) {
+        if (input.length() < 2) {
+            return false;
+        }
+        int first = input.charAt(0);
+        int second = input.charAt(1);
+        return (first | second) < ASCII && !isAllowed(first, second);
+    }
+
+    public boolean isDead(ByteArray input) {
+        if (input.length() < 2) {
+            return false;
+        }
+        int first = input.at(0);
+        int second = input.at(1);
+        return (first | second) < ASCII && !isAllowed(first, second);
+    }
+
+    private boolean isAllowed(int first, int second) {
+        int bit = first * ASCII + second;
+        return (pairs[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void allow(int first, int second) {
+        if ((first | second) < ASCII) {
+            int bit = first * ASCII + second;
+            pairs[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private void allowAll(int first) {
+        if (first < ASCII) {
+            for (int second = 0; second < ASCII; second++) {
+                allow(first, second);
+            }
+        }
+    }
+}
@@ -0,0 +1,671 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The routing trie flattened into a few primitive arrays (struct-of-arrays), an alternative to the {@link Router.Node}
+ * object graph. The nodes are numbered breadth-first, so that the children of each node are a contiguous range
+ * of the node indexes, and the navigation loop walks the indexes instead of the references.
+ * <p>
+ * Within the range, the non-empty const children come first, sorted in the code point order (which is the same
+ * for the chars and for the UTF-8 bytes), and are found by the binary search over the shared pools.
+ * The rest of the children (variables, wildcards, custom tokens) follow in the declaration order
+ * and are always probed. The declaration order is kept to break the ties the same way as the interpreter.
+ * <p>
+ * The const tokens are stored in the shared {@code char[]} and {@code byte[]} pools. For the separable variables,
+ * the pools hold the separator. The custom tokens, the handlers and the variable schemas of the terminal rules
+ * are kept as the objects in the small side tables, as well as the indexes of the backtracking nodes
+ * (see {@link ChildDispatch#isBacktracking()}).
+ * <p>
+ * The navigation reads the layout via the accessors: the arrays are stored on-heap (see {@link #of}) or off-heap
+ * (see {@link OffHeapTrie}).
+ *
+ * @param <T> handler type
+ */
+/*package*/ abstract class FlatTrie<T> {
+    private static final Logger log = Logger.getLogger("RouteKit");
+
+    private static final byte ROOT = 0;
+    private static final byte CONST = 1;
+    private static final byte VAR = 2;
+    private static final byte WILDCARD = 3;
+    private static final byte CUSTOM = 4;
+    private static final byte CUSTOM_VAR = 5;
+
+    private static final int LINEAR_MAX_SIZE = 4;
+
+    private final int size;
+    private final int[] customNodes;    // sorted node indexes of the custom tokens
+    private final Token[] customTokens;
+    private final int[] backtrackNodes; // sorted indexes of the backtracking nodes
+    private final Object[] handlers;    // the handlers by the terminal rule index
+    private final VariableSchema[] schemas;
+
+    protected FlatTrie(int size, int[] customNodes, Token[] customTokens, int[] backtrackNodes,
+                       Object[] handlers, VariableSchema[] schemas) {
+        this.size = size;
+        this.customNodes = customNodes;
+        this.customTokens = customTokens;
+        this.backtrackNodes = backtrackNodes;
+        this.handlers = handlers;
+        this.schemas = schemas;
+    }
+
+    public static <T> FlatTrie<T> of(Router.Node<T> root) {
+        return new OnHeap<>(Layout.of(root));
+    }
+
+    // The token kind of the node.
+    protected abstract byte kind(int node);
+
+    // The children of the node `i` are `[childStart(i), childStart(i + 1))`.
+    protected abstract int childStart(int node);
+
+    // The end of the sorted const children (the fallback children follow).
+    protected abstract int constEnd(int node);
+
+    // The declaration index of the node among its siblings.
+    protected abstract int order(int node);
+
+    // The terminal rule index or -1.
+    protected abstract int terminal(int node);
+
+    // The token of the node `i` is `poolChar(charStart(i))...poolChar(charStart(i + 1) - 1)`.
+    protected abstract int charStart(int node);
+
+    protected abstract char poolChar(int index);
+
+    // Same for the UTF-8 bytes.
+    protected abstract int byteStart(int node);
+
+    protected abstract byte poolByte(int index);
+
+    public int size() {
+        return size;
+    }
+
+    /*package*/ boolean hasCustomTokens() {
+        return customNodes.length > 0;
+    }
+
+    /*package*/ Object[] handlers() {
+        return handlers;
+    }
+
+    /*package*/ VariableSchema[] schemas() {
+        return schemas;
+    }
+
+    /**
+     * Same as the interpreted navigation in the {@link Router}: stores the variables and the matched rule into
+     * the {@code out} holder, which must be already reset to the {@code input}.
+     */
+    public boolean navigate(CharArray input, MatchHolder<T> out) {
+        return navigate(input, 0, 0, out);
+    }
+
+    private boolean navigate(CharArray input, int offset, int node, MatchHolder<T> out) {
+        int length = input.length();
+        while (offset < length) {
+            if (isBacktracking(node)) {
+                return backtrack(input, offset, node, out);
+            }
+            int maxMatch = -1;
+            int maxNode = -1;
+            int end = constEnd(node);
+            int pos = longestConstMatch(input, offset, childStart(node), end);
+            if (pos >= 0) {
+                maxMatch = charStart(pos + 1) - charStart(pos);
+                maxNode = pos;
+            }
+            for (int child = end, last = childStart(node + 1); child < last; child++) {
+                int matchLength = match(child, input, offset);
+                // The first child wins the tie (same as the declaration order)
+                if (matchLength > maxMatch || matchLength == maxMatch && matchLength >= 0 && order(child) < order(maxNode)) {
+                    maxMatch = matchLength;
+                    maxNode = child;
+                }
+            }
+            if (maxNode < 0) {
+                return false;  // no continuation found
+            }
+            if (isVariable(maxNode)) {
+                out.addVariable(offset, offset + maxMatch);
+            }
+            offset += maxMatch;
+            node = maxNode;
+        }
+        return setMatch(node, out);
+    }
+
+    /**
+     * Same as above for the UTF-8 encoded {@code input}, the offsets are in bytes.
+     */
+    public boolean navigate(ByteArray input, MatchHolder<T> out) {
+        return navigate(input, 0, 0, out);
+    }
+
+    private boolean navigate(ByteArray input, int offset, int node, MatchHolder<T> out) {
+        int length = input.length();
+        while (offset < length) {
+            if (isBacktracking(node)) {
+                return backtrack(input, offset, node, out);
+            }
+            int maxMatch = -1;
+            int maxNode = -1;
+            int end = constEnd(node);
+            int pos = longestConstMatch(input, offset, childStart(node), end);
+            if (pos >= 0) {
+                maxMatch = byteStart(pos + 1) - byteStart(pos);
+                maxNode = pos;
+            }
+            for (int child = end, last = childStart(node + 1); child < last; child++) {
+                int matchLength = match(child, input, offset);
+                if (matchLength > maxMatch || matchLength == maxMatch && matchLength >= 0 && order(child) < order(maxNode)) {
+                    maxMatch = matchLength;
+                    maxNode = child;
+                }
+            }
+            if (maxNode < 0) {
+                return false;
+            }
+            if (isVariable(maxNode)) {
+                out.addVariable(offset, offset + maxMatch);
+            }
+            offset += maxMatch;
+            node = maxNode;
+        }
+        return setMatch(node, out);
+    }
+
+    // Same as `Router.backtrack()`: tries the matching children in the order of the greedy choice.
+    private boolean backtrack(CharArray input, int offset, int node, MatchHolder<T> out) {
+        int size = out.size();
+        int end = constEnd(node);
+        int constNode = longestConstMatch(input, offset, childStart(node), end);
+        int constMatch = constNode >= 0 ? charStart(constNode + 1) - charStart(constNode) : -1;
+        int lastMatch = Integer.MAX_VALUE;
+        int lastOrder = -1;
+        while (true) {
+            int maxMatch = -1;
+            int maxNode = -1;
+            if (constNode >= 0 && Router.isAfter(constMatch, order(constNode), lastMatch, lastOrder)) {
+                maxMatch = constMatch;
+                maxNode = constNode;
+            }
+            for (int child = end, last = childStart(node + 1); child < last; child++) {
+                int matchLength = match(child, input, offset);
+                if (matchLength >= 0 && Router.isAfter(matchLength, order(child), lastMatch, lastOrder) &&
+                    (matchLength > maxMatch || matchLength == maxMatch && order(child) < order(maxNode))) {
+                    maxMatch = matchLength;
+                    maxNode = child;
+                }
+            }
+            if (maxNode < 0) {
+                return false;  // no continuation left
+            }
+            if (isVariable(maxNode)) {
+                out.addVariable(offset, offset + maxMatch);
+            }
+            if (navigate(input, offset + maxMatch, maxNode, out)) {
+                return true;
+            }
+            out.truncate(size);
+            lastMatch = maxMatch;
+            lastOrder = order(maxNode);
+        }
+    }
+
+    private boolean backtrack(ByteArray input, int offset, int node, MatchHolder<T> out) {
+        int size = out.size();
+        int end = constEnd(node);
+        int constNode = longestConstMatch(input, offset, childStart(node), end);
+        int constMatch = constNode >= 0 ? byteStart(constNode + 1) - byteStart(constNode) : -1;
+        int lastMatch = Integer.MAX_VALUE;
+        int lastOrder = -1;
+        while (true) {
+            int maxMatch = -1;
+            int maxNode = -1;
+            if (constNode >= 0 && Router.isAfter(constMatch, order(constNode), lastMatch, lastOrder)) {
+                maxMatch = constMatch;
+                maxNode = constNode;
+            }
+            for (int child = end, last = childStart(node + 1); child < last; child++) {
+                int matchLength = match(child, input, offset);
+                if (matchLength >= 0 && Router.isAfter(matchLength, order(child), lastMatch, lastOrder) &&
+                    (matchLength > maxMatch || matchLength == maxMatch && order(child) < order(maxNode))) {
+                    maxMatch = matchLength;
+                    maxNode = child;
+                }
+            }
+            if (maxNode < 0) {
+                return false;
+            }
+            if (isVariable(maxNode)) {
+                out.addVariable(offset, offset + maxMatch);
+            }
+            if (navigate(input, offset + maxMatch, maxNode, out)) {
+                return true;
+            }
+            out.truncate(size);
+            lastMatch = maxMatch;
+            lastOrder = order(maxNode);
+        }
+    }
+
+    // Note: the constrained variables are custom tokens, so the tries without them skip the lookup.
+    private boolean isBacktracking(int node) {
+        return backtrackNodes.length > 0 && Arrays.binarySearch(backtrackNodes, node) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean setMatch(int node, MatchHolder<T> out) {
+        int rule = terminal(node);
+        if (rule < 0) {
+            return false;  // matches part of the rule
+        }
+        out.setMatch((T) handlers[rule], schemas[rule]);
+        return true;
+    }
+
+    private boolean isVariable(int node) {
+        byte kind = kind(node);
+        return kind == VAR || kind == WILDCARD || kind == CUSTOM_VAR;
+    }
+
+    private int match(int node, CharArray input, int offset) {
+        switch (kind(node)) {
+            case CONST:
+                return startsWith(input, offset, node) ? charStart(node + 1) - charStart(node) : -1;
+            case VAR:
+                int index = input.indexOf(poolChar(charStart(node)), offset, input.length());
+                return index == offset ? -1 : index - offset;
+            case WILDCARD:
+                return offset == input.length() ? -1 : input.length() - offset;
+            default:
+                return customToken(node).match(input.substringFrom(offset));
+        }
+    }
+
+    private int match(int node, ByteArray input, int offset) {
+        switch (kind(node)) {
+            case CONST:
+                return startsWith(input, offset, node) ? byteStart(node + 1) - byteStart(node) : -1;
+            case VAR:
+                int index = indexOfSeparator(input, offset, node);
+                return index == offset ? -1 : index - offset;
+            case WILDCARD:
+                return offset == input.length() ? -1 : input.length() - offset;
+            default:
+                return customToken(node).match(input.substringFrom(offset));
+        }
+    }
+
+    // Returns the index of the (UTF-8 encoded) separator of the variable `node` or the input length if none.
+    private int indexOfSeparator(ByteArray input, int offset, int node) {
+        int from = byteStart(node);
+        int length = byteStart(node + 1) - from;
+        if (length == 1) {
+            return input.indexOf(poolByte(from), offset, input.length());
+        }
+        for (int i = offset; i <= input.length() - length; i++) {
+            if (startsWith(input, i, node)) {
+                return i;
+            }
+        }
+        return input.length();
+    }
+
+    private Token customToken(int node) {
+        return customTokens[Arrays.binarySearch(customNodes, node)];
+    }
+
+    private boolean startsWith(CharArray input, int offset, int node) {
+        int from = charStart(node);
+        int length = charStart(node + 1) - from;
+        if (input.length() - offset < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input.charAt(offset + i) != poolChar(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(ByteArray input, int offset, int node) {
+        int from = byteStart(node);
+        int length = byteStart(node + 1) - from;
+        if (input.length() - offset < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input.byteAt(offset + i) != poolByte(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the const child in `[lo, hi)`, which is the longest prefix of `input[offset:]`, or -1 if none.
+    // Same as `ChildDispatch.longestConstMatch()`: any two matching const children are prefixes of each other.
+    private int longestConstMatch(CharArray input, int offset, int lo, int hi) {
+        if (hi - lo <= LINEAR_MAX_SIZE) {
+            int best = -1;
+            for (int child = lo; child < hi; child++) {
+                if (startsWith(input, offset, child) && (best < 0 || charStart(child + 1) - charStart(child) >
+                                                                     charStart(best + 1) - charStart(best))) {
+                    best = child;
+                }
+            }
+            return best;
+        }
+        int limit = input.length() - offset;
+        while (lo < hi) {
+            int pos = upperBound(input, offset, limit, lo, hi) - 1;
+            if (pos < lo) {
+                return -1;
+            }
+            int keyLength = charStart(pos + 1) - charStart(pos);
+            int common = Math.min(commonPrefix(input, offset, pos), limit);
+            if (common == keyLength) {
+                return pos;
+            }
+            limit = common;
+            hi = pos;
+        }
+        return -1;
+    }
+
+    private int upperBound(CharArray input, int offset, int limit, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, input, offset, limit) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Compares the key of the `node` with `input[offset:offset + limit]` in the code point order.
+    private int compare(int node, CharArray input, int offset, int limit) {
+        int from = charStart(node);
+        int keyLength = charStart(node + 1) - from;
+        int length = Math.min(keyLength, limit);
+        for (int i = 0; i < length; i++) {
+            int diff = codePointOrder(poolChar(from + i)) - codePointOrder(input.charAt(offset + i));
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return keyLength - limit;
+    }
+
+    private int commonPrefix(CharArray input, int offset, int node) {
+        int from = charStart(node);
+        int length = Math.min(charStart(node + 1) - from, input.length() - offset);
+        int i = 0;
+        while (i < length && poolChar(from + i) == input.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private int longestConstMatch(ByteArray input, int offset, int lo, int hi) {
+        if (hi - lo <= LINEAR_MAX_SIZE) {
+            int best = -1;
+            for (int child = lo; child < hi; child++) {
+                if (startsWith(input, offset, child) && (best < 0 || byteStart(child + 1) - byteStart(child) >
+                                                                     byteStart(best + 1) - byteStart(best))) {
+                    best = child;
+                }
+            }
+            return best;
+        }
+        int limit = input.length() - offset;
+        while (lo < hi) {
+            int pos = upperBound(input, offset, limit, lo, hi) - 1;
+            if (pos < lo) {
+                return -1;
+            }
+            int keyLength = byteStart(pos + 1) - byteStart(pos);
+            int common = Math.min(commonPrefix(input, offset, pos), limit);
+            if (common == keyLength) {
+                return pos;
+            }
+            limit = common;
+            hi = pos;
+        }
+        return -1;
+    }
+
+    private int upperBound(ByteArray input, int offset, int limit, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, input, offset, limit) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Compares the UTF-8 key of the `node` with `input[offset:offset + limit]` (unsigned bytes).
+    private int compare(int node, ByteArray input, int offset, int limit) {
+        int from = byteStart(node);
+        int keyLength = byteStart(node + 1) - from;
+        int length = Math.min(keyLength, limit);
+        for (int i = 0; i < length; i++) {
+            int diff = (poolByte(from + i) & 0xff) - input.at(offset + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return keyLength - limit;
+    }
+
+    private int commonPrefix(ByteArray input, int offset, int node) {
+        int from = byteStart(node);
+        int length = Math.min(byteStart(node + 1) - from, input.length() - offset);
+        int i = 0;
+        while (i < length && poolByte(from + i) == input.byteAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSortedConst(Router.Node<?> node) {
+        return node.token() instanceof ConstToken constToken && constToken.buffer().isNotEmpty();
+    }
+
+    private static int compare(CharArray lhs, CharArray rhs) {
+        int length = Math.min(lhs.length(), rhs.length());
+        for (int i = 0; i < length; i++) {
+            int diff = codePointOrder(lhs.charAt(i)) - codePointOrder(rhs.charAt(i));
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return lhs.length() - rhs.length();
+    }
+
+    // Maps the UTF-16 char so that the lexicographic order of the chars is the code point order
+    // (the surrogates go after the rest of the BMP), i.e. the same as the order of the UTF-8 bytes.
+    private static int codePointOrder(char ch) {
+        return ch < 0xD800 ? ch : ch < 0xE000 ? ch + 0x2000 : ch - 0x800;
+    }
+
+    /**
+     * The flat layout of the trie in the arrays, see {@link FlatTrie} for the details.
+     */
+    /*package*/ record Layout(byte[] kinds, int[] childStart, int[] constEnd, int[] order, int[] terminal,
+                              int[] charStart, char[] chars, int[] byteStart, byte[] bytes,
+                              int[] customNodes, Token[] customTokens, int[] backtrackNodes,
+                              Object[] handlers, VariableSchema[] schemas) {
+        public static <T> Layout of(Router.Node<T> root) {
+            List<Router.Node<T>> nodes = new ArrayList<>();
+            List<Integer> orders = new ArrayList<>();
+            nodes.add(root);
+            orders.add(0);
+            List<Integer> childStarts = new ArrayList<>();
+            List<Integer> constEnds = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i++) {  // breadth-first: the queue is the list itself
+                Router.Node<T>[] next = nodes.get(i).next();
+                Integer[] sorted = new Integer[next.length];
+                Arrays.setAll(sorted, k -> k);
+                Arrays.sort(sorted, (lhs, rhs) -> {  // stable: the fallback children keep the declaration order
+                    boolean lhsConst = isSortedConst(next[lhs]);
+                    boolean rhsConst = isSortedConst(next[rhs]);
+                    if (lhsConst && rhsConst) {
+                        return compare(((ConstToken) next[lhs].token()).buffer(), ((ConstToken) next[rhs].token()).buffer());
+                    }
+                    return Boolean.compare(rhsConst, lhsConst);
+                });
+                childStarts.add(nodes.size());
+                constEnds.add(nodes.size() + (int) Arrays.stream(next).filter(FlatTrie::isSortedConst).count());
+                for (int k : sorted) {
+                    nodes.add(next[k]);
+                    orders.add(k);
+                }
+            }
+
+            int size = nodes.size();
+            childStarts.add(size);
+            byte[] kinds = new byte[size];
+            int[] terminal = new int[size];
+            int[] charStart = new int[size + 1];
+            int[] byteStart = new int[size + 1];
+            StringBuilder chars = new StringBuilder();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            List<Integer> customNodes = new ArrayList<>();
+            List<Token> customTokens = new ArrayList<>();
+            List<Integer> backtrackNodes = new ArrayList<>();
+            List<RouterSetup.Rule<T>> rules = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                Router.Node<T> node = nodes.get(i);
+                Token token = node.token();
+                charStart[i] = chars.length();
+                byteStart[i] = bytes.size();
+                if (i == 0) {
+                    kinds[i] = ROOT;
+                } else if (token instanceof ConstToken constToken) {
+                    kinds[i] = CONST;
+                    chars.append(constToken.buffer());
+                    bytes.writeBytes(constToken.bytes());
+                } else if (token instanceof SeparableVariableToken variable) {
+                    kinds[i] = VAR;
+                    chars.append(variable.separator());
+                    bytes.writeBytes(String.valueOf(variable.separator()).getBytes(StandardCharsets.UTF_8));
+                } else if (token instanceof WildcardToken) {
+                    kinds[i] = WILDCARD;
+                } else {
+                    kinds[i] = token instanceof Variable ? CUSTOM_VAR : CUSTOM;
+                    customNodes.add(i);
+                    customTokens.add(token);
+                }
+                if (node.dispatch().isBacktracking()) {
+                    backtrackNodes.add(i);
+                }
+                terminal[i] = node.isTerminal() ? rules.size() : -1;
+                if (node.isTerminal()) {
+                    rules.add(node.terminalRule());
+                }
+            }
+            charStart[size] = chars.length();
+            byteStart[size] = bytes.size();
+
+            log.log(Level.FINEST, () -> "Flattened the trie: %d nodes, %d chars".formatted(size, charStart[size]));
+            return new Layout(kinds, toArray(childStarts), toArray(constEnds), toArray(orders), terminal,
+                              charStart, chars.toString().toCharArray(), byteStart, bytes.toByteArray(),
+                              toArray(customNodes), customTokens.toArray(Token[]::new), toArray(backtrackNodes),
+                              rules.stream().map(RouterSetup.Rule::handler).toArray(),
+                              rules.stream().map(RouterSetup.Rule::schema).toArray(VariableSchema[]::new));
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            return list.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static final class OnHeap<T> extends FlatTrie<T> {
+        private final byte[] kinds;
+        private final int[] childStart;
+        private final int[] constEnd;
+        private final int[] order;
+        private final int[] terminal;
+        private final int[] charStart;
+        private final char[] chars;
+        private final int[] byteStart;
+        private final byte[] bytes;
+
+        private OnHeap(Layout layout) {
+            super(layout.kinds.length, layout.customNodes, layout.customTokens, layout.backtrackNodes,
+                  layout.handlers, layout.schemas);
+            this.kinds = layout.kinds;
+            this.childStart = layout.childStart;
+            this.constEnd = layout.constEnd;
+            this.order = layout.order;
+            this.terminal = layout.terminal;
+            this.charStart = layout.charStart;
+            this.chars = layout.chars;
+            this.byteStart = layout.byteStart;
+            this.bytes = layout.bytes;
+        }
+
+        @Override
+        protected byte kind(int node) {
+            return kinds[node];
+        }
+
+        @Override
+        protected int childStart(int node) {
+            return childStart[node];
+        }
+
+        @Override
+        protected int constEnd(int node) {
+            return constEnd[node];
+        }
+
+        @Override
+        protected int order(int node) {
+            return order[node];
+        }
+
+        @Override
+        protected int terminal(int node) {
+            return terminal[node];
+        }
+
+        @Override
+        protected int charStart(int node) {
+            return charStart[node];
+        }
+
+        @Override
+        protected char poolChar(int index) {
+            return chars[index];
+        }
+
+        @Override
+        protected int byteStart(int node) {
+            return byteStart[node];
+        }
+
+        @Override
+        protected byte poolByte(int index) {
+            return bytes[index];
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mutable set of rules, which supports adding and removing a single rule without rebuilding the whole state machine.
+ * Created from the {@link RouterSetup} by {@link RouterSetup#toIncremental()}.
+ * <p>
+ * Keeps a draft of each node of the state machine: the rules passing through the node (with their tokens left
+ * as on entering the node) and the way their const heads are split (see {@link RouterBuilder}).
+ * A single change walks down the path of the rule and patches only the drafts on it. If the change affects
+ * the split of the other rules at some node (e.g. the new rule shortens the common prefix), the subtree
+ * of that node is rebuilt from its drafts.
+ * <p>
+ * Each {@link #build()} creates a new immutable {@link Router}: only the nodes on the changed paths are created,
+ * the rest of the nodes are shared with the previous routers. The result is the same as of {@link RouterSetup#build()}
+ * with the same rules in the same order (the added rules go last). The constant rules index is rebuilt on the next
+ * {@code build()} if the constant rules changed; the bytecode compilation and the flattening (if enabled) always
+ * process the whole state machine.
+ * <p>
+ * The changes are atomic: if the rule can't be added (e.g. a duplicate), the exception is thrown and
+ * the setup is not modified. Note: the builder options must not be changed after creating the setup,
+ * and the instance is not thread-safe (the routers are).
+ *
+ * @param <T> handler type
+ */
+public final class IncrementalRouterSetup<T> {
+    private final QueryParser parser;
+    private final RouterBuilder builder;
+    private final Map<Query, Entry<T>> rules = new LinkedHashMap<>();
+    private final Map<CharArray, T> constants = new LinkedHashMap<>();
+    private Draft<T> root;
+    private QuickMatchIndex<T> quickMatchIndex;
+    private long nextSeq = 0;
+
+    /*package*/ IncrementalRouterSetup(QueryParser parser, RouterBuilder builder, List<RouterSetup.Rule<T>> initial) {
+        this.parser = parser;
+        this.builder = builder;
+        List<Entry<T>> entries = new ArrayList<>();
+        for (RouterSetup.Rule<T> rule : initial) {
+            Entry<T> entry = new Entry<>(rule, nextSeq++, 0, 0);
+            if (rules.putIfAbsent(rule.query(), entry) != null) {
+                throw new RouteException("Duplicate rules found: " + List.of(rule.query(), rule.query()));
+            }
+            if (builder.isQuickMatch(rule)) {
+                putConstant(rule);
+            }
+            if (builder.isInStateMachine(rule)) {
+                entries.add(entry);
+            }
+        }
+        this.root = buildDraft(new RouterBuilder.RootToken(), entries);
+    }
+
+    public IncrementalRouterSetup<T> add(Query query, T handler) {
+        if (rules.containsKey(query)) {
+            throw new RouteException("Duplicate rules found: " + List.of(query, query));
+        }
+        RouterSetup.Rule<T> rule = new RouterSetup.Rule<>(query, handler);
+        Entry<T> entry = new Entry<>(rule, nextSeq, 0, 0);
+        CharArray key = builder.isQuickMatch(rule) ? constKey(rule) : null;
+        if (key != null && constants.containsKey(key)) {
+            throw new RouteException("Duplicate constant rules found: " + List.of(constants.get(key), handler));
+        }
+        if (builder.isInStateMachine(rule)) {
+            root = insert(root, entry);  // doesn't modify anything if throws
+        }
+        if (key != null) {
+            putConstant(rule);
+        }
+        rules.put(query, entry);
+        nextSeq++;
+        return this;
+    }
+
+    public IncrementalRouterSetup<T> add(String query, T handler) {
+        List<Token> tokens = parser.parse(query);
+        return add(new StringQuery(query, tokens), handler);
+    }
+
+    /**
+     * Removes the rule with the {@code query}.
+     *
+     * @return true if the rule was found
+     */
+    public boolean remove(Query query) {
+        Entry<T> entry = rules.get(query);
+        if (entry == null) {
+            return false;
+        }
+        RouterSetup.Rule<T> rule = entry.rule();
+        if (builder.isInStateMachine(rule)) {
+            Draft<T> draft = delete(root, entry.seq());
+            root = draft != null ? draft : buildDraft(root.token, List.of());
+        }
+        if (builder.isQuickMatch(rule)) {
+            constants.remove(constKey(rule));
+            quickMatchIndex = null;
+        }
+        rules.remove(query);
+        return true;
+    }
+
+    public boolean remove(String query) {
+        return remove(new StringQuery(query, parser.parse(query)));
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public Router<T> build() {
+        if (quickMatchIndex == null) {
+            quickMatchIndex = builder.buildQuickMatchIndex(constants);
+        }
+        return builder.buildRouter(quickMatchIndex, constants.keySet(), buildStateMachine());
+    }
+
+    /*package*/ Router.Node<T> buildStateMachine() {
+        return node(root);
+    }
+
+    private void putConstant(RouterSetup.Rule<T> rule) {
+        T previous = constants.putIfAbsent(constKey(rule), rule.handler());
+        if (previous != null) {
+            throw new RouteException("Duplicate constant rules found: " + List.of(previous, rule.handler()));
+        }
+        quickMatchIndex = null;
+    }
+
+    private static CharArray constKey(RouterSetup.Rule<?> rule) {
+        return ((ConstToken) rule.query().tokens().get(0)).buffer();
+    }
+
+    // Creates the node from the drafts, reusing the nodes of the unchanged drafts.
+    private static <T> Router.Node<T> node(Draft<T> draft) {
+        if (draft.node == null) {
+            List<Router.Node<T>> compact = new ArrayList<>(draft.children.size());
+            for (Draft<T> child : draft.children) {
+                if (child.compact == null) {
+                    child.compact = RouterBuilder.compactJoinable(node(child));  // recursion
+                }
+                compact.add(child.compact);
+            }
+            RouterSetup.Rule<T> terminalRule = draft.terminal != null ? draft.terminal.rule() : null;
+            draft.node = RouterBuilder.newNode(draft.token, compact, terminalRule);
+        }
+        return draft.node;
+    }
+
+    // Same as `RouterBuilder.buildNode()`: the `entries` are in the order of the rules.
+    private Draft<T> buildDraft(Token token, List<Entry<T>> entries) {
+        Draft<T> draft = new Draft<>(token);
+        for (Entry<T> entry : entries) {
+            CharArray head = entry.constHead();
+            if (entry.isEmpty()) {
+                checkTerminal(draft, entry);
+                draft.terminal = entry;
+            } else if (head != null) {
+                draft.prefix = RouterBuilder.commonPrefix(draft.prefix, head);
+                draft.consts++;
+            }
+            draft.entries.add(entry);
+        }
+        Map<Token, List<Entry<T>>> groups = new LinkedHashMap<>();  // preserve the order
+        for (Entry<T> entry : entries) {
+            if (!entry.isEmpty()) {
+                int cut = cut(draft.prefix, entry);
+                groups.computeIfAbsent(entry.group(cut), key -> new ArrayList<>()).add(entry.advance(cut));
+            }
+        }
+        for (Map.Entry<Token, List<Entry<T>>> group : groups.entrySet()) {
+            checkVariables(draft, group.getKey());
+            draft.add(buildDraft(group.getKey(), group.getValue()));  // recursion
+        }
+        return draft;
+    }
+
+    // Adds the `entry` to the subtree, returns the draft to replace the `draft` with.
+    // All checks are done before modifying anything: the drafts are updated on the way back.
+    private Draft<T> insert(Draft<T> draft, Entry<T> entry) {
+        if (entry.isEmpty()) {
+            checkTerminal(draft, entry);
+            draft.entries.add(entry);
+            draft.terminal = entry;
+            draft.changed();
+            return draft;
+        }
+        CharArray head = entry.constHead();
+        CharArray prefix = head != null ? RouterBuilder.commonPrefix(draft.prefix, head) : draft.prefix;
+        if (draft.consts > 0 && changesSplit(draft.prefix, prefix)) {
+            List<Entry<T>> entries = new ArrayList<>(draft.entries);
+            entries.add(entry);
+            return buildDraft(draft.token, entries);
+        }
+
+        int cut = cut(prefix, entry);
+        Token token = entry.group(cut);
+        Draft<T> child = draft.child(token);
+        Draft<T> patched;
+        if (child != null) {
+            patched = insert(child, entry.advance(cut));  // recursion
+        } else {
+            checkVariables(draft, token);
+            patched = buildDraft(token, List.of(entry.advance(cut)));
+        }
+
+        if (child == null) {
+            draft.add(patched);  // the new rule is the last one, so is its group
+        } else if (patched != child) {
+            draft.replace(child, patched);
+        }
+        draft.entries.add(entry);
+        draft.consts += head != null ? 1 : 0;
+        draft.prefix = prefix;
+        draft.changed();
+        return draft;
+    }
+
+    // Removes the entry of the rule `seq` from the subtree, returns the draft to replace the `draft` with
+    // or null if the subtree is empty.
+    private Draft<T> delete(Draft<T> draft, long seq) {
+        int index = draft.indexOf(seq);
+        Entry<T> entry = draft.entries.get(index);
+        if (draft.entries.size() == 1) {
+            return null;
+        }
+        if (entry.isEmpty()) {
+            draft.entries.remove(index);
+            draft.terminal = null;
+            draft.changed();
+            return draft;
+        }
+        CharArray head = entry.constHead();
+        CharArray prefix = head != null ? commonPrefix(draft.entries, index, draft.prefix) : draft.prefix;
+        if (draft.consts > 1 && changesSplit(draft.prefix, prefix)) {
+            List<Entry<T>> entries = new ArrayList<>(draft.entries);
+            entries.remove(index);
+            return buildDraft(draft.token, entries);
+        }
+
+        int cut = cut(draft.prefix, entry);
+        Draft<T> child = draft.child(entry.group(cut));
+        long first = child.entries.get(0).seq();
+        Draft<T> patched = delete(child, seq);  // recursion
+
+        if (patched == null) {
+            draft.remove(child);
+        } else if (patched != child || first == seq) {
+            draft.remove(child);
+            draft.insert(patched);  // the group may move down, after the next first rule
+        }
+        draft.entries.remove(index);
+        draft.consts -= head != null ? 1 : 0;
+        draft.prefix = draft.consts > 0 ? prefix : null;
+        draft.changed();
+        return draft;
+    }
+
+    // The split of the const heads changes, i.e. the entries of the other rules might be split differently.
+    private boolean changesSplit(CharArray before, CharArray after) {
+        boolean byPrefix = builder.isSplitByPrefix(before);
+        return byPrefix != builder.isSplitByPrefix(after) || byPrefix && before.length() != after.length();
+    }
+
+    // The length of the head of the entry in the group token.
+    private int cut(CharArray prefix, Entry<T> entry) {
+        CharArray head = entry.constHead();
+        if (head == null) {
+            return -1;
+        }
+        if (builder.isSplitByPrefix(prefix)) {
+            return prefix.length();
+        }
+        int index = builder.separatorIndex(head);
+        return index >= 0 ? index : head.length();
+    }
+
+    // The common prefix of the const heads other than at `skip`: the `known` is the prefix of all the heads,
+    // so it's not necessary to go further once the result is as short.
+    private static <T> CharArray commonPrefix(List<Entry<T>> entries, int skip, CharArray known) {
+        CharArray result = null;
+        for (int i = 0; i < entries.size(); i++) {
+            CharArray head = i != skip ? entries.get(i).constHead() : null;
+            if (head != null) {
+                result = RouterBuilder.commonPrefix(result, head);
+                if (result.length() == known.length()) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static <T> void checkTerminal(Draft<T> draft, Entry<T> entry) {
+        if (draft.terminal != null) {
+            throw new RouteException("Duplicate rules found: " + List.of(draft.terminal.rule().query(), entry.rule().query()));
+        }
+    }
+
+    // Same as `Router.Node` checks, but before creating anything.
+    private static <T> void checkVariables(Draft<T> draft, Token token) {
+        if (token instanceof SeparableVariableToken) {
+            for (Draft<T> child : draft.children) {
+                if (child.token instanceof SeparableVariableToken) {
+                    throw new RouteException(
+                            ("A node `%s` can not have several follow-up variable tokens rules: " +
+                            "%s (one of the variables will never match)").formatted(draft.token, List.of(child.token, token))
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * The rule with the tokens left on entering the node: starts at the {@code index} token,
+     * the const token is cut at the {@code offset}.
+     */
+    private record Entry<T>(RouterSetup.Rule<T> rule, long seq, int index, int offset) {
+        boolean isEmpty() {
+            return index == rule.query().tokens().size();
+        }
+
+        CharArray constHead() {
+            if (!isEmpty() && rule.query().tokens().get(index) instanceof ConstToken constToken) {
+                return offset > 0 ? constToken.buffer().substringFrom(offset) : constToken.buffer();
+            }
+            return null;
+        }
+
+        // The token of the group with the head cut at `cut` (or the whole non-const head).
+        Token group(int cut) {
+            Token token = rule.query().tokens().get(index);
+            if (cut < 0 || offset == 0 && cut == constHead().length()) {
+                return token;
+            }
+            return new ConstToken(constHead().substringUntil(cut));
+        }
+
+        Entry<T> advance(int cut) {
+            if (cut < 0 || cut == constHead().length()) {
+                return new Entry<>(rule, seq, index + 1, 0);
+            }
+            return new Entry<>(rule, seq, index, offset + cut);
+        }
+    }
+
+    private static final class Draft<T> {
+        private final Token token;
+        private final List<Entry<T>> entries = new ArrayList<>();  // ordered by `seq`
+        private final List<Draft<T>> children = new ArrayList<>();  // ordered by the first entry
+        private final Map<Token, Draft<T>> byToken = new HashMap<>();
+        private Entry<T> terminal;
+        private CharArray prefix;  // the common prefix of the const heads
+        private int consts;        // the number of the const heads
+        private Router.Node<T> node;
+        private Router.Node<T> compact;  // the `node` joined with its single child (see `RouterBuilder.compactJoinable()`)
+
+        private Draft(Token token) {
+            this.token = token;
+        }
+
+        void changed() {
+            node = null;
+            compact = null;
+        }
+
+        Draft<T> child(Token token) {
+            return byToken.get(token);
+        }
+
+        int indexOf(long seq) {
+            int low = 0;
+            int high = entries.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = entries.get(mid).seq();
+                if (value < seq) {
+                    low = mid + 1;
+                } else if (value > seq) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            throw new IllegalStateException("Entry not found: " + seq);
+        }
+
+        void add(Draft<T> child) {
+            children.add(child);
+            byToken.put(child.token, child);
+        }
+
+        void insert(Draft<T> child) {
+            long first = child.entries.get(0).seq();
+            int index = 0;
+            while (index < children.size() && children.get(index).entries.get(0).seq() < first) {
+                index++;
+            }
+            children.add(index, child);
+            byToken.put(child.token, child);
+        }
+
+        void replace(Draft<T> child, Draft<T> patched) {
+            children.set(children.indexOf(child), patched);
+            byToken.put(patched.token, patched);
+        }
+
+        void remove(Draft<T> child) {
+            children.remove(child);
+            byToken.remove(child.token);
+        }
+    }
+}
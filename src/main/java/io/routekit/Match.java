@@ -1,15 +1,232 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
 
 /**
  * The routing result of matching a query against the rules.
  * The {@code handler} is the endpoint set up in the rules.
- * The {@code variables} is a (possibly empty) map of variables from the matched rule.
+ * The variables of the matched rule are accessible by slot (see {@link VariableSchema}) or by name.
+ * The {@code variables} map view is a (possibly empty) unmodifiable map of variables, built lazily on first access.
+ * When routed from the UTF-8 bytes, the variables are decoded on access (see also {@link #variableBytes(int)}).
+ * The values of the typed variables are parsed on access (see {@link #longValue(int)}).
  *
  * @param <T> handler type
  */
-public record Match<T>(T handler, Map<String, CharArray> variables) {
+public final class Match<T> {
+    private final T handler;
+    private final VariableSchema schema;
+    private final CharArray input;
+    private final ByteArray inputBytes;
+    private final int[] offsets;
+    private Map<String, CharArray> variables;  // unmodifiable: the final field of the wrapper publishes the map
+
+    /*package*/ Match(T handler, VariableSchema schema, CharArray input, int[] offsets) {
+        assert offsets.length == 2 * schema.size() : "Offsets don't match the schema: " + schema;
+        this.handler = handler;
+        this.schema = schema;
+        this.input = input;
+        this.inputBytes = null;
+        this.offsets = offsets;
+    }
+
+    /*package*/ Match(T handler, VariableSchema schema, ByteArray inputBytes, int[] offsets) {
+        assert offsets.length == 2 * schema.size() : "Offsets don't match the schema: " + schema;
+        this.handler = handler;
+        this.schema = schema;
+        this.input = null;
+        this.inputBytes = inputBytes;
+        this.offsets = offsets;
+    }
+
+    public Match(T handler, Map<String, CharArray> variables) {
+        this.handler = handler;
+        this.schema = VariableSchema.of(variables.keySet().toArray(String[]::new));
+        this.input = null;
+        this.inputBytes = null;
+        this.offsets = null;
+        this.variables = Collections.unmodifiableMap(new LinkedHashMap<>(variables));
+    }
+
+    public T handler() {
+        return handler;
+    }
+
+    public VariableSchema schema() {
+        return schema;
+    }
+
+    /**
+     * Returns the variable value by its slot in the rule {@link #schema()}.
+     */
+    public CharArray variable(int slot) {
+        if (offsets == null) {
+            return variables.get(schema.name(slot));
+        }
+        if (inputBytes != null) {
+            return inputBytes.substring(offsets[2 * slot], offsets[2 * slot + 1]).decode();
+        }
+        return input.substring(offsets[2 * slot], offsets[2 * slot + 1]);
+    }
+
+    /**
+     * Returns the UTF-8 encoded variable value by its slot. Doesn't decode or encode if routed from the bytes.
+     */
+    public ByteArray variableBytes(int slot) {
+        if (inputBytes != null) {
+            return inputBytes.substring(offsets[2 * slot], offsets[2 * slot + 1]);
+        }
+        return new ByteArray(variable(slot).toString());
+    }
+
+    /**
+     * Returns the variable value by its name or null if the rule has no such variable.
+     */
+    public CharArray variable(String name) {
+        int slot = schema.slotOf(name);
+        return slot >= 0 ? variable(slot) : null;
+    }
+
+    /**
+     * Returns the value of the {@code int} or {@code long} typed variable (see {@link TypedVariableToken.Type}).
+     */
+    public long longValue(int slot) {
+        return parse(slot, TypedVariableToken.Type.INT, TypedVariableToken.Type.LONG, false);
+    }
+
+    public long longValue(String name) {
+        return longValue(slotOfOrThrow(name));
+    }
+
+    public int intValue(int slot) {
+        return (int) parse(slot, TypedVariableToken.Type.INT, TypedVariableToken.Type.INT, false);
+    }
+
+    public int intValue(String name) {
+        return intValue(slotOfOrThrow(name));
+    }
+
+    public UUID uuidValue(int slot) {
+        return new UUID(parse(slot, TypedVariableToken.Type.UUID, TypedVariableToken.Type.UUID, false),
+                        parse(slot, TypedVariableToken.Type.UUID, TypedVariableToken.Type.UUID, true));
+    }
+
+    public UUID uuidValue(String name) {
+        return uuidValue(slotOfOrThrow(name));
+    }
+
+    private long parse(int slot, TypedVariableToken.Type type, TypedVariableToken.Type other, boolean lowBits) {
+        TypedVariableToken.Type actual = schema.type(slot);
+        if (actual != type && actual != other) {
+            throw new RouteException("The variable `%s` is not of the type %s: %s".formatted(schema.name(slot), type, actual));
+        }
+        // Note: the match created from the map has no typed variables
+        int start = offsets[2 * slot];
+        int end = offsets[2 * slot + 1];
+        if (inputBytes != null) {
+            return lowBits ? actual.lowBits(inputBytes, start, end) : actual.value(inputBytes, start, end);
+        }
+        return lowBits ? actual.lowBits(input, start, end) : actual.value(input, start, end);
+    }
+
+    private int slotOfOrThrow(String name) {
+        int slot = schema.slotOf(name);
+        if (slot < 0) {
+            throw new RouteException("The matched rule has no variable `%s`: %s".formatted(name, schema));
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the map view of the variables, preserving the order of the rule.
+     */
+    public Map<String, CharArray> variables() {
+        if (variables == null) {
+            if (schema.isEmpty()) {
+                variables = Collections.emptyMap();
+            } else {
+                Map<String, CharArray> map = new LinkedHashMap<>();
+                for (int i = 0; i < schema.size(); i++) {
+                    map.put(schema.name(i), variable(i));
+                }
+                variables = Collections.unmodifiableMap(map);
+            }
+        }
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Match[handler=").append(handler).append(", variables={");
+        for (int i = 0; i < schema.size(); i++) {
+            builder.append(i > 0 ? ", " : "").append(schema.name(i)).append('=').append(variable(i));
+        }
+        return builder.append("}]").toString();
+    }
+
+    // Same as the equality of the `variables()` maps (the order doesn't matter), without building them:
+    // the variables are compared as the slices of the inputs.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Match<?> that) || !Objects.equals(handler, that.handler) || schema.size() != that.schema.size()) {
+            return false;
+        }
+        for (int i = 0; i < schema.size(); i++) {
+            int slot = that.schema.slotOf(schema.name(i));
+            if (slot < 0 || !variableEquals(i, that, slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same as the hash of the `variables()` map.
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < schema.size(); i++) {
+            hash += schema.name(i).hashCode() ^ variableHash(i);
+        }
+        return 31 * Objects.hashCode(handler) + hash;
+    }
+
+    private boolean variableEquals(int slot, Match<?> that, int thatSlot) {
+        if (offsets == null || that.offsets == null || (input == null) != (that.input == null)) {
+            return Objects.equals(variable(slot), that.variable(thatSlot));  // the map or the different encodings
+        }
+        int start = offsets[2 * slot];
+        int thatStart = that.offsets[2 * thatSlot];
+        int length = offsets[2 * slot + 1] - start;
+        if (that.offsets[2 * thatSlot + 1] - thatStart != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input != null ? input.charAt(start + i) != that.input.charAt(thatStart + i) :
+                    inputBytes.byteAt(start + i) != that.inputBytes.byteAt(thatStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same as `variable(slot).hashCode()`.
+    private int variableHash(int slot) {
+        if (offsets == null || input == null) {
+            return Objects.hashCode(variable(slot));
+        }
+        int hash = 1;
+        for (int i = offsets[2 * slot]; i < offsets[2 * slot + 1]; i++) {
+            hash = 31 * hash + input.charAt(i);
+        }
+        return hash;
+    }
 }
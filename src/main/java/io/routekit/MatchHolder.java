@@ -0,0 +1,431 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import io.routekit.util.MutableByteArray;
+import io.routekit.util.MutableCharArray;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A reusable routing result, filled by {@link Router#routeInto(CharArray, MatchHolder)}.
+ * <p>
+ * Unlike {@link Match}, the holder stores only the handler and the variable offsets into the input,
+ * so that a successful route (with or without variables) doesn't allocate anything.
+ * The holder is reset on each routing call and isn't thread-safe: the intended use is one holder per thread.
+ * Passing the holder explicitly is the way to reuse the scratch space where a thread-local doesn't fit,
+ * e.g. on many short-lived threads; the {@code routeOrNull} calls reuse a thread-local holder instead.
+ * <p>
+ * Note: the variables are the views into the routed input, hence are valid only as long as the input isn't modified.
+ * When routed from the bytes (see {@link Router#routeInto(ByteArray, MatchHolder)}), the offsets are in bytes,
+ * and the input is available via {@link #inputBytes()}.
+ * <p>
+ * The values of the typed variables (see {@link TypedVariableToken}) are parsed once the rule is matched,
+ * so that {@link #longValue(int)} and others don't allocate the strings.
+ *
+ * @param <T> handler type
+ */
+public final class MatchHolder<T> {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final char[] EMPTY = new char[0];
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final int[] NO_INDEXES = new int[0];
+    // The larger scratch arrays aren't retained by the thread-local holder after the call.
+    private static final int MAX_RETAINED_SCRATCH = 1 << 16;
+    // The scratch of the routing calls without the caller's holder (see `Router.routeOrNull`).
+    private static final ThreadLocal<MatchHolder<?>> LOCAL = ThreadLocal.withInitial(MatchHolder::new);
+
+    private final MutableCharArray cursor = new MutableCharArray(EMPTY);
+    private final MutableCharArray charView = new MutableCharArray(EMPTY);
+    private char[] charScratch = EMPTY;
+    private final MutableByteArray byteCursor = new MutableByteArray(EMPTY_BYTES);
+    private final MutableByteArray byteView = new MutableByteArray(EMPTY_BYTES);
+    private byte[] byteScratch = EMPTY_BYTES;
+    private int[] indexScratch = NO_INDEXES;
+    private final MutableCharArray hashedView = new HashedView();
+    private CharArray input;
+    private int inputHash;
+    private boolean isHashed;
+    private ByteArray inputBytes;
+    private T handler;
+    private VariableSchema schema = VariableSchema.EMPTY;
+    private int[] offsets;
+    private long[] values;  // two per slot: the typed value or the UUID bits
+    private int size;
+    private boolean borrowed;
+
+    public MatchHolder(int capacity) {
+        this.offsets = new int[capacity * 2];
+        this.values = new long[capacity * 2];
+    }
+
+    public MatchHolder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns true if the last routing call was successful.
+     */
+    public boolean isMatched() {
+        return handler != null;
+    }
+
+    public T handler() {
+        return handler;
+    }
+
+    /**
+     * Returns the routed chars input or null if the bytes were routed.
+     */
+    public CharArray input() {
+        return input;
+    }
+
+    /**
+     * Returns the routed bytes input or null if the chars were routed.
+     */
+    public ByteArray inputBytes() {
+        return inputBytes;
+    }
+
+    /**
+     * Returns the variable schema of the matched rule, i.e. the mapping from the variable names to slots.
+     */
+    public VariableSchema schema() {
+        return schema;
+    }
+
+    /**
+     * Returns the number of variables captured by the last match.
+     */
+    public int size() {
+        return size;
+    }
+
+    public String name(int slot) {
+        assert slot >= 0 && slot < size : "Variable slot is out of bounds: %d".formatted(slot);
+        return schema.name(slot);
+    }
+
+    /**
+     * Returns the start offset of the variable value, relative to the input.
+     */
+    public int start(int slot) {
+        assert slot >= 0 && slot < size : "Variable slot is out of bounds: %d".formatted(slot);
+        return offsets[2 * slot];
+    }
+
+    /**
+     * Returns the end offset (exclusive) of the variable value, relative to the input.
+     */
+    public int end(int slot) {
+        assert slot >= 0 && slot < size : "Variable slot is out of bounds: %d".formatted(slot);
+        return offsets[2 * slot + 1];
+    }
+
+    public int slotOf(String name) {
+        return schema.slotOf(name);
+    }
+
+    /**
+     * Returns the variable value as a view into the input. Note: allocates a new view,
+     * use {@link #start(int)} and {@link #end(int)} for allocation-free access.
+     */
+    public CharArray variable(int slot) {
+        if (inputBytes != null) {
+            return inputBytes.substring(start(slot), end(slot)).decode();
+        }
+        return input.substring(start(slot), end(slot));
+    }
+
+    /**
+     * Returns the UTF-8 encoded variable value as a view into the bytes input.
+     * Note: expects the bytes input, see {@link #inputBytes()}.
+     */
+    public ByteArray variableBytes(int slot) {
+        assert inputBytes != null : "The holder doesn't contain the bytes input";
+        return inputBytes.substring(start(slot), end(slot));
+    }
+
+    /**
+     * Returns the variable value by its name or null if the matched rule has no such variable.
+     */
+    public CharArray variable(String name) {
+        int slot = slotOf(name);
+        return slot >= 0 ? variable(slot) : null;
+    }
+
+    /**
+     * Returns the value of the {@code int} or {@code long} typed variable (see {@link TypedVariableToken.Type}).
+     */
+    public long longValue(int slot) {
+        checkType(slot, TypedVariableToken.Type.INT, TypedVariableToken.Type.LONG);
+        return values[2 * slot];
+    }
+
+    public long longValue(String name) {
+        return longValue(slotOfOrThrow(name));
+    }
+
+    /**
+     * Returns the value of the {@code int} typed variable.
+     */
+    public int intValue(int slot) {
+        checkType(slot, TypedVariableToken.Type.INT, TypedVariableToken.Type.INT);
+        return (int) values[2 * slot];
+    }
+
+    public int intValue(String name) {
+        return intValue(slotOfOrThrow(name));
+    }
+
+    /**
+     * Returns the value of the {@code uuid} typed variable. Note: allocates the {@link UUID},
+     * use {@link #uuidMostBits(int)} and {@link #uuidLeastBits(int)} for allocation-free access.
+     */
+    public UUID uuidValue(int slot) {
+        return new UUID(uuidMostBits(slot), uuidLeastBits(slot));
+    }
+
+    public UUID uuidValue(String name) {
+        return uuidValue(slotOfOrThrow(name));
+    }
+
+    public long uuidMostBits(int slot) {
+        checkType(slot, TypedVariableToken.Type.UUID, TypedVariableToken.Type.UUID);
+        return values[2 * slot];
+    }
+
+    public long uuidLeastBits(int slot) {
+        checkType(slot, TypedVariableToken.Type.UUID, TypedVariableToken.Type.UUID);
+        return values[2 * slot + 1];
+    }
+
+    private void checkType(int slot, TypedVariableToken.Type type, TypedVariableToken.Type other) {
+        assert slot >= 0 && slot < size : "Variable slot is out of bounds: %d".formatted(slot);
+        TypedVariableToken.Type actual = schema.type(slot);
+        if (actual != type && actual != other) {
+            throw new RouteException("The variable `%s` is not of the type %s: %s".formatted(schema.name(slot), type, actual));
+        }
+    }
+
+    private int slotOfOrThrow(String name) {
+        int slot = slotOf(name);
+        if (slot < 0) {
+            throw new RouteException("The matched rule has no variable `%s`: %s".formatted(name, schema));
+        }
+        return slot;
+    }
+
+    /**
+     * Converts the holder content into a standalone {@link Match}, or null if nothing was matched.
+     */
+    public Match<T> toMatchOrNull() {
+        if (handler == null) {
+            return null;
+        }
+        if (inputBytes != null) {
+            // The view may point to the reused scratch or the caller's buffer: copy the bytes
+            ByteArray bytes = inputBytes == byteView ? inputBytes.immutableCopy() : inputBytes.immutable();
+            return new Match<>(handler, schema, bytes, Arrays.copyOf(offsets, 2 * size));
+        }
+        // Same for the chars view
+        CharArray chars = input == charView ? new CharArray((CharSequence) input) : input.immutable();
+        return new Match<>(handler, schema, chars, Arrays.copyOf(offsets, 2 * size));
+    }
+
+    /*package*/ MutableCharArray reset(CharArray input) {
+        this.input = input;
+        this.inputBytes = null;
+        this.isHashed = false;
+        this.handler = null;
+        this.schema = VariableSchema.EMPTY;
+        this.size = 0;
+        cursor.reset(input);
+        return cursor;
+    }
+
+    /*package*/ MutableByteArray reset(ByteArray input) {
+        this.input = null;
+        this.inputBytes = input;
+        this.isHashed = false;
+        this.handler = null;
+        this.schema = VariableSchema.EMPTY;
+        this.size = 0;
+        byteCursor.reset(input);
+        return byteCursor;
+    }
+
+    // Returns the reusable view of the buffer remaining bytes: the heap buffers are wrapped,
+    // the direct ones are bulk-copied into the scratch array (the buffer position is not changed).
+    /*package*/ ByteArray view(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int start = buffer.arrayOffset() + buffer.position();
+            byteView.reset(buffer.array(), start, start + buffer.remaining());
+        } else {
+            int length = buffer.remaining();
+            if (byteScratch.length < length) {
+                byteScratch = new byte[Math.max(length, 2 * byteScratch.length)];
+            }
+            buffer.get(buffer.position(), byteScratch, 0, length);
+            byteView.reset(byteScratch, 0, length);
+        }
+        return byteView;
+    }
+
+    // Returns the reusable view of the chars: the heap char buffers are wrapped, other sequences are bulk-copied
+    // into the scratch array, without the intermediate `String` (the buffer position is not changed).
+    /*package*/ CharArray view(CharSequence input) {
+        if (input instanceof CharArray array) {
+            return array;
+        }
+        if (input instanceof CharBuffer buffer && buffer.hasArray()) {
+            int start = buffer.arrayOffset() + buffer.position();
+            charView.reset(buffer.array(), start, start + buffer.remaining());
+        } else {
+            int length = input.length();
+            if (charScratch.length < length) {
+                charScratch = new char[Math.max(length, 2 * charScratch.length)];
+            }
+            CharArray.getChars(input, 0, length, charScratch, 0);
+            charView.reset(charScratch, 0, length);
+        }
+        return charView;
+    }
+
+    // Returns the thread-local holder, or a new one if it's in use by the enclosing routing on the same thread
+    // (e.g. from a custom token). Must be given back after the result is copied out (see `toMatchOrNull`).
+    @SuppressWarnings("unchecked")
+    /*package*/ static <T> MatchHolder<T> borrowLocal() {
+        MatchHolder<?> holder = LOCAL.get();
+        if (holder.borrowed) {
+            return new MatchHolder<>();
+        }
+        holder.borrowed = true;
+        return (MatchHolder<T>) holder;
+    }
+
+    // Drops the references to the routed input and the result, so that the idle holder doesn't retain them.
+    /*package*/ void giveBack() {
+        input = null;
+        inputBytes = null;
+        isHashed = false;
+        clear();
+        cursor.reset(EMPTY, 0, 0);
+        hashedView.reset(EMPTY, 0, 0);
+        charView.reset(EMPTY, 0, 0);
+        byteCursor.reset(EMPTY_BYTES, 0, 0);
+        byteView.reset(EMPTY_BYTES, 0, 0);
+        if (charScratch.length > MAX_RETAINED_SCRATCH) {
+            charScratch = EMPTY;
+        }
+        if (byteScratch.length > MAX_RETAINED_SCRATCH) {
+            byteScratch = EMPTY_BYTES;
+        }
+        if (indexScratch.length > MAX_RETAINED_SCRATCH) {
+            indexScratch = NO_INDEXES;
+        }
+        borrowed = false;
+    }
+
+    // Returns the reusable array of at least `size` ints, e.g. the indexes of the batch (see `Router.routeAll`).
+    /*package*/ int[] indexScratch(int size) {
+        if (indexScratch.length < size) {
+            indexScratch = new int[Math.max(size, 2 * indexScratch.length)];
+        }
+        return indexScratch;
+    }
+
+    // The hash of the input of the last `reset(CharArray)` call, computed at most once per call: shared by
+    // the result cache, the constant index and the admission (see `CachingRouter`). Not kept on the input itself,
+    // which may be the caller's buffer refilled in place between the calls.
+    /*package*/ int inputHash() {
+        if (!isHashed) {
+            inputHash = input.hashCode();
+            isHashed = true;
+        }
+        return inputHash;
+    }
+
+    // The view of the input of the last `reset(CharArray)` call with the hash of `inputHash()`, the lookup key
+    // of the hash maps.
+    /*package*/ CharArray hashedInput() {
+        hashedView.reset(input);
+        return hashedView;
+    }
+
+    // The cursor of the last `reset(CharArray)` call.
+    /*package*/ MutableCharArray cursor() {
+        return cursor;
+    }
+
+    /*package*/ void addVariable(int start, int end) {
+        if (2 * size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * (2 * size + 1));
+        }
+        offsets[2 * size] = start;
+        offsets[2 * size + 1] = end;
+        size++;
+    }
+
+    // Drops the variables captured after the first `size` (see `Router.backtrack`).
+    /*package*/ void truncate(int size) {
+        this.size = size;
+    }
+
+    /*package*/ void setMatch(T handler, VariableSchema schema) {
+        assert schema.size() == size : "Captured %d variables, but the schema is %s".formatted(size, schema);
+        this.handler = handler;
+        this.schema = schema;
+        if (schema.hasTypes()) {
+            parseValues();
+        }
+    }
+
+    // Parses the typed values of the matched rule, valid as checked by the tokens.
+    private void parseValues() {
+        if (values.length < offsets.length) {
+            values = new long[offsets.length];
+        }
+        for (int slot = 0; slot < size; slot++) {
+            TypedVariableToken.Type type = schema.type(slot);
+            if (type == null) {
+                continue;
+            }
+            int start = offsets[2 * slot];
+            int end = offsets[2 * slot + 1];
+            if (inputBytes != null) {
+                values[2 * slot] = type.value(inputBytes, start, end);
+                values[2 * slot + 1] = type.lowBits(inputBytes, start, end);
+            } else {
+                values[2 * slot] = type.value(input, start, end);
+                values[2 * slot + 1] = type.lowBits(input, start, end);
+            }
+        }
+    }
+
+    /*package*/ void clear() {
+        handler = null;
+        schema = VariableSchema.EMPTY;
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MatchHolder[%s]".formatted(toMatchOrNull());
+    }
+
+    private final class HashedView extends MutableCharArray {
+        private HashedView() {
+            super(EMPTY);
+        }
+
+        @Override
+        public int hashCode() {
+            return inputHash();
+        }
+    }
+}
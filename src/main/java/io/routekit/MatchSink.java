@@ -0,0 +1,16 @@
+package io.routekit;
+
+/**
+ * The consumer of the batch routing results (see {@link Router#routeAll(io.routekit.util.CharArray[], MatchSink)}).
+ *
+ * @param <T> handler type
+ */
+@FunctionalInterface
+public interface MatchSink<T> {
+    /**
+     * Accepts the result of routing the input at {@code index} in the batch: the {@code holder} is either matched
+     * or not (see {@link MatchHolder#isMatched()}). The holder is reused for the next input, so it's valid only
+     * during the call: use {@link MatchHolder#toMatchOrNull()} to keep the result.
+     */
+    void accept(int index, MatchHolder<T> holder);
+}
@@ -0,0 +1,225 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+/**
+ * Same as {@link OpenHashIndex}, but the slots and the keys pool are stored off-heap, in a single direct
+ * {@link ByteBuffer} (little-endian). The handlers are kept on-heap in the array indexed by the id stored in the slot.
+ * <p>
+ * Each slot is four ints: the cached key hash, the pool offset, the key length and the handler id plus one
+ * (zero for the empty slot). The keys pool (chars) follows the slots.
+ * <p>
+ * Closing the index releases the buffer (see {@link OffHeapTrie} for the details).
+ *
+ * @param <T> handler type
+ */
+/*package*/ final class OffHeapIndex<T> implements QuickMatchIndex<T>, AutoCloseable {
+    private static final double LOAD_FACTOR = 0.5;
+    private static final int SLOT = 16;
+    private static final int HASH = 0;
+    private static final int OFFSET = 4;
+    private static final int LENGTH = 8;
+    private static final int ID = 12;
+
+    private final int mask;
+    private final int poolBase;
+    private final Object[] handlers;
+    private final long[] lengthBits;
+    private final boolean asciiKeys;
+    private ByteBuffer memory;
+
+    // Wraps the `memory` filled by `of()`, which may be also mapped from a snapshot file.
+    /*package*/ OffHeapIndex(ByteBuffer memory, int capacity, Object[] handlers, long[] lengthBits, boolean asciiKeys) {
+        this.mask = capacity - 1;
+        this.poolBase = capacity * SLOT;
+        this.handlers = handlers;
+        this.lengthBits = lengthBits;
+        this.asciiKeys = asciiKeys;
+        this.memory = memory.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static <T> OffHeapIndex<T> of(Map<CharArray, T> map) {
+        int poolSize = map.keySet().stream().mapToInt(CharArray::length).sum();
+        int maxLength = map.keySet().stream().mapToInt(CharArray::length).max().orElse(0);
+        int capacity = Integer.highestOneBit(Math.max((int) (map.size() / LOAD_FACTOR), 1) * 2 - 1);
+        boolean asciiKeys = map.keySet().stream().allMatch(key -> key.chars().allMatch(ch -> ch < 0x80));
+        long poolBase = (long) capacity * SLOT;
+        if (poolBase + 2L * poolSize > Integer.MAX_VALUE) {
+            throw new RouteException("The index is too large to store off-heap: %d keys".formatted(map.size()));
+        }
+        ByteBuffer memory = ByteBuffer.allocateDirect((int) poolBase + 2 * poolSize).order(ByteOrder.LITTLE_ENDIAN);
+        Object[] handlers = new Object[map.size()];
+        long[] lengthBits = new long[(maxLength >> 6) + 1];
+
+        int mask = capacity - 1;
+        int offset = 0;
+        int id = 0;
+        for (Map.Entry<CharArray, T> entry : map.entrySet()) {
+            CharArray key = entry.getKey();
+            int hash = key.hashCode();
+            int slot = mix(hash) & mask;
+            while (memory.getInt(slot * SLOT + ID) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                memory.putChar((int) poolBase + 2 * (offset + i), key.charAt(i));
+            }
+            memory.putInt(slot * SLOT + HASH, hash);
+            memory.putInt(slot * SLOT + OFFSET, offset);
+            memory.putInt(slot * SLOT + LENGTH, key.length());
+            memory.putInt(slot * SLOT + ID, id + 1);
+            handlers[id++] = entry.getValue();
+            lengthBits[key.length() >> 6] |= 1L << key.length();
+            offset += key.length();
+        }
+        return new OffHeapIndex<>(memory, capacity, handlers, lengthBits, asciiKeys);
+    }
+
+    @Override
+    public T get(CharArray input) {
+        ByteBuffer memory = checkOpen();
+        int length = input.length();
+        if (!hasLength(length)) {
+            return null;  // no key of this length: bail before hashing
+        }
+        return find(memory, input, input.hashCode());
+    }
+
+    @Override
+    public T get(CharArray input, MatchHolder<?> holder) {
+        ByteBuffer memory = checkOpen();
+        int length = input.length();
+        if (!hasLength(length)) {
+            return null;  // no key of this length: bail before hashing
+        }
+        return find(memory, input, holder.inputHash());
+    }
+
+    @SuppressWarnings("unchecked")
+    private T find(ByteBuffer memory, CharArray input, int hash) {
+        int length = input.length();
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int base = slot * SLOT;
+            int id = memory.getInt(base + ID);
+            if (id == 0) {
+                return null;
+            }
+            if (memory.getInt(base + HASH) == hash && memory.getInt(base + LENGTH) == length &&
+                contentEquals(memory, memory.getInt(base + OFFSET), input)) {
+                return (T) handlers[id - 1];
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(ByteArray input) {
+        ByteBuffer memory = checkOpen();
+        int length = input.length();
+        if (asciiKeys && !hasLength(length)) {
+            return null;  // the length in bytes is the same as in chars
+        }
+        if (!input.isAscii()) {
+            return asciiKeys ? null : get(input.decode());  // non-ASCII: can't match or has to be decoded
+        }
+        if (!hasLength(length)) {
+            return null;
+        }
+        int hash = input.hashCode();  // same as `CharArray.hashCode()` for ASCII
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int base = slot * SLOT;
+            int id = memory.getInt(base + ID);
+            if (id == 0) {
+                return null;
+            }
+            if (memory.getInt(base + HASH) == hash && memory.getInt(base + LENGTH) == length &&
+                latin1Equals(memory, memory.getInt(base + OFFSET), input)) {
+                return (T) handlers[id - 1];
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return handlers.length;
+    }
+
+    /**
+     * Returns the number of the off-heap bytes.
+     */
+    public long offHeapSize() {
+        return memory != null ? memory.capacity() : 0;
+    }
+
+    // The state to store into a snapshot (see `RouterSnapshot`).
+
+    /*package*/ int capacity() {
+        return mask + 1;
+    }
+
+    /*package*/ Object[] handlers() {
+        return handlers;
+    }
+
+    /*package*/ long[] lengthBits() {
+        return lengthBits;
+    }
+
+    /*package*/ boolean asciiKeys() {
+        return asciiKeys;
+    }
+
+    /*package*/ ByteBuffer memory() {
+        return checkOpen().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() {
+        memory = null;
+    }
+
+    private ByteBuffer checkOpen() {
+        ByteBuffer memory = this.memory;
+        if (memory == null) {
+            throw new IllegalStateException("The off-heap index is closed");
+        }
+        return memory;
+    }
+
+    private boolean contentEquals(ByteBuffer memory, int offset, CharArray input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (memory.getChar(poolBase + 2 * (offset + i)) != input.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean latin1Equals(ByteBuffer memory, int offset, ByteArray input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (memory.getChar(poolBase + 2 * (offset + i)) != input.at(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasLength(int length) {
+        return (length >> 6) < lengthBits.length && (lengthBits[length >> 6] & (1L << length)) != 0;
+    }
+
+    // Spreads the higher bits of the polynomial hash (same as `HashMap`).
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapIndex[size=%d, capacity=%d, bytes=%d]".formatted(handlers.length, mask + 1, offHeapSize());
+    }
+}
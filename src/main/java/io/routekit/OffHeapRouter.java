@@ -0,0 +1,43 @@
+package io.routekit;
+
+/**
+ * The router with the state machine and the constant rules index stored off-heap (see {@link OffHeapTrie}
+ * and {@link OffHeapIndex}), built by {@link RouterBuilder#buildOffHeapRouter}. The routing is the same
+ * as for the on-heap {@link Router}, only the handlers, the variable schemas and the custom tokens stay on-heap.
+ * <p>
+ * The router must be closed when no longer used: the routing after close throws {@link IllegalStateException}.
+ * Note: closing concurrently with the routing isn't supported.
+ *
+ * @param <T> handler type
+ */
+public final class OffHeapRouter<T> extends Router<T> implements AutoCloseable {
+    private final OffHeapIndex<T> index;
+    private final OffHeapTrie<T> trie;
+
+    /*package*/ OffHeapRouter(OffHeapIndex<T> index, OffHeapTrie<T> trie) {
+        super(index, trie, null, null);
+        this.index = index;
+        this.trie = trie;
+    }
+
+    /**
+     * Returns the number of the off-heap bytes used by the router (zero after close).
+     */
+    public long offHeapSize() {
+        return index.offHeapSize() + trie.offHeapSize();
+    }
+
+    /*package*/ OffHeapIndex<T> index() {
+        return index;
+    }
+
+    /*package*/ OffHeapTrie<T> trie() {
+        return trie;
+    }
+
+    @Override
+    public void close() {
+        index.close();
+        trie.close();
+    }
+}
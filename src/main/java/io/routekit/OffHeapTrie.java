@@ -0,0 +1,175 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@link FlatTrie} with the layout arrays stored off-heap, in a single direct {@link ByteBuffer},
+ * so that even the largest tries don't add to the old generation (only the handlers and the custom tokens stay on-heap).
+ * <p>
+ * The sections of the buffer (in the little-endian byte order, the same in memory and in the snapshot files):
+ * the int arrays first, then the chars pool, then the kinds and the UTF-8 bytes pool.
+ * <p>
+ * Closing the trie releases the buffer: the native memory is freed by the buffer cleaner on the next GC.
+ * The routing after close throws {@link IllegalStateException}. Note: the trie must not be closed concurrently
+ * with the routing.
+ *
+ * @param <T> handler type
+ */
+/*package*/ final class OffHeapTrie<T> extends FlatTrie<T> implements AutoCloseable {
+    private final int childStartBase;
+    private final int constEndBase;
+    private final int orderBase;
+    private final int terminalBase;
+    private final int charStartBase;
+    private final int byteStartBase;
+    private final int charsBase;
+    private final int kindsBase;
+    private final int bytesBase;
+    private final int charsLength;
+    private ByteBuffer memory;
+
+    // Wraps the `memory` written by `write()`, which may be also mapped from a snapshot file.
+    /*package*/ OffHeapTrie(ByteBuffer memory, int size, int charsLength,
+                            int[] customNodes, Token[] customTokens, int[] backtrackNodes,
+                            Object[] handlers, VariableSchema[] schemas) {
+        super(size, customNodes, customTokens, backtrackNodes, handlers, schemas);
+        this.childStartBase = 0;
+        this.constEndBase = childStartBase + 4 * (size + 1);
+        this.orderBase = constEndBase + 4 * size;
+        this.terminalBase = orderBase + 4 * size;
+        this.charStartBase = terminalBase + 4 * size;
+        this.byteStartBase = charStartBase + 4 * (size + 1);
+        this.charsBase = byteStartBase + 4 * (size + 1);
+        this.kindsBase = charsBase + 2 * charsLength;
+        this.bytesBase = kindsBase + size;
+        this.charsLength = charsLength;
+        this.memory = memory.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static <T> OffHeapTrie<T> of(Router.Node<T> root) {
+        Layout layout = Layout.of(root);
+        ByteBuffer memory = ByteBuffer.allocateDirect(byteSize(layout));
+        write(layout, memory);
+        return new OffHeapTrie<>(memory, layout.kinds().length, layout.chars().length,
+                                 layout.customNodes(), layout.customTokens(), layout.backtrackNodes(),
+                                 layout.handlers(), layout.schemas());
+    }
+
+    private static int byteSize(Layout layout) {
+        int size = layout.kinds().length;
+        long capacity = 4L * (size + 1) * 3 + 4L * size * 3 + 2L * layout.chars().length + size + layout.bytes().length;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new RouteException("The trie is too large to store off-heap: %d bytes".formatted(capacity));
+        }
+        return (int) capacity;
+    }
+
+    // The sections in the little-endian order: the int arrays first, then the chars pool, the kinds and the bytes pool.
+    private static void write(Layout layout, ByteBuffer memory) {
+        memory.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+                .put(layout.childStart())
+                .put(layout.constEnd())
+                .put(layout.order())
+                .put(layout.terminal())
+                .put(layout.charStart())
+                .put(layout.byteStart());
+        int charsBase = 4 * (3 * layout.childStart().length + 3 * layout.kinds().length);
+        memory.position(charsBase);
+        memory.asCharBuffer().put(layout.chars());
+        memory.position(charsBase + 2 * layout.chars().length);
+        memory.put(layout.kinds()).put(layout.bytes());
+        memory.clear();
+    }
+
+    /*package*/ int charsLength() {
+        return charsLength;
+    }
+
+    /**
+     * Returns the read-only view of the off-heap memory, e.g. to store it into a snapshot.
+     */
+    /*package*/ ByteBuffer memory() {
+        return checkOpen().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the number of the off-heap bytes.
+     */
+    public long offHeapSize() {
+        return memory != null ? memory.capacity() : 0;
+    }
+
+    @Override
+    public boolean navigate(CharArray input, MatchHolder<T> out) {
+        checkOpen();
+        return super.navigate(input, out);
+    }
+
+    @Override
+    public boolean navigate(ByteArray input, MatchHolder<T> out) {
+        checkOpen();
+        return super.navigate(input, out);
+    }
+
+    @Override
+    public void close() {
+        memory = null;
+    }
+
+    private ByteBuffer checkOpen() {
+        ByteBuffer memory = this.memory;
+        if (memory == null) {
+            throw new IllegalStateException("The off-heap trie is closed");
+        }
+        return memory;
+    }
+
+    @Override
+    protected byte kind(int node) {
+        return memory.get(kindsBase + node);
+    }
+
+    @Override
+    protected int childStart(int node) {
+        return memory.getInt(childStartBase + 4 * node);
+    }
+
+    @Override
+    protected int constEnd(int node) {
+        return memory.getInt(constEndBase + 4 * node);
+    }
+
+    @Override
+    protected int order(int node) {
+        return memory.getInt(orderBase + 4 * node);
+    }
+
+    @Override
+    protected int terminal(int node) {
+        return memory.getInt(terminalBase + 4 * node);
+    }
+
+    @Override
+    protected int charStart(int node) {
+        return memory.getInt(charStartBase + 4 * node);
+    }
+
+    @Override
+    protected char poolChar(int index) {
+        return memory.getChar(charsBase + 2 * index);
+    }
+
+    @Override
+    protected int byteStart(int node) {
+        return memory.getInt(byteStartBase + 4 * node);
+    }
+
+    @Override
+    protected byte poolByte(int index) {
+        return memory.get(bytesBase + index);
+    }
+}
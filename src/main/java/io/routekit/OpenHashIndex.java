@@ -0,0 +1,142 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.util.Map;
+
+/**
+ * An open-addressing (linear probing) hash table of the constant rules.
+ * <p>
+ * All keys are stored in one contiguous {@code char[]} pool, the slots are parallel primitive arrays
+ * with the cached key hashes, offsets and lengths, so the lookup doesn't chase the pointers of the map entries.
+ * The lengths of all keys are also kept as a bit set: the input of the length that no key has
+ * is rejected before computing its hash.
+ * <p>
+ * The UTF-8 input is hashed and compared directly as long as it's ASCII, otherwise it's decoded.
+ *
+ * @param <T> handler type
+ */
+/*package*/ final class OpenHashIndex<T> implements QuickMatchIndex<T> {
+    private static final double LOAD_FACTOR = 0.5;
+
+    private final int mask;
+    private final int[] hashes;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final Object[] handlers;
+    private final char[] pool;
+    private final long[] lengthBits;
+    private final int size;
+    private final boolean asciiKeys;
+
+    private OpenHashIndex(int capacity, int poolSize, int maxLength, int size, boolean asciiKeys) {
+        this.mask = capacity - 1;
+        this.hashes = new int[capacity];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+        this.handlers = new Object[capacity];
+        this.pool = new char[poolSize];
+        this.lengthBits = new long[(maxLength >> 6) + 1];
+        this.size = size;
+        this.asciiKeys = asciiKeys;
+    }
+
+    public static <T> OpenHashIndex<T> of(Map<CharArray, T> map) {
+        int poolSize = map.keySet().stream().mapToInt(CharArray::length).sum();
+        int maxLength = map.keySet().stream().mapToInt(CharArray::length).max().orElse(0);
+        int capacity = Integer.highestOneBit(Math.max((int) (map.size() / LOAD_FACTOR), 1) * 2 - 1);
+        boolean asciiKeys = map.keySet().stream().allMatch(key -> key.chars().allMatch(ch -> ch < 0x80));
+        OpenHashIndex<T> index = new OpenHashIndex<>(capacity, poolSize, maxLength, map.size(), asciiKeys);
+
+        int offset = 0;
+        for (Map.Entry<CharArray, T> entry : map.entrySet()) {
+            CharArray key = entry.getKey();
+            int hash = key.hashCode();
+            int slot = mix(hash) & index.mask;
+            while (index.handlers[slot] != null) {
+                slot = (slot + 1) & index.mask;
+            }
+            key.getChars(0, key.length(), index.pool, offset);
+            index.hashes[slot] = hash;
+            index.offsets[slot] = offset;
+            index.lengths[slot] = key.length();
+            index.handlers[slot] = entry.getValue();
+            index.lengthBits[key.length() >> 6] |= 1L << key.length();
+            offset += key.length();
+        }
+        return index;
+    }
+
+    @Override
+    public T get(CharArray input) {
+        int length = input.length();
+        if (!hasLength(length)) {
+            return null;  // no key of this length: bail before hashing
+        }
+        return find(input, input.hashCode());
+    }
+
+    @Override
+    public T get(CharArray input, MatchHolder<?> holder) {
+        int length = input.length();
+        if (!hasLength(length)) {
+            return null;  // no key of this length: bail before hashing
+        }
+        return find(input, holder.inputHash());
+    }
+
+    @SuppressWarnings("unchecked")
+    private T find(CharArray input, int hash) {
+        int length = input.length();
+        for (int slot = mix(hash) & mask; handlers[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && lengths[slot] == length &&
+                input.contentEquals(pool, offsets[slot], offsets[slot] + length)) {
+                return (T) handlers[slot];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(ByteArray input) {
+        int length = input.length();
+        if (asciiKeys && !hasLength(length)) {
+            return null;  // the length in bytes is the same as in chars
+        }
+        if (!input.isAscii()) {
+            return asciiKeys ? null : get(input.decode());  // non-ASCII: can't match or has to be decoded
+        }
+        if (!hasLength(length)) {
+            return null;
+        }
+        int hash = input.hashCode();  // same as `CharArray.hashCode()` for ASCII
+        for (int slot = mix(hash) & mask; handlers[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && lengths[slot] == length &&
+                input.latin1Equals(pool, offsets[slot], offsets[slot] + length)) {
+                return (T) handlers[slot];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private boolean hasLength(int length) {
+        return (length >> 6) < lengthBits.length && (lengthBits[length >> 6] & (1L << length)) != 0;
+    }
+
+    // Spreads the higher bits of the polynomial hash (same as `HashMap`).
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "OpenHashIndex[size=%d, capacity=%d, pool=%d]".formatted(size, handlers.length, pool.length);
+    }
+}
@@ -0,0 +1,193 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal perfect hash index of the constant rules, built with the "hash, displace and compress" (CHD) scheme.
+ * <p>
+ * The keys are hashed into the buckets (a few keys per bucket), then for each bucket, starting from the largest,
+ * a displacement seed is chosen such that all keys of the bucket land in the free slots. The buckets with a single key
+ * are placed directly into the remaining free slots. As a result, {@code n} keys occupy exactly {@code n} slots,
+ * stored in one contiguous {@code char[]} with offsets, and the lookup is one hash pass plus one key compare.
+ * <p>
+ * Compared to {@link OpenHashIndex}, the build is slower, but the index is more compact, which matters
+ * for very large static route sets.
+ *
+ * @param <T> handler type
+ */
+/*package*/ final class PerfectHashIndex<T> implements QuickMatchIndex<T> {
+    private static final int KEYS_PER_BUCKET = 4;
+    private static final int MAX_SEED = 1 << 24;
+
+    private final int[] seeds;      // per bucket: the displacement seed (>= 0) or a direct slot encoded as `-slot-1`
+    private final int[] offsets;    // per slot (plus one): the key range in the pool
+    private final Object[] handlers;
+    private final char[] pool;
+
+    private PerfectHashIndex(int[] seeds, int[] offsets, Object[] handlers, char[] pool) {
+        this.seeds = seeds;
+        this.offsets = offsets;
+        this.handlers = handlers;
+        this.pool = pool;
+    }
+
+    public static <T> PerfectHashIndex<T> of(Map<CharArray, T> map) {
+        int size = map.size();
+        CharArray[] keys = map.keySet().toArray(CharArray[]::new);
+        long[] hashes = Arrays.stream(keys).mapToLong(PerfectHashIndex::hash64).toArray();
+
+        int bucketCount = Math.max(size / KEYS_PER_BUCKET, 1);
+        List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>(KEYS_PER_BUCKET));
+        }
+        for (int i = 0; i < size; i++) {
+            buckets.get(bucketOf(hashes[i], bucketCount)).add(i);
+        }
+        Integer[] order = new Integer[bucketCount];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing((Integer bucket) -> buckets.get(bucket).size()).reversed());
+
+        int[] seeds = new int[bucketCount];
+        int[] slotToKey = new int[size];
+        Arrays.fill(slotToKey, -1);
+        int[] candidate = new int[size];
+        int freeSlot = 0;
+
+        for (int bucket : order) {
+            List<Integer> keysInBucket = buckets.get(bucket);
+            if (keysInBucket.isEmpty()) {
+                break;  // sorted by size: the rest is empty too
+            }
+            if (keysInBucket.size() == 1) {
+                while (slotToKey[freeSlot] >= 0) {
+                    freeSlot++;
+                }
+                slotToKey[freeSlot] = keysInBucket.get(0);
+                seeds[bucket] = -freeSlot - 1;
+                continue;
+            }
+            int seed = findSeed(keysInBucket, hashes, slotToKey, candidate);
+            if (seed < 0) {
+                throw new RouteException("Failed to build the perfect hash for %d keys: %s".formatted(
+                        size, keysInBucket.stream().map(i -> keys[i]).toList()));
+            }
+            for (int k = 0; k < keysInBucket.size(); k++) {
+                slotToKey[candidate[k]] = keysInBucket.get(k);
+            }
+            seeds[bucket] = seed;
+        }
+
+        int[] offsets = new int[size + 1];
+        Object[] handlers = new Object[size];
+        char[] pool = new char[Arrays.stream(keys).mapToInt(CharArray::length).sum()];
+        for (int slot = 0; slot < size; slot++) {
+            CharArray key = keys[slotToKey[slot]];
+            key.getChars(0, key.length(), pool, offsets[slot]);
+            offsets[slot + 1] = offsets[slot] + key.length();
+            handlers[slot] = map.get(key);
+        }
+        return new PerfectHashIndex<>(seeds, offsets, handlers, pool);
+    }
+
+    private static int findSeed(List<Integer> keysInBucket, long[] hashes, int[] slotToKey, int[] candidate) {
+        int size = slotToKey.length;
+        for (int seed = 0; seed < MAX_SEED; seed++) {
+            int placed = 0;
+            for (int key : keysInBucket) {
+                int slot = slotOf(hashes[key], seed, size);
+                if (slotToKey[slot] >= 0 || contains(candidate, placed, slot)) {
+                    break;
+                }
+                candidate[placed++] = slot;
+            }
+            if (placed == keysInBucket.size()) {
+                return seed;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(CharArray input) {
+        int size = handlers.length;
+        if (size == 0) {
+            return null;
+        }
+        long hash = hash64(input);
+        int seed = seeds[bucketOf(hash, seeds.length)];
+        int slot = seed < 0 ? -seed - 1 : slotOf(hash, seed, size);
+        return input.contentEquals(pool, offsets[slot], offsets[slot + 1]) ? (T) handlers[slot] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(ByteArray input) {
+        int size = handlers.length;
+        if (size == 0) {
+            return null;
+        }
+        long hash = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < input.length(); i++) {
+            byte b = input.byteAt(i);
+            if (b < 0) {
+                return get(input.decode());  // non-ASCII: decode to chars
+            }
+            hash = (hash ^ b) * 0x100000001B3L;  // same as `hash64()` for ASCII
+        }
+        hash = mix64(hash ^ input.length());
+        int seed = seeds[bucketOf(hash, seeds.length)];
+        int slot = seed < 0 ? -seed - 1 : slotOf(hash, seed, size);
+        return input.latin1Equals(pool, offsets[slot], offsets[slot + 1]) ? (T) handlers[slot] : null;
+    }
+
+    @Override
+    public int size() {
+        return handlers.length;
+    }
+
+    private static long hash64(CharArray key) {
+        long hash = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix64(hash ^ key.length());
+    }
+
+    private static int bucketOf(long hash, int bucketCount) {
+        return (int) ((hash >>> 32) % bucketCount);
+    }
+
+    private static int slotOf(long hash, int seed, int size) {
+        return (int) ((mix64(hash + seed * 0x9E3779B97F4A7C15L) >>> 1) % size);
+    }
+
+    // The finalizer of the SplitMix64 generator.
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "PerfectHashIndex[size=%d, buckets=%d, pool=%d]".formatted(handlers.length, seeds.length, pool.length);
+    }
+}
@@ -17,36 +17,47 @@ import java.util.function.Consumer;
     }
 
     public void checkVarNames(List<Token> tokens) {
-        List<String> vars = tokens.stream().filter(QueryValidator::isVar).map(t -> ((Variable) t).name()).toList();
-        vars.forEach(this::checkVarName);
-        if (vars.size() > 1) {
-            QueryParseException.failIf(vars.size() > vars.stream().distinct().count(),
-                "Query contains duplicate variables", input);
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i) instanceof Variable var) {
+                checkVarName(var.name());
+                for (int j = 0; j < i; j++) {
+                    QueryParseException.failIf(tokens.get(j) instanceof Variable prev && prev.name().equals(var.name()),
+                        "Query contains duplicate variables", input);
+                }
+            }
         }
     }
 
     private void checkVarName(String varName) {
         QueryParseException.failIf(varName.isEmpty(), "Query contains empty variable", input);
-        QueryParseException.failIf(!varName.matches("[a-zA-Z0-9_$]+"), "Query contains invalid variable", input);
+        for (int i = 0; i < varName.length(); i++) {
+            char ch = varName.charAt(i);
+            boolean valid = ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9' || ch == '_' || ch == '$';
+            QueryParseException.failIf(!valid, "Query contains invalid variable", input);  // same as [a-zA-Z0-9_$]+
+        }
     }
 
     public void checkVarsProperlySeparated(List<Token> tokens) {
         tokens.forEach(new Consumer<>() {
-            private boolean wasVar = false;
+            private Token previous = null;
 
             @Override
             public void accept(Token token) {
                 boolean isVar = isVar(token);
-                if (wasVar) {
+                if (isVar(previous)) {
                     QueryParseException.failIf(isVar,
                         "Query contains two non-separated variables, making the second variables unmatchable", input);
                     if (token instanceof ConstToken constToken) {
-                        QueryParseException.failIf(
-                            !constToken.buffer().startsWith(separator),
-                            "Query contains a variable not followed by a '%s' separator".formatted(separator), input);
+                        // The char class variable also stops at the first disallowed char
+                        boolean isStopped = previous instanceof CharClassVariableToken variable &&
+                                constToken.buffer().isNotEmpty() && !variable.isAllowed(constToken.buffer().charAt(0));
+                        if (!constToken.buffer().startsWith(separator) && !isStopped) {
+                            throw new QueryParseException("Query contains a variable not followed by a '%s' separator: %s"
+                                                          .formatted(separator, input));
+                        }
                     }
                 }
-                wasVar = isVar;
+                previous = token;
             }
         });
     }
@@ -0,0 +1,34 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+/**
+ * An exact-match index of the constant rules, which is checked before the trie navigation.
+ *
+ * @param <T> handler type
+ */
+public interface QuickMatchIndex<T> {
+    /**
+     * Returns the handler of the constant rule equal to the {@code input} or null if there's no such rule.
+     */
+    T get(CharArray input);
+
+    /**
+     * Same as {@link #get(CharArray)} for the {@code input} the {@code holder} is reset to:
+     * the hash of the input is computed at most once per routing call (e.g. shared with {@link CachingRouter}).
+     */
+    default T get(CharArray input, MatchHolder<?> holder) {
+        return get(input);
+    }
+
+    /**
+     * Same as {@link #get(CharArray)} for the UTF-8 encoded input.
+     */
+    T get(ByteArray input);
+
+    /**
+     * Returns the number of constant rules in the index.
+     */
+    int size();
+}
@@ -0,0 +1,219 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A holder of the current {@link Router}, which is replaced as a whole when the rules are reloaded.
+ * The routing reads a single volatile reference and takes no locks; the new router is built beforehand,
+ * e.g. in the background by {@link #reloadAsync}, and published by {@link #swap}.
+ * <p>
+ * Without the {@code release} callback, the replaced routers are left to GC (the routing which has already
+ * started with the old router just completes with it). With the callback, e.g. closing the {@link OffHeapRouter},
+ * each router also counts the in-flight routing, and the swap waits until the routing with the old router completes
+ * before releasing it. The counting is striped (see {@link LongAdder}), so the routing threads don't contend.
+ *
+ * @param <T> handler type
+ */
+public final class ReloadableRouter<T> implements AutoCloseable {
+    private static final Logger log = Logger.getLogger("RouteKit");
+    private static final VarHandle CURRENT;
+    static {
+        try {
+            CURRENT = MethodHandles.lookup().findVarHandle(ReloadableRouter.class, "current", Generation.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Consumer<? super Router<T>> release;
+    private volatile Generation<T> current;
+
+    public ReloadableRouter(Router<T> initial) {
+        this(initial, null);
+    }
+
+    /**
+     * Creates the holder which calls the {@code release} for each replaced router once no routing uses it anymore.
+     */
+    public ReloadableRouter(Router<T> initial, Consumer<? super Router<T>> release) {
+        this.release = release;
+        this.current = new Generation<>(initial, release != null);
+    }
+
+    /**
+     * Returns the current router. Note: with the {@code release} callback, the router returned may be released
+     * at any time, hence the routing must go through the holder instead.
+     */
+    public Router<T> current() {
+        return checkOpen(current).router;
+    }
+
+    /**
+     * Publishes the {@code next} router for all subsequent routing, then releases the previous one (if enabled)
+     * after the routing with it completes.
+     *
+     * @return the previous router
+     */
+    public Router<T> swap(Router<T> next) {
+        Generation<T> generation = new Generation<>(next, release != null);
+        Generation<T> previous;
+        do {
+            previous = checkOpen(current);
+        } while (!CURRENT.compareAndSet(this, previous, generation));
+        retire(previous);
+        return previous.router;
+    }
+
+    /**
+     * Builds the new router by the {@code rebuild} on the {@code executor} and publishes it (see {@link #swap}),
+     * so that neither happens on the routing threads. Note: the concurrent reloads are published in the order
+     * they complete, a single-threaded executor keeps them in the submission order.
+     *
+     * @return the future of the previous router
+     */
+    public CompletableFuture<Router<T>> reloadAsync(Supplier<? extends Router<T>> rebuild, Executor executor) {
+        return CompletableFuture.supplyAsync(rebuild, executor).thenApply(this::swap);
+    }
+
+    public Match<T> routeOrNull(String input) {
+        Generation<T> generation = enter();
+        try {
+            return generation.router.routeOrNull(input);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    public Match<T> routeOrNull(byte[] input) {
+        Generation<T> generation = enter();
+        try {
+            return generation.router.routeOrNull(input);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    public boolean routeInto(CharArray input, MatchHolder<T> out) {
+        Generation<T> generation = enter();
+        try {
+            return generation.router.routeInto(input, out);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    public boolean routeInto(CharSequence input, MatchHolder<T> out) {
+        Generation<T> generation = enter();
+        try {
+            return generation.router.routeInto(input, out);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    public boolean routeInto(ByteArray input, MatchHolder<T> out) {
+        Generation<T> generation = enter();
+        try {
+            return generation.router.routeInto(input, out);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    public boolean routeInto(ByteBuffer input, MatchHolder<T> out) {
+        Generation<T> generation = enter();
+        try {
+            return generation.router.routeInto(input, out);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    /**
+     * Releases the current router (if enabled), the routing after close throws {@link IllegalStateException}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void close() {
+        Generation<T> previous = (Generation<T>) CURRENT.getAndSet(this, new Generation<T>(null, false));
+        if (previous.router != null) {
+            retire(previous);
+        }
+    }
+
+    private Generation<T> enter() {
+        while (true) {
+            Generation<T> generation = checkOpen(current);
+            if (generation.enters == null) {
+                return generation;
+            }
+            generation.enters.increment();
+            if (generation == current) {
+                return generation;  // the swap after this point waits for the exit
+            }
+            generation.exit();  // swapped concurrently: the router may be already released
+        }
+    }
+
+    private void retire(Generation<T> previous) {
+        if (release != null) {
+            previous.awaitIdle();
+            release.accept(previous.router);
+            log.log(Level.FINEST, "Released the replaced router");
+        }
+    }
+
+    private static <T> Generation<T> checkOpen(Generation<T> generation) {
+        if (generation.router == null) {
+            throw new IllegalStateException("The reloadable router is closed");
+        }
+        return generation;
+    }
+
+    /**
+     * The published router with the in-flight routing counters (null if the release is disabled).
+     * The enters and exits only grow, so a sum read concurrently is between the values before and after the read:
+     * reading the exits first, then the enters, equal sums mean that there was no routing in-flight
+     * at the moment between the two reads.
+     */
+    private static final class Generation<T> {
+        private final Router<T> router;
+        private final LongAdder enters;
+        private final LongAdder exits;
+
+        private Generation(Router<T> router, boolean counted) {
+            this.router = router;
+            this.enters = counted ? new LongAdder() : null;
+            this.exits = counted ? new LongAdder() : null;
+        }
+
+        void exit() {
+            if (exits != null) {
+                exits.increment();
+            }
+        }
+
+        void awaitIdle() {
+            for (int spins = 0; exits.sum() != enters.sum(); spins++) {
+                if (spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(10_000);
+                }
+            }
+        }
+    }
+}
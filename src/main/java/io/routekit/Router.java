@@ -1,29 +1,60 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
+import io.routekit.util.MutableByteArray;
 import io.routekit.util.MutableCharArray;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.*;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Router<T> {
     private static final Logger log = Logger.getLogger("RouteKit");
 
-    private final Map<CharArray, T> quickMatchIndex;
+    private final QuickMatchIndex<T> quickMatchIndex;
     private final Node<T> root;
+    private final CompiledTrie<T> compiled;
+    private final FlatTrie<T> flat;
+    private final DeadPrefixFilter deadPrefixes;  // null if disabled
 
-    public Router(Map<CharArray, T> quickMatchIndex, Node<T> root) {
+    public Router(QuickMatchIndex<T> quickMatchIndex, Node<T> root) {
+        this(quickMatchIndex, root, null, null);
+    }
+
+    /*package*/ Router(QuickMatchIndex<T> quickMatchIndex, Node<T> root, CompiledTrie<T> compiled, DeadPrefixFilter deadPrefixes) {
         this.quickMatchIndex = quickMatchIndex;
         this.root = root;
+        this.compiled = compiled;
+        this.flat = null;
+        this.deadPrefixes = deadPrefixes;
+    }
+
+    // Note: the flat trie replaces the node graph, which isn't retained.
+    /*package*/ Router(QuickMatchIndex<T> quickMatchIndex, FlatTrie<T> flat, CompiledTrie<T> compiled, DeadPrefixFilter deadPrefixes) {
+        this.quickMatchIndex = quickMatchIndex;
+        this.root = null;
+        this.compiled = compiled;
+        this.flat = flat;
+        this.deadPrefixes = deadPrefixes;
     }
 
     public Match<T> routeOrNull(String input) {
-        return routeOrNull(new MutableCharArray(input));
+        return routeOrNull((CharSequence) input);
     }
 
+    // Note: the `routeOrNull` calls reuse the thread-local scratch (see `MatchHolder`), only the result is allocated.
+
     public Match<T> routeOrNull(CharSequence input) {
-        return routeOrNull(new MutableCharArray(input));
+        MatchHolder<T> holder = MatchHolder.borrowLocal();
+        try {
+            return routeInto(holder.view(input), holder) ? holder.toMatchOrNull() : null;
+        } finally {
+            holder.giveBack();
+        }
     }
 
     public Match<T> routeOrNull(char[] input) {
@@ -31,52 +62,410 @@ public class Router<T> {
     }
 
     public Match<T> routeOrNull(CharArray input) {
+        MatchHolder<T> holder = MatchHolder.borrowLocal();
+        try {
+            return routeInto(input, holder) ? holder.toMatchOrNull() : null;
+        } finally {
+            holder.giveBack();
+        }
+    }
+
+    public Match<T> routeOrNull(byte[] input) {
+        return routeOrNull(new ByteArray(input));
+    }
+
+    public Match<T> routeOrNull(ByteBuffer input) {
+        MatchHolder<T> holder = MatchHolder.borrowLocal();
+        try {
+            return routeInto(holder.view(input), holder) ? holder.toMatchOrNull() : null;
+        } finally {
+            holder.giveBack();
+        }
+    }
+
+    public Match<T> routeOrNull(ByteArray input) {
+        MatchHolder<T> holder = MatchHolder.borrowLocal();
+        try {
+            return routeInto(input, holder) ? holder.toMatchOrNull() : null;
+        } finally {
+            holder.giveBack();
+        }
+    }
+
+    /**
+     * Routes the {@code input} and stores the result into the reusable {@code out} holder.
+     * Doesn't allocate anything when the holder has enough capacity for the variables.
+     *
+     * @return true if the input matched one of the rules
+     */
+    public boolean routeInto(CharArray input, MatchHolder<T> out) {
+        return routeReset(input, out.reset(input), out);  // the cursor to avoid modifying the input
+    }
+
+    // Same as above for the holder already reset to the `input` (see `CachingRouter`, which shares its hash).
+    /*package*/ boolean routeReset(CharArray input, MutableCharArray array, MatchHolder<T> out) {
+        if (deadPrefixes != null && deadPrefixes.isDead(input)) {
+            return false;
+        }
+
+        T match = quickMatchIndex.get(input, out);
+        if (match != null) {
+            if (log.isLoggable(Level.FINEST)) {
+                log.log(Level.FINEST, "Routing `%s`: return immediately from the quick-match index".formatted(input));
+            }
+            out.setMatch(match, VariableSchema.EMPTY);
+            return true;
+        }
+
+        return navigateTrie(input, array, out);
+    }
+
+    /**
+     * Routes the batch of {@code inputs} and passes each result to the {@code sink}, reusing the thread-local
+     * holder for all of them (see {@link #routeAll(CharArray[], MatchHolder, MatchSink)}).
+     */
+    public void routeAll(CharArray[] inputs, MatchSink<T> sink) {
+        MatchHolder<T> holder = MatchHolder.borrowLocal();
+        try {
+            routeAll(inputs, holder, sink);
+        } finally {
+            holder.giveBack();
+        }
+    }
+
+    /**
+     * Routes the batch of {@code inputs} and passes each result to the {@code sink} in the {@code scratch} holder,
+     * which is reset for the next input after the sink returns.
+     * <p>
+     * The batch is routed in two passes: first the dead prefix filter and the constant rules index for all inputs,
+     * then the trie navigation for the rest, so that the top levels of the trie stay in the CPU cache between
+     * the inputs. Hence the sink gets the results out of order: the index of the input is passed along.
+     */
+    public void routeAll(CharArray[] inputs, MatchHolder<T> scratch, MatchSink<T> sink) {
+        int[] pending = scratch.indexScratch(inputs.length);
+        int size = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            CharArray input = inputs[i];
+            scratch.reset(input);
+            if (deadPrefixes == null || !deadPrefixes.isDead(input)) {
+                T match = quickMatchIndex.get(input, scratch);
+                if (match == null) {
+                    pending[size++] = i;
+                    continue;
+                }
+                scratch.setMatch(match, VariableSchema.EMPTY);
+            }
+            sink.accept(i, scratch);
+        }
+        for (int k = 0; k < size; k++) {
+            int i = pending[k];
+            navigateTrie(inputs[i], scratch.reset(inputs[i]), scratch);
+            sink.accept(i, scratch);
+        }
+    }
+
+    /**
+     * Returns the router with the same rules, which probes the most hit const children of each node first,
+     * by the hits counted since this router was built (see {@link RouterBuilder#setCountHits}), and counts anew.
+     * The matches are the same: the hot children are only probed first when they can't be extended
+     * by a longer match. Called periodically (e.g. with {@link ReloadableRouter#swap}), it follows the traffic.
+     * <p>
+     * Only the interpreted nodes count the hits: the flat trie and the compiled top of the trie don't,
+     * so the router with the flat trie is returned as is.
+     */
+    public Router<T> reorderedByHits() {
+        if (root == null) {
+            return this;
+        }
+        Node<T> reordered = withDispatches(root, ChildDispatch::withHotKeys, new IdentityHashMap<>());
+        CompiledTrie<T> recompiled = compiled != null ? TrieCompiler.compileOrNull(reordered) : null;
+        return new Router<>(quickMatchIndex, reordered, recompiled, deadPrefixes);
+    }
+
+    // Copies the trie with the dispatches replaced (the shared nodes are copied once).
+    /*package*/ static <T> Node<T> withDispatches(Node<T> node, UnaryOperator<ChildDispatch> mapping,
+                                                 Map<Node<T>, Node<T>> copies) {
+        Node<T> copy = copies.get(node);
+        if (copy == null) {
+            Node<T>[] next = node.next.clone();
+            for (int i = 0; i < next.length; i++) {
+                next[i] = withDispatches(node.next[i], mapping, copies);
+            }
+            copy = new Node<>(node.token, next, node.terminalRule, mapping.apply(node.dispatch));
+            copies.put(node, copy);
+        }
+        return copy;
+    }
+
+    private boolean navigateTrie(CharArray input, MutableCharArray array, MatchHolder<T> out) {
+        if (compiled != null ? compiled.navigate(input, out) :
+                flat != null ? flat.navigate(input, out) : navigate(input, array, root, out)) {
+            return true;
+        }
+        out.clear();
+        return false;
+    }
+
+    /**
+     * Routes the {@code input} chars sequence without converting it to {@link String}.
+     * The heap {@link CharBuffer} is routed in place, other sequences are copied into the scratch array of the holder.
+     *
+     * @return true if the input matched one of the rules
+     */
+    public boolean routeInto(CharSequence input, MatchHolder<T> out) {
+        return routeInto(out.view(input), out);
+    }
+
+    /**
+     * Routes the UTF-8 encoded {@code input} without decoding it into chars.
+     * The variable offsets stored into the {@code out} holder are in bytes.
+     *
+     * @return true if the input matched one of the rules
+     */
+    public boolean routeInto(ByteArray input, MatchHolder<T> out) {
+        MutableByteArray array = out.reset(input);  // the cursor to avoid modifying the input
+        if (deadPrefixes != null && deadPrefixes.isDead(input)) {
+            return false;
+        }
+
         T match = quickMatchIndex.get(input);
         if (match != null) {
-            log.log(Level.FINEST, () -> "Routing `%s`: return immediately from the quick-match index".formatted(input));
-            return new Match<>(match, Collections.emptyMap());
+            if (log.isLoggable(Level.FINEST)) {
+                log.log(Level.FINEST, "Routing `%s`: return immediately from the quick-match index".formatted(input));
+            }
+            out.setMatch(match, VariableSchema.EMPTY);
+            return true;
+        }
+
+        if (flat != null ? flat.navigate(input, out) : navigate(input, array, root, out)) {
+            return true;
         }
+        out.clear();
+        return false;
+    }
 
-        return navigate(input, root);
+    /**
+     * Routes the remaining bytes of the UTF-8 encoded {@code input}, the buffer position is not changed.
+     * The heap buffers are routed in place, the direct buffers are copied into the scratch array of the holder.
+     *
+     * @return true if the input matched one of the rules
+     */
+    public boolean routeInto(ByteBuffer input, MatchHolder<T> out) {
+        return routeInto(out.view(input), out);
     }
 
-    private static <T> Match<T> navigate(CharArray input, Node<T> current) {
-        MutableCharArray array = input.mutableCopy();  // copy to avoid modifying the input
-        Map<String, CharArray> vars = new LinkedHashMap<>();  // preserve the order
+    /*package*/ static <T> boolean navigate(CharArray input, MutableCharArray array, Node<T> current, MatchHolder<T> out) {
+        while (array.isNotEmpty()) {
+            Node<T>[] next = current.next;
+            ChildDispatch dispatch = current.dispatch;
+            if (dispatch.isBacktracking()) {
+                return backtrack(input, array, current, out);
+            }
+            int maxMatch = -1;
+            int maxIndex = -1;
+            int pos = dispatch.longestConstMatch(array);
+            if (pos >= 0) {
+                maxMatch = dispatch.keyLength(pos);
+                maxIndex = dispatch.childIndex(pos);
+            }
+            if (pos < 0 || !dispatch.isDecided(maxIndex, maxMatch == array.length())) {
+                for (int i : dispatch.fallback()) {  // No allocations: https://stackoverflow.com/a/3433775
+                    int matchLength = next[i].token.match(array);
+                    // The first child wins the tie (same as the declaration order)
+                    if (matchLength > maxMatch || matchLength == maxMatch && matchLength >= 0 && i < maxIndex) {
+                        maxMatch = matchLength;
+                        maxIndex = i;
+                    }
+                }
+            }
+            Node<T> maxNode = maxIndex >= 0 ? next[maxIndex] : null;
+            if (maxNode == null) {
+                if (log.isLoggable(Level.FINEST)) {
+                    log.log(Level.FINEST, "Routing `%s`: no continuation found at `%s`".formatted(input, array));
+                }
+                return false;  // no continuation found
+            }
+            dispatch.recordHit(maxIndex);
+            if (maxNode.token instanceof Variable) {
+                int start = array.start() - input.start();
+                out.addVariable(start, start + maxMatch);
+            }
+            array.offsetStart(maxMatch);
+            current = maxNode;
+        }
+
+        if (!current.isTerminal()) {
+            if (log.isLoggable(Level.FINEST)) {
+                log.log(Level.FINEST, "Routing `%s`: matches non-terminal node (middle of the rule)".formatted(input));
+            }
+            return false;  // matches part of the rule
+        }
+        out.setMatch(current.terminalRule.handler(), current.terminalRule.schema());
+        if (log.isLoggable(Level.FINEST)) {
+            log.log(Level.FINEST, "Routing `%s`: matches %s".formatted(input, out));
+        }
+        return true;
+    }
 
+    // Same as above for the bytes: the dispatch lookup by the UTF-8 keys.
+    private static <T> boolean navigate(ByteArray input, MutableByteArray array, Node<T> current, MatchHolder<T> out) {
         while (array.isNotEmpty()) {
+            Node<T>[] next = current.next;
+            ChildDispatch dispatch = current.dispatch;
+            if (dispatch.isBacktracking()) {
+                return backtrack(input, array, current, out);
+            }
             int maxMatch = -1;
-            Node<T> maxNode = null;
-            for (Node<T> next : current.next) {  // No allocations: https://stackoverflow.com/a/3433775
-                int matchLength = next.token.match(array);
-                if (matchLength > maxMatch) {
-                    maxMatch = matchLength;
-                    maxNode = next;
+            int maxIndex = -1;
+            int pos = dispatch.longestConstMatch(array);
+            if (pos >= 0) {
+                maxMatch = dispatch.byteKeyLength(pos);
+                maxIndex = dispatch.byteChildIndex(pos);
+            }
+            if (pos < 0 || !dispatch.isDecided(maxIndex, maxMatch == array.length())) {
+                for (int i : dispatch.fallback()) {
+                    int matchLength = next[i].token.match(array);
+                    if (matchLength > maxMatch || matchLength == maxMatch && matchLength >= 0 && i < maxIndex) {
+                        maxMatch = matchLength;
+                        maxIndex = i;
+                    }
                 }
             }
+            Node<T> maxNode = maxIndex >= 0 ? next[maxIndex] : null;
             if (maxNode == null) {
-                log.log(Level.FINEST, () -> "Routing `%s`: no continuation found at `%s`".formatted(input, array));
-                return null;  // no continuation found
+                if (log.isLoggable(Level.FINEST)) {
+                    log.log(Level.FINEST, "Routing `%s`: no continuation found at `%s`".formatted(input, array));
+                }
+                return false;
             }
-            if (maxNode.token instanceof Variable variable) {
-                vars.put(variable.name(), array.substringUntil(maxMatch));
+            dispatch.recordHit(maxIndex);
+            if (maxNode.token instanceof Variable) {
+                int start = array.start() - input.start();
+                out.addVariable(start, start + maxMatch);
             }
             array.offsetStart(maxMatch);
             current = maxNode;
         }
 
         if (!current.isTerminal()) {
-            log.log(Level.FINEST, () -> "Routing `%s`: matches non-terminal node (middle of the rule)".formatted(input));
-            return null;  // matches part of the rule
+            if (log.isLoggable(Level.FINEST)) {
+                log.log(Level.FINEST, "Routing `%s`: matches non-terminal node (middle of the rule)".formatted(input));
+            }
+            return false;
+        }
+        out.setMatch(current.terminalRule.handler(), current.terminalRule.schema());
+        if (log.isLoggable(Level.FINEST)) {
+            log.log(Level.FINEST, "Routing `%s`: matches %s".formatted(input, out));
         }
-        log.log(Level.FINEST, () -> "Routing `%s`: matches with variables %s".formatted(input, vars));
-        return new Match<>(current.terminalRule.handler(), vars);
+        return true;
     }
 
-    /*package*/ record Node<T>(Token token, Node<T>[] next, RouterSetup.Rule<T> terminalRule) {
+    // Tries the matching children in the order of the greedy choice (the longer match first, then the declaration order)
+    // and navigates the rest of the input from each one, until the rule is matched. The const children other than
+    // the longest match aren't tried. Each try re-matches the fallback children: there are a few of them.
+    private static <T> boolean backtrack(CharArray input, MutableCharArray array, Node<T> current, MatchHolder<T> out) {
+        Node<T>[] next = current.next;
+        ChildDispatch dispatch = current.dispatch;
+        int start = array.start();
+        int size = out.size();
+        int pos = dispatch.longestConstMatch(array);
+        int constMatch = pos >= 0 ? dispatch.keyLength(pos) : -1;
+        int constIndex = pos >= 0 ? dispatch.childIndex(pos) : -1;
+        int lastMatch = Integer.MAX_VALUE;
+        int lastIndex = -1;
+        while (true) {
+            int maxMatch = -1;
+            int maxIndex = -1;
+            if (constIndex >= 0 && isAfter(constMatch, constIndex, lastMatch, lastIndex)) {
+                maxMatch = constMatch;
+                maxIndex = constIndex;
+            }
+            for (int i : dispatch.fallback()) {
+                int matchLength = next[i].token.match(array);
+                if (matchLength >= 0 && isAfter(matchLength, i, lastMatch, lastIndex) &&
+                    (matchLength > maxMatch || matchLength == maxMatch && i < maxIndex)) {
+                    maxMatch = matchLength;
+                    maxIndex = i;
+                }
+            }
+            if (maxIndex < 0) {
+                return false;  // no continuation left
+            }
+            Node<T> maxNode = next[maxIndex];
+            if (maxNode.token instanceof Variable) {
+                out.addVariable(start - input.start(), start - input.start() + maxMatch);
+            }
+            array.offsetStart(maxMatch);
+            if (navigate(input, array, maxNode, out)) {
+                return true;
+            }
+            if (log.isLoggable(Level.FINEST)) {
+                log.log(Level.FINEST, "Routing `%s`: backtracking from `%s`".formatted(input, maxNode.token));
+            }
+            array.offsetStart(start - array.start());
+            out.truncate(size);
+            lastMatch = maxMatch;
+            lastIndex = maxIndex;
+        }
+    }
+
+    // Same as above for the bytes.
+    private static <T> boolean backtrack(ByteArray input, MutableByteArray array, Node<T> current, MatchHolder<T> out) {
+        Node<T>[] next = current.next;
+        ChildDispatch dispatch = current.dispatch;
+        int start = array.start();
+        int size = out.size();
+        int pos = dispatch.longestConstMatch(array);
+        int constMatch = pos >= 0 ? dispatch.byteKeyLength(pos) : -1;
+        int constIndex = pos >= 0 ? dispatch.byteChildIndex(pos) : -1;
+        int lastMatch = Integer.MAX_VALUE;
+        int lastIndex = -1;
+        while (true) {
+            int maxMatch = -1;
+            int maxIndex = -1;
+            if (constIndex >= 0 && isAfter(constMatch, constIndex, lastMatch, lastIndex)) {
+                maxMatch = constMatch;
+                maxIndex = constIndex;
+            }
+            for (int i : dispatch.fallback()) {
+                int matchLength = next[i].token.match(array);
+                if (matchLength >= 0 && isAfter(matchLength, i, lastMatch, lastIndex) &&
+                    (matchLength > maxMatch || matchLength == maxMatch && i < maxIndex)) {
+                    maxMatch = matchLength;
+                    maxIndex = i;
+                }
+            }
+            if (maxIndex < 0) {
+                return false;
+            }
+            Node<T> maxNode = next[maxIndex];
+            if (maxNode.token instanceof Variable) {
+                out.addVariable(start - input.start(), start - input.start() + maxMatch);
+            }
+            array.offsetStart(maxMatch);
+            if (navigate(input, array, maxNode, out)) {
+                return true;
+            }
+            array.offsetStart(start - array.start());
+            out.truncate(size);
+            lastMatch = maxMatch;
+            lastIndex = maxIndex;
+        }
+    }
+
+    // The child comes after the last tried one in the order of the greedy choice.
+    /*package*/ static boolean isAfter(int match, int index, int lastMatch, int lastIndex) {
+        return match < lastMatch || match == lastMatch && index > lastIndex;
+    }
+
+    /*package*/ record Node<T>(Token token, Node<T>[] next, RouterSetup.Rule<T> terminalRule, ChildDispatch dispatch) {
         Node {
-            List<Node<T>> variables = Arrays.stream(next).filter(Node::isVar).toList();
-            if (variables.size() > 1) {
+            int count = 0;
+            for (Node<T> node : next) {
+                count += node.isVar() ? 1 : 0;
+            }
+            if (count > 1) {
+                List<Node<T>> variables = Arrays.stream(next).filter(Node::isVar).toList();
                 throw new RouteException(
                         ("A node `%s` can not have several follow-up variable tokens rules: " +
                         "%s (one of the variables will never match)").formatted(token, variables)
@@ -1,8 +1,12 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -12,22 +16,71 @@ public class RouterBuilder {
 
     public static final char DEFAULT_SEPARATOR = '/';
     public static final int DEFAULT_MIN_COMMON_PREFIX = 1;
+    // The smaller subtrees are built in the same task, forking them costs more than building.
+    private static final int PARALLEL_MIN_SEQUENCES = 256;
 
     private boolean quickMatchForConst = true;
+    private boolean perfectHashForConst = false;
     private boolean excludeConstFromFSM = true;
+    private boolean compileToBytecode = false;
+    private boolean flattenTrie = false;
+    private boolean rejectDeadPrefixes = false;
+    private boolean countHits = false;
     private char separator = DEFAULT_SEPARATOR;
     private int minCommonPrefixLength = DEFAULT_MIN_COMMON_PREFIX;
+    private ForkJoinPool buildPool = null;
 
     public RouterBuilder setQuickMatchForConst(boolean quickMatchForConst) {
         this.quickMatchForConst = quickMatchForConst;
         return this;
     }
 
+    public RouterBuilder setPerfectHashForConst(boolean perfectHashForConst) {
+        this.perfectHashForConst = perfectHashForConst;
+        return this;
+    }
+
     public RouterBuilder setExcludeConstFromFSM(boolean excludeConstFromFSM) {
         this.excludeConstFromFSM = excludeConstFromFSM;
         return this;
     }
 
+    /**
+     * Compiles the state machine into a hidden class for the chars input (see {@link TrieCompiler}).
+     * Falls back to the interpreter if the rules have custom tokens or are too large to compile.
+     */
+    public RouterBuilder setCompileToBytecode(boolean compileToBytecode) {
+        this.compileToBytecode = compileToBytecode;
+        return this;
+    }
+
+    /**
+     * Flattens the state machine into the primitive arrays (see {@link FlatTrie}) instead of the node graph:
+     * takes less memory and has better locality for the large rule sets.
+     */
+    public RouterBuilder setFlattenTrie(boolean flattenTrie) {
+        this.flattenTrie = flattenTrie;
+        return this;
+    }
+
+    /**
+     * Rejects the input that no rule can start with (by the first two chars) before the constant index lookup
+     * and the trie navigation, e.g. the scanner traffic (see {@link DeadPrefixFilter}).
+     */
+    public RouterBuilder setRejectDeadPrefixes(boolean rejectDeadPrefixes) {
+        this.rejectDeadPrefixes = rejectDeadPrefixes;
+        return this;
+    }
+
+    /**
+     * Counts the hits of the children of each node during the routing, so that the router can be rebuilt
+     * with the most hit children probed first (see {@link Router#reorderedByHits}). Costs an increment per step.
+     */
+    public RouterBuilder setCountHits(boolean countHits) {
+        this.countHits = countHits;
+        return this;
+    }
+
     public RouterBuilder setSeparator(char separator) {
         this.separator = separator;
         return this;
@@ -38,133 +91,325 @@ public class RouterBuilder {
         return this;
     }
 
+    /**
+     * Builds the state machine in the {@code pool}: the subtrees of the node are independent, so the large ones
+     * are built in parallel, and so is the constant rules index. The result is the same as of the sequential build
+     * (the subtrees are joined in the declaration order). The {@code null} pool disables the parallel build.
+     */
+    public RouterBuilder setBuildPool(ForkJoinPool buildPool) {
+        this.buildPool = buildPool;
+        return this;
+    }
+
     public <T> Router<T> buildRouter(List<RouterSetup.Rule<T>> rules) {
-        Map<CharArray, T> quickMatchIndex = buildQuickMatchIndex(rules);
-        Router.Node<T> root = buildStateMachine(rules);
+        Map<CharArray, T> constants = constants(rules);
+        if (buildPool == null) {
+            return buildRouter(buildQuickMatchIndex(constants), constants.keySet(), buildStateMachine(rules));
+        }
+        return inBuildPool(() -> {
+            ForkJoinTask<QuickMatchIndex<T>> quickMatchIndex = ForkJoinTask.adapt(() -> buildQuickMatchIndex(constants)).fork();
+            Router.Node<T> root = buildStateMachine(rules);
+            return buildRouter(quickMatchIndex.join(), constants.keySet(), root);
+        });
+    }
+
+    // Applies the compilation and flattening options to the state machine built elsewhere (see `IncrementalRouterSetup`).
+    /*package*/ <T> Router<T> buildRouter(QuickMatchIndex<T> quickMatchIndex, Collection<CharArray> constants, Router.Node<T> root) {
         log.log(Level.FINEST, () -> "Using quick-match index of size %d".formatted(quickMatchIndex.size()));
-        return new Router<>(quickMatchIndex, root);
+        if (countHits) {
+            root = Router.withDispatches(root, ChildDispatch::withHits, new IdentityHashMap<>());
+        }
+        DeadPrefixFilter deadPrefixes = rejectDeadPrefixes ? DeadPrefixFilter.of(constants, root) : null;
+        if (rejectDeadPrefixes && deadPrefixes == null) {
+            log.log(Level.FINE, "The dead prefixes can't be rejected: the rules start with a variable");
+        }
+        CompiledTrie<T> compiled = compileToBytecode ? TrieCompiler.compileOrNull(root) : null;
+        if (compileToBytecode && compiled == null) {
+            log.log(Level.FINE, "Falling back to the interpreted state machine");
+        }
+        if (flattenTrie) {
+            FlatTrie<T> flat = FlatTrie.of(root);
+            log.log(Level.FINEST, () -> "Using flat trie of %d nodes".formatted(flat.size()));
+            return new Router<>(quickMatchIndex, flat, compiled, deadPrefixes);
+        }
+        return new Router<>(quickMatchIndex, root, compiled, deadPrefixes);
     }
 
-    /*package*/ <T> Map<CharArray, T> buildQuickMatchIndex(List<RouterSetup.Rule<T>> rules) {
+    /**
+     * Builds the router with the flattened state machine and the constant rules index stored off-heap
+     * (see {@link OffHeapRouter}). The bytecode compilation and the perfect hash options don't apply.
+     */
+    public <T> OffHeapRouter<T> buildOffHeapRouter(List<RouterSetup.Rule<T>> rules) {
+        OffHeapIndex<T> index = OffHeapIndex.of(constants(rules));
+        OffHeapTrie<T> trie = OffHeapTrie.of(buildStateMachine(rules));
+        log.log(Level.FINEST, () -> "Using off-heap router of %d nodes".formatted(trie.size()));
+        return new OffHeapRouter<>(index, trie);
+    }
+
+    /*package*/ <T> QuickMatchIndex<T> buildQuickMatchIndex(List<RouterSetup.Rule<T>> rules) {
+        return buildQuickMatchIndex(constants(rules));
+    }
+
+    /*package*/ <T> QuickMatchIndex<T> buildQuickMatchIndex(Map<CharArray, T> constants) {
+        return perfectHashForConst ? PerfectHashIndex.of(constants) : OpenHashIndex.of(constants);
+    }
+
+    private <T> Map<CharArray, T> constants(List<RouterSetup.Rule<T>> rules) {
         return (quickMatchForConst) ?
             rules.stream()
-                .filter(RouterSetup.Rule::isConstant)
+                .filter(this::isQuickMatch)
                 .collect(Collectors.toMap(
                         rule -> ((ConstToken) rule.query().tokens().get(0)).buffer(),
-                        RouterSetup.Rule::handler
+                        RouterSetup.Rule::handler,
+                        (lhs, rhs) -> { throw new RouteException("Duplicate constant rules found: " + List.of(lhs, rhs)); },
+                        LinkedHashMap::new
                 )) :
             Collections.emptyMap();
     }
 
     /*package*/ <T> Router.Node<T> buildStateMachine(List<RouterSetup.Rule<T>> rules) {
-        List<Sequence<T>> sequences = rules.stream()
-                .filter(rule -> !excludeConstFromFSM || !rule.isConstant())
-                .map(rule -> new Sequence<>(new LinkedList<>(rule.query().tokens()), rule))
-                .toList();
+        @SuppressWarnings("unchecked")
+        Sequence<T>[] sequences = rules.stream()
+                .filter(this::isInStateMachine)
+                .map(Sequence::new)
+                .toArray(Sequence[]::new);
 
-        return buildNode(new RootToken(), sequences);
+        Sequence<T>[] scratch = sequences.clone();  // only the size matters, sorting overwrites it
+        return inBuildPool(() -> buildNode(new RootToken(), sequences, scratch, 0, sequences.length));
     }
 
-    private <T> Router.Node<T> buildNode(Token start, List<Sequence<T>> sequences) {
-        RouterSetup.Rule<T> terminalRule = getTerminalRuleOrNull(sequences);
-        if (!retokenizeByCommonPrefix(sequences)) {
-            retokenizeBySeparator(sequences);
+    // Runs the `task` in the build pool (if enabled), so that the subtasks are forked into the same pool.
+    private <R> R inBuildPool(Supplier<R> task) {
+        if (buildPool == null || ForkJoinTask.getPool() == buildPool) {
+            return task.get();
         }
-        List<Router.Node<T>> nodes = groupByPeekToken(sequences);  // recursion here
-        List<Router.Node<T>> compact = compactJoinableNodes(nodes);
+        return buildPool.invoke(ForkJoinTask.adapt(task::get));
+    }
+
+    // Builds the node from the `sequences` in [from, to), which share the path up to (and including) `start`.
+    // Each group of the children is sorted to a contiguous range in place, so the recursion only moves the cursors
+    // and the disjoint ranges can be built in parallel. The `scratch` is the buffer of the same size for sorting.
+    private <T> Router.Node<T> buildNode(Token start, Sequence<T>[] sequences, Sequence<T>[] scratch, int from, int to) {
+        RouterSetup.Rule<T> terminalRule = getTerminalRuleOrNull(sequences, from, to);
+        CharArray commonPrefix = getCommonPrefix(sequences, from, to);
+        List<Token> tokens = groupByPeekToken(sequences, from, to, isSplitByPrefix(commonPrefix) ? commonPrefix : null);
+        int[] bounds = sortByGroup(sequences, scratch, from, to, tokens.size());
+        List<Router.Node<T>> nodes = buildChildren(tokens, bounds, sequences, scratch);  // recursion here
+        nodes.replaceAll(RouterBuilder::compactJoinable);
+        return newNode(start, nodes, terminalRule);
+    }
+
+    // Note: the `compact` children are already joined (see `compactJoinable()`).
+    /*package*/ static <T> Router.Node<T> newNode(Token start, List<Router.Node<T>> compact, RouterSetup.Rule<T> terminalRule) {
         @SuppressWarnings("unchecked")
         Router.Node<T>[] array = compact.toArray(Router.Node[]::new);
-        return new Router.Node<>(start, array, terminalRule);
-    }
-
-    private static <T> RouterSetup.Rule<T> getTerminalRuleOrNull(List<Sequence<T>> sequences) {
-        List<RouterSetup.Rule<T>> terminal = sequences.stream()
-                .filter(seq -> seq.tokens.isEmpty())
-                .map(Sequence::rule)
-                .toList();
-        if (terminal.size() > 1) {
-            throw new RouteException("Duplicate rules found: " + terminal.stream().map(RouterSetup.Rule::query).toList());
-        }
-        return terminal.stream().findFirst().orElse(null);
-    }
-
-    private <T> List<Router.Node<T>> groupByPeekToken(List<Sequence<T>> sequences) {
-        Map<Token, List<Sequence<T>>> group = new LinkedHashMap<>();  // preserve the order
-        for (Sequence<T> sequence : sequences) {
-            Token peek = sequence.tokens.poll();
-            group.computeIfAbsent(peek, key -> new ArrayList<>()).add(sequence);
-        }
-
-        return group.entrySet().stream()
-                .filter(entry -> entry.getKey() != null)
-                .map(entry -> buildNode(entry.getKey(), entry.getValue()))  // recursion
-                .toList();
-    }
-
-    private <T> boolean retokenizeByCommonPrefix(List<Sequence<T>> sequences) {
-        CharArray commonPrefix = sequences.stream()
-                .map(seq -> seq.tokens.peek() instanceof ConstToken constToken ? constToken.buffer() : null)
-                .reduce(null, (lhs, rhs) -> {
-                    if (lhs == null) return rhs;
-                    if (rhs == null) return lhs;
-                    return lhs.substringUntil(lhs.commonPrefix(rhs));
-                });
-
-        if (commonPrefix != null && commonPrefix.isNotEmpty() && commonPrefix.length() >= minCommonPrefixLength) {
-            Token commonToken = new ConstToken(commonPrefix);
-            for (Sequence<T> sequence : sequences) {
-                Token peek = sequence.tokens.peek();
-                if (peek instanceof ConstToken constToken && !constToken.buffer().equals(commonPrefix)) {
-                    sequence.tokens.poll();
-                    sequence.tokens.addFirst(new ConstToken(constToken.buffer().substringFrom(commonPrefix.length())));
-                    sequence.tokens.addFirst(commonToken);
+        Token[] tokens = new Token[array.length];
+        for (int i = 0; i < array.length; i++) {
+            tokens[i] = array[i].token();
+        }
+        ChildDispatch dispatch = ChildDispatch.of(tokens);
+        return new Router.Node<>(start, array, terminalRule, dispatch);
+    }
+
+    /*package*/ boolean isQuickMatch(RouterSetup.Rule<?> rule) {
+        return quickMatchForConst && rule.isConstant();
+    }
+
+    /*package*/ boolean isInStateMachine(RouterSetup.Rule<?> rule) {
+        return !excludeConstFromFSM || !rule.isConstant();
+    }
+
+    // The const heads are split by the common prefix (if it's long enough) or else each one by the first separator.
+
+    /*package*/ boolean isSplitByPrefix(CharArray commonPrefix) {
+        return commonPrefix != null && commonPrefix.isNotEmpty() && commonPrefix.length() >= minCommonPrefixLength;
+    }
+
+    /*package*/ int separatorIndex(CharArray head) {
+        return head.indexOf(separator, 1);
+    }
+
+    /*package*/ static CharArray commonPrefix(CharArray lhs, CharArray rhs) {
+        if (lhs == null) return rhs;
+        if (rhs == null) return lhs;
+        return lhs.substringUntil(lhs.commonPrefix(rhs));
+    }
+
+    private static <T> RouterSetup.Rule<T> getTerminalRuleOrNull(Sequence<T>[] sequences, int from, int to) {
+        RouterSetup.Rule<T> terminal = null;
+        for (int i = from; i < to; i++) {
+            if (sequences[i].isEmpty()) {
+                if (terminal != null) {
+                    throw new RouteException("Duplicate rules found: " + Arrays.stream(sequences, from, to)
+                            .filter(Sequence::isEmpty)
+                            .map(seq -> seq.rule.query())
+                            .toList());
                 }
+                terminal = sequences[i].rule;
             }
-            return true;
         }
-
-        return false;
+        return terminal;
     }
 
-    private <T> void retokenizeBySeparator(List<Sequence<T>> sequences) {
-        sequences.stream()
-                .filter(seq -> seq.tokens.peek() instanceof ConstToken)
-                .forEach(sequence -> {
-                    CharArray buffer = ((ConstToken) sequence.tokens.peek()).buffer();
-                    int index = buffer.indexOf(separator, 1);
-                    if (index >= 0) {
-                        sequence.tokens.poll();
-                        sequence.tokens.addFirst(new ConstToken(buffer.substringFrom(index)));
-                        sequence.tokens.addFirst(new ConstToken(buffer.substringUntil(index)));
-                    }
-                });
+    private static <T> CharArray getCommonPrefix(Sequence<T>[] sequences, int from, int to) {
+        CharArray commonPrefix = null;
+        for (int i = from; i < to; i++) {
+            CharArray head = sequences[i].head;
+            if (head != null && commonPrefix == null) {
+                commonPrefix = head;
+            } else if (head != null) {
+                int length = commonPrefix.commonPrefix(head);
+                if (length == 0) {
+                    return null;
+                }
+                if (length < commonPrefix.length()) {
+                    commonPrefix = commonPrefix.substringUntil(length);
+                }
+            }
+        }
+        return commonPrefix;
     }
 
-    private static <T> List<Router.Node<T>> compactJoinableNodes(List<Router.Node<T>> nodes) {
-        return nodes.stream().map(node -> {
-            if (node.next().length != 1 || node.isTerminal()) {
-                return node;
+    // Consumes the peek token of each sequence: the const head is cut by the common prefix (if not null)
+    // or else by the first separator. Assigns the group to each sequence, the groups are in the order of appearance.
+    private <T> List<Token> groupByPeekToken(Sequence<T>[] sequences, int from, int to, CharArray commonPrefix) {
+        Map<Object, Integer> groups = new HashMap<>();
+        List<Token> tokens = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Sequence<T> sequence = sequences[i];
+            if (sequence.isEmpty()) {
+                sequence.group = -1;
+                continue;
             }
-            Router.Node<T> child = node.next()[0];
-            if (node.token() instanceof ConstToken lhs && child.token() instanceof ConstToken rhs) {
-                CharArray join = CharArray.join(lhs.buffer(), rhs.buffer());
-                return new Router.Node<>(new ConstToken(join), child.next(), child.terminalRule());
+            Object key;
+            if (sequence.head != null) {
+                CharArray head = sequence.head;
+                int cut = commonPrefix != null ? commonPrefix.length() : separatorIndex(head);
+                CharArray part = cut < 0 || cut == head.length() ? head : head.substringUntil(cut);
+                sequence.advance(part.length());
+                key = part;
+            } else {
+                key = sequence.tokens.get(sequence.index);
+                sequence.advance(0);
             }
+            Integer group = groups.get(key);
+            if (group == null) {
+                group = tokens.size();
+                groups.put(key, group);
+                tokens.add(key instanceof CharArray part ? new ConstToken(part) : (Token) key);
+            }
+            sequence.group = group;
+        }
+        return tokens;
+    }
+
+    // The stable counting sort of [from, to) by the group, the terminal sequences go last.
+    // Returns the range bounds: the group `i` is [bounds[i], bounds[i + 1]).
+    private static <T> int[] sortByGroup(Sequence<T>[] sequences, Sequence<T>[] scratch, int from, int to, int groups) {
+        int[] bounds = new int[groups + 2];
+        for (int i = from; i < to; i++) {
+            int group = sequences[i].group;
+            bounds[(group >= 0 ? group : groups) + 1]++;
+        }
+        bounds[0] = from;
+        for (int i = 1; i < bounds.length; i++) {
+            bounds[i] += bounds[i - 1];
+        }
+        int[] next = Arrays.copyOf(bounds, groups + 1);
+        for (int i = from; i < to; i++) {
+            int group = sequences[i].group;
+            scratch[next[group >= 0 ? group : groups]++] = sequences[i];
+        }
+        System.arraycopy(scratch, from, sequences, from, to - from);
+        return bounds;
+    }
+
+    private <T> List<Router.Node<T>> buildChildren(List<Token> tokens, int[] bounds, Sequence<T>[] sequences, Sequence<T>[] scratch) {
+        List<Router.Node<T>> nodes = new ArrayList<>(tokens.size());
+        if (buildPool == null) {
+            for (int i = 0; i < tokens.size(); i++) {
+                nodes.add(buildNode(tokens.get(i), sequences, scratch, bounds[i], bounds[i + 1]));  // recursion
+            }
+            return nodes;
+        }
+
+        // Fork the large subtrees first, build the rest meanwhile, then join all in the order.
+        List<ForkJoinTask<Router.Node<T>>> forked = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            int from = bounds[i], to = bounds[i + 1];
+            forked.add(to - from >= PARALLEL_MIN_SEQUENCES ?
+                    ForkJoinTask.adapt(() -> buildNode(token, sequences, scratch, from, to)).fork() :  // recursion
+                    null);
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            nodes.add(forked.get(i) != null ? forked.get(i).join() : buildNode(tokens.get(i), sequences, scratch, bounds[i], bounds[i + 1]));
+        }
+        return nodes;
+    }
+
+    /*package*/ static <T> Router.Node<T> compactJoinable(Router.Node<T> node) {
+        if (node.next().length != 1 || node.isTerminal()) {
             return node;
-        }).toList();
+        }
+        Router.Node<T> child = node.next()[0];
+        if (node.token() instanceof ConstToken lhs && child.token() instanceof ConstToken rhs) {
+            CharArray join = CharArray.join(lhs.buffer(), rhs.buffer());
+            return new Router.Node<>(new ConstToken(join), child.next(), child.terminalRule(), child.dispatch());
+        }
+        return node;
     }
 
-    private static class RootToken implements Token {
+    /*package*/ static class RootToken implements Token {
         @Override
         public int match(CharArray charArray) {
             return 0;
         }
 
+        @Override
+        public int match(ByteArray byteArray) {
+            return 0;
+        }
+
         @Override
         public String toString() {
             return "<root>";
         }
     }
 
-    private record Sequence<T>(LinkedList<Token> tokens, RouterSetup.Rule<T> rule) {}
+    /**
+     * The cursor over the rule tokens: the current token and the unconsumed part of it if it's const
+     * (so the const tokens are cut without copying). The sequences of a node are in the disjoint range
+     * of the array, hence each one is only advanced by a single task.
+     */
+    private static final class Sequence<T> {
+        private final RouterSetup.Rule<T> rule;
+        private final List<Token> tokens;
+        private int index = 0;
+        private CharArray head;  // null if the current token is not const
+        private int group = -1;
+
+        Sequence(RouterSetup.Rule<T> rule) {
+            this.rule = rule;
+            this.tokens = rule.query().tokens();
+            this.head = headOf(0);
+        }
+
+        boolean isEmpty() {
+            return index >= tokens.size();
+        }
+
+        // Consumes the `length` chars of the const head, or the whole current token if it's not const.
+        void advance(int length) {
+            if (head != null && length < head.length()) {
+                head = head.substringFrom(length);
+            } else {
+                head = headOf(++index);
+            }
+        }
+
+        private CharArray headOf(int index) {
+            return index < tokens.size() && tokens.get(index) instanceof ConstToken constToken ? constToken.buffer() : null;
+        }
+    }
 }
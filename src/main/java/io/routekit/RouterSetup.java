@@ -20,6 +20,10 @@ public class RouterSetup<T> {
         return this;
     }
 
+    /*package*/ RouterBuilder getBuilder() {
+        return builder;
+    }
+
     public List<Rule<T>> getRules() {
         return rules;
     }
@@ -52,7 +56,23 @@ public class RouterSetup<T> {
         return builder.buildRouter(rules);
     }
 
-    /*package*/ record Rule<T>(Query query, T handler) {
+    public OffHeapRouter<T> buildOffHeap() {
+        return builder.buildOffHeapRouter(rules);
+    }
+
+    /**
+     * Creates the setup with the same parser, builder and rules, which supports adding and removing the rules
+     * without rebuilding the whole router (see {@link IncrementalRouterSetup}).
+     */
+    public IncrementalRouterSetup<T> toIncremental() {
+        return new IncrementalRouterSetup<>(parser, builder, rules);
+    }
+
+    /*package*/ record Rule<T>(Query query, T handler, VariableSchema schema) {
+        Rule(Query query, T handler) {
+            this(query, handler, VariableSchema.of(query.tokens()));
+        }
+
         boolean isConstant() {
             List<Token> tokens = query.tokens();
             return tokens.size() == 1 && tokens.get(0) instanceof ConstToken;
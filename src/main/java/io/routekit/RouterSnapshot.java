@@ -0,0 +1,195 @@
+package io.routekit;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A binary snapshot of the built router: the off-heap state machine and the constant rules index
+ * (see {@link OffHeapRouter}) are stored as is, so that the router is loaded without parsing the rules
+ * and building the trie. The handlers are referenced by the stable string keys.
+ * <p>
+ * The file format: the header and the metadata (big-endian, see {@link DataOutput}), i.e. the handler keys,
+ * the variable names and the sizes, then the index and the trie memory (little-endian, aligned by 8 bytes).
+ * The loader maps the file into memory and routes directly over the mapped pages.
+ * <p>
+ * The rules with the custom tokens can't be stored, because the tokens are the arbitrary objects.
+ */
+public final class RouterSnapshot {
+    private static final Logger log = Logger.getLogger("RouteKit");
+
+    private static final int MAGIC = 0x524B534E;  // "RKSN"
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 8;
+
+    private RouterSnapshot() {}
+
+    /**
+     * Builds the router from the {@code setup} and stores it into the {@code path}.
+     * The {@code handlerKey} maps each handler to the key, which is resolved back when the snapshot is loaded.
+     */
+    public static <T> void write(RouterSetup<T> setup, Function<? super T, String> handlerKey, Path path) throws IOException {
+        try (OffHeapRouter<T> router = setup.buildOffHeap()) {
+            write(router, handlerKey, path);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void write(OffHeapRouter<T> router, Function<? super T, String> handlerKey, Path path) throws IOException {
+        OffHeapIndex<T> index = router.index();
+        OffHeapTrie<T> trie = router.trie();
+        if (trie.hasCustomTokens()) {
+            throw new RouteException("The rules with custom tokens can't be stored into a snapshot");
+        }
+        ByteBuffer indexMemory = index.memory();
+        ByteBuffer trieMemory = trie.memory();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(index.capacity());
+        out.writeBoolean(index.asciiKeys());
+        out.writeInt(index.lengthBits().length);
+        for (long bits : index.lengthBits()) {
+            out.writeLong(bits);
+        }
+        out.writeInt(index.handlers().length);
+        for (Object handler : index.handlers()) {
+            out.writeUTF(handlerKey.apply((T) handler));
+        }
+        out.writeInt(trie.size());
+        out.writeInt(trie.charsLength());
+        out.writeInt(trie.handlers().length);
+        for (int i = 0; i < trie.handlers().length; i++) {
+            out.writeUTF(handlerKey.apply((T) trie.handlers()[i]));
+            VariableSchema schema = trie.schemas()[i];
+            out.writeInt(schema.size());
+            for (int slot = 0; slot < schema.size(); slot++) {
+                out.writeUTF(schema.name(slot));
+            }
+        }
+        out.writeInt(indexMemory.remaining());
+        out.writeInt(trieMemory.remaining());
+        while (out.size() % ALIGNMENT != 0) {
+            out.writeByte(0);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()));
+            writeFully(channel, indexMemory);
+            writeFully(channel, ByteBuffer.allocate(padding(indexMemory.capacity())));
+            writeFully(channel, trieMemory);
+        }
+        log.log(Level.FINE, () -> "Stored router snapshot to %s: %d trie nodes, %d constant rules"
+                .formatted(path, trie.size(), index.size()));
+    }
+
+    /**
+     * Loads the router from the snapshot stored by {@link #write}, the {@code handlers} resolve the handler keys.
+     * The returned router routes over the file mapped into memory and must be closed when no longer used.
+     */
+    public static <T> OffHeapRouter<T> load(Path path, Function<String, ? extends T> handlers) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        ByteBuffer meta = mapped.duplicate();
+        try {
+            DataInputStream in = new DataInputStream(new BufferInputStream(meta));
+            if (in.readInt() != MAGIC) {
+                throw new RouteException("Not a router snapshot: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new RouteException("Unsupported router snapshot version %d: %s".formatted(version, path));
+            }
+            int capacity = in.readInt();
+            boolean asciiKeys = in.readBoolean();
+            long[] lengthBits = new long[in.readInt()];
+            for (int i = 0; i < lengthBits.length; i++) {
+                lengthBits[i] = in.readLong();
+            }
+            Object[] indexHandlers = new Object[in.readInt()];
+            for (int i = 0; i < indexHandlers.length; i++) {
+                indexHandlers[i] = resolve(handlers, in.readUTF());
+            }
+            int size = in.readInt();
+            int charsLength = in.readInt();
+            Object[] trieHandlers = new Object[in.readInt()];
+            VariableSchema[] schemas = new VariableSchema[trieHandlers.length];
+            for (int i = 0; i < trieHandlers.length; i++) {
+                trieHandlers[i] = resolve(handlers, in.readUTF());
+                String[] names = new String[in.readInt()];
+                for (int slot = 0; slot < names.length; slot++) {
+                    names[slot] = in.readUTF();
+                }
+                schemas[i] = VariableSchema.of(names);
+            }
+            int indexLength = in.readInt();
+            int trieLength = in.readInt();
+            int indexOffset = meta.position() + padding(meta.position());
+            int trieOffset = indexOffset + indexLength + padding(indexLength);
+
+            OffHeapIndex<T> index = new OffHeapIndex<>(mapped.slice(indexOffset, indexLength), capacity,
+                                                       indexHandlers, lengthBits, asciiKeys);
+            OffHeapTrie<T> trie = new OffHeapTrie<>(mapped.slice(trieOffset, trieLength), size, charsLength,
+                                                    new int[0], new Token[0], new int[0], trieHandlers, schemas);
+            log.log(Level.FINE, () -> "Loaded router snapshot from %s: %d trie nodes, %d constant rules"
+                    .formatted(path, size, indexHandlers.length));
+            return new OffHeapRouter<>(index, trie);
+        } catch (EOFException | IndexOutOfBoundsException e) {
+            throw new RouteException("Truncated router snapshot: " + path, e);
+        }
+    }
+
+    private static Object resolve(Function<String, ?> handlers, String key) {
+        Object handler = handlers.apply(key);
+        if (handler == null) {
+            throw new RouteException("Unknown handler key in the router snapshot: " + key);
+        }
+        return handler;
+    }
+
+    private static int padding(int size) {
+        return (ALIGNMENT - size % ALIGNMENT) % ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Reads the metadata directly from the mapped buffer, advancing its position.
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
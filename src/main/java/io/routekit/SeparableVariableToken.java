@@ -1,16 +1,21 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * A separable variable matches everything until the first {@code separator}.
  */
 public final class SeparableVariableToken extends Variable implements Token {
     private final char separator;
+    private final byte[] separatorBytes;
 
     public SeparableVariableToken(String name, char separator) {
         super(name);
         this.separator = separator;
+        this.separatorBytes = String.valueOf(separator).getBytes(StandardCharsets.UTF_8);
     }
 
     public SeparableVariableToken(String name) {
@@ -22,6 +27,18 @@ public final class SeparableVariableToken extends Variable implements Token {
         return handleEmptyMatch(charArray.indexOf(separator, 0, charArray.length()));  // match until separator
     }
 
+    @Override
+    public int match(ByteArray byteArray) {
+        int index = separatorBytes.length == 1 ?
+                byteArray.indexOf(separatorBytes[0], 0, byteArray.length()) :
+                byteArray.indexOf(separatorBytes, 0, byteArray.length());
+        return handleEmptyMatch(index);  // match until separator
+    }
+
+    public char separator() {
+        return separator;
+    }
+
     @Override
     public String toString() {
         return "SeparableVariableToken[%s]".formatted(name());
@@ -1,11 +1,9 @@
 package io.routekit;
 
 import io.routekit.util.CharArray;
-import io.routekit.util.MutableCharArray;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A query parser that recognizes basic token set. Example accepted queries:
@@ -13,6 +11,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  *     /foo/bar          -> no variables, a single string literal
  *     /{foo}            -> string literals and one variable {foo}
  *     /foo/{foo}/{*bar} -> two variables {foo} and {*bar} (wildcard)
+ *     /user/{id:long}   -> the typed variable {id} (see {@link TypedVariableToken.Type})
+ *     /{slug:[a-z-]+}   -> the char class variable {slug} (see {@link CharClassVariableToken})
  * </pre>
  *
  * @param separator a char that marks the end of a variable
@@ -20,6 +20,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public record SimpleQueryParser(char separator) implements QueryParser {
     public static final char VAR_OPEN = '{';
     public static final char VAR_CLOSE = '}';
+    public static final char VAR_TYPE = ':';
     public static final char DEFAULT_SEPARATOR = '/';
     public static final SimpleQueryParser DEFAULT = new SimpleQueryParser(DEFAULT_SEPARATOR);
 
@@ -28,25 +29,35 @@ public record SimpleQueryParser(char separator) implements QueryParser {
         QueryValidator validator = new QueryValidator(separator, input);
         validateBracketSequence(input, VAR_OPEN, VAR_CLOSE);
 
-        MutableCharArray array = input.mutableCopy();  // copy to avoid modifying the input
+        // The const tokens are the views into the input, the scan only moves the `start` index
         ArrayList<Token> tokens = new ArrayList<>();
+        int length = input.length();
+        int start = 0;
         while (true) {
-            int length = array.length();
-            int open = array.indexOf(VAR_OPEN, 0, length);  // match until variable start
-            if (open > 0) {
-                tokens.add(new ConstToken(array.substringUntil(open)));
+            int open = input.indexOf(VAR_OPEN, start, length);  // match until variable start
+            if (open > start) {
+                tokens.add(new ConstToken(input.substring(start, open)));
             }
             if (open < length) {
-                int close = array.indexOf(VAR_CLOSE, open);
-                QueryParseException.failIf(close < 0, "Failed to parse variables in the query: " + input);
+                int close = input.indexOf(VAR_CLOSE, open);
+                if (close < 0) {
+                    throw new QueryParseException("Failed to parse variables in the query: " + input);
+                }
 
-                boolean isWildcard = array.at(open + 1) == '*';
-                String varName = array.substring(open + (isWildcard ? 2 : 1), close).toString();
+                boolean isWildcard = input.at(open + 1) == '*';
+                int colon = Math.min(input.indexOf(VAR_TYPE, open, length), close);
+                String varName = input.substring(open + (isWildcard ? 2 : 1), colon).toString();
 
-                Token token = isWildcard ? new WildcardToken(varName) : new SeparableVariableToken(varName, separator);
+                Token token;
+                if (colon < close) {
+                    QueryParseException.failIf(isWildcard, "Query contains the constrained wildcard", input);
+                    token = constrainedVariable(varName, input.substring(colon + 1, close).toString(), input);
+                } else {
+                    token = isWildcard ? new WildcardToken(varName) : new SeparableVariableToken(varName, separator);
+                }
                 tokens.add(token);
 
-                array.offsetStart(close + 1);
+                start = close + 1;
             } else {
                 validator.checkTokens(tokens);
                 return tokens;
@@ -54,15 +65,30 @@ public record SimpleQueryParser(char separator) implements QueryParser {
         }
     }
 
+    private Token constrainedVariable(String name, String constraint, CharArray input) {
+        TypedVariableToken.Type type = TypedVariableToken.Type.of(constraint);
+        if (type != null) {
+            return new TypedVariableToken(name, type, separator);
+        }
+        if (constraint.startsWith("[") || CharClassVariableToken.named(constraint) != null) {
+            return CharClassVariableToken.of(name, constraint, separator, input);
+        }
+        throw new QueryParseException("Query contains unknown variable type `%s`: %s".formatted(constraint, input));
+    }
+
     private static void validateBracketSequence(CharArray input, int open, int close) {
-        AtomicInteger balance = new AtomicInteger();  // wish I could use an int here...
-        input.forEach(value -> {
-            if (value == open) {
-                QueryParseException.failIf(balance.incrementAndGet() > 1, "Malformed query (nested variables): " + input);
-            } else if (value == close) {
-                QueryParseException.failIf(balance.decrementAndGet() < 0, "Malformed query (brackets don't match): " + input);
+        int balance = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char value = input.charAt(i);
+            if (value == open && ++balance > 1) {
+                throw new QueryParseException("Malformed query (nested variables): " + input);
             }
-        });
-        QueryParseException.failIf(balance.intValue() != 0, "Malformed query (brackets aren't closed): " + input);
+            if (value == close && --balance < 0) {
+                throw new QueryParseException("Malformed query (brackets don't match): " + input);
+            }
+        }
+        if (balance != 0) {
+            throw new QueryParseException("Malformed query (brackets aren't closed): " + input);
+        }
     }
 }
@@ -1,5 +1,6 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
 
 /**
@@ -24,4 +25,17 @@ public interface Token {
      * </pre>
      */
     int match(CharArray charArray);
+
+    /**
+     * Returns the length (in bytes) of the match with the UTF-8 encoded {@link ByteArray}.
+     * Result is negative if the token doesn't match.
+     * <p>
+     * The default implementation decodes the bytes and delegates to {@link #match(CharArray)},
+     * the built-in tokens override it to match the bytes directly.
+     */
+    default int match(ByteArray byteArray) {
+        CharArray chars = byteArray.decode();
+        int match = match(chars);
+        return match > 0 ? ByteArray.encodedLength(chars, 0, match) : match;
+    }
 }
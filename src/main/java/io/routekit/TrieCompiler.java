@@ -0,0 +1,352 @@
+package io.routekit;
+
+import io.routekit.ClassFileWriter.Code;
+import io.routekit.ClassFileWriter.Label;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.routekit.ClassFileWriter.*;
+
+/**
+ * Compiles the routing trie into a hidden class (see {@link MethodHandles.Lookup#defineHiddenClass}),
+ * which replaces the interpreted navigation of the {@link Router} for the chars input.
+ * <p>
+ * Every node becomes a static method: the const children are selected by a {@code lookupswitch} on the first char
+ * followed by the inlined char comparisons, the variables and wildcards are matched inline as well,
+ * then the selected child method is called via a {@code tableswitch}. The tie-break is the same as in the interpreter:
+ * among the children with the same match length, the first one wins.
+ * <p>
+ * The nodes with too many const children use the {@link ChildDispatch} lookup instead of the inlined comparisons,
+ * the wide switches are split into chunks.
+ * <p>
+ * Only the top of the trie is compiled (breadth-first, up to {@code maxNodes}): the deep nodes of a large trie
+ * are visited rarely, so their methods would stay cold (not JIT-compiled) for a long time, while the interpreter loop
+ * is always hot. The nodes below the compiled top, as well as the nodes with the custom tokens among the children,
+ * continue with the interpreter. If the root can't be compiled or the code is too large
+ * (the method or the constant pool limits), the compiler returns null and the interpreter is used for everything.
+ */
+/*package*/ final class TrieCompiler {
+    private static final Logger log = Logger.getLogger("RouteKit");
+
+    private static final int MAX_CODE_SIZE = 8000;      // HotSpot doesn't JIT-compile the larger methods
+    private static final int MAX_POOL_SIZE = 65535;
+    private static final int MAX_INLINE_CONSTS = 16;
+    private static final int MAX_INLINE_CHARS = 256;
+    private static final int SWITCH_CHUNK_BITS = 8;
+    /*package*/ static final int DEFAULT_MAX_NODES = 256;
+
+    private static final String BASE = "io/routekit/CompiledTrie";
+    private static final String NAME = "io/routekit/CompiledTrie$Generated";
+    private static final String CHAR_ARRAY = "io/routekit/util/CharArray";
+    private static final String HOLDER = "io/routekit/MatchHolder";
+    private static final String INIT_DESC =
+            "([Lio/routekit/RouterSetup$Rule;[Lio/routekit/ChildDispatch;[Lio/routekit/Router$Node;)V";
+    private static final String NAVIGATE_DESC = "(L" + CHAR_ARRAY + ";L" + HOLDER + ";)Z";
+    private static final String NODE_DESC = "(L" + BASE + ";L" + CHAR_ARRAY + ";IL" + HOLDER + ";)Z";
+    private static final String CHUNK_DESC = "(L" + BASE + ";L" + CHAR_ARRAY + ";IL" + HOLDER + ";II)Z";
+
+    // The locals of the node methods (the chunk methods have the `best` and `bestIndex` as the arguments 4 and 5).
+    private static final int SELF = 0;
+    private static final int INPUT = 1;
+    private static final int POS = 2;
+    private static final int OUT = 3;
+    private static final int LEN = 4;
+    private static final int BEST = 5;
+    private static final int BEST_INDEX = 6;
+    private static final int TMP = 7;
+    private static final int MATCH = 8;
+    private static final int MAX_STACK = 8;
+
+    private final ClassFileWriter writer = new ClassFileWriter(NAME, BASE);
+    private final Map<Router.Node<?>, Integer> ids = new IdentityHashMap<>();
+    private final List<Router.Node<?>> nodes = new ArrayList<>();
+    private final List<RouterSetup.Rule<?>> rules = new ArrayList<>();
+    private final List<ChildDispatch> dispatches = new ArrayList<>();
+    private final Map<Router.Node<?>, Integer> continuations = new IdentityHashMap<>();
+    private final int maxNodes;
+
+    private TrieCompiler(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Returns the compiled trie or null if it can't be compiled.
+     */
+    public static <T> CompiledTrie<T> compileOrNull(Router.Node<T> root) {
+        return compileOrNull(root, DEFAULT_MAX_NODES);
+    }
+
+    public static <T> CompiledTrie<T> compileOrNull(Router.Node<T> root, int maxNodes) {
+        return new TrieCompiler(maxNodes).compile(root);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompiledTrie<T> compile(Router.Node<T> root) {
+        collect(root);
+        if (nodes.isEmpty()) {
+            log.log(Level.FINE, "Trie can't be compiled: the root has custom tokens");
+            return null;
+        }
+        for (Router.Node<?> node : nodes) {
+            if (!writeNode(node)) {
+                log.log(Level.FINE, () -> "Trie is too large to compile, the node: %s".formatted(node.token()));
+                return null;
+            }
+        }
+        writeConstructor();
+        writeNavigate();
+        if (writer.poolSize() > MAX_POOL_SIZE) {
+            log.log(Level.FINE, () -> "Trie is too large to compile: %d constants".formatted(writer.poolSize()));
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+            MethodType type = MethodType.methodType(
+                    void.class, RouterSetup.Rule[].class, ChildDispatch[].class, Router.Node[].class);
+            Router.Node<?>[] interpreted = new Router.Node<?>[continuations.size()];
+            continuations.forEach((node, index) -> interpreted[index] = node);
+            return (CompiledTrie<T>) lookup.findConstructor(lookup.lookupClass(), type).invoke(
+                    rules.toArray(RouterSetup.Rule[]::new), dispatches.toArray(ChildDispatch[]::new), interpreted);
+        } catch (Throwable e) {
+            throw new RouteException("Failed to compile the trie: " + e.getMessage(), e);
+        }
+    }
+
+    // Numbers the compiled nodes breadth-first (the shared nodes only once).
+    private void collect(Router.Node<?> root) {
+        Set<Router.Node<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Router.Node<?>> queue = new ArrayDeque<>();
+        queue.add(root);
+        seen.add(root);
+        while (!queue.isEmpty() && nodes.size() < maxNodes) {
+            Router.Node<?> node = queue.poll();
+            if (!Arrays.stream(node.next()).allMatch(TrieCompiler::isKnownToken)) {
+                continue;  // matched by the interpreter
+            }
+            ids.put(node, nodes.size());
+            nodes.add(node);
+            dispatches.add(null);
+            for (Router.Node<?> child : node.next()) {
+                if (seen.add(child)) {
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private static boolean isKnownToken(Router.Node<?> node) {
+        Token token = node.token();
+        return token instanceof ConstToken || token instanceof SeparableVariableToken || token instanceof WildcardToken;
+    }
+
+    private boolean writeNode(Router.Node<?> node) {
+        int id = ids.get(node);
+        Router.Node<?>[] next = node.next();
+        Code code = writer.new Code(MAX_STACK, MATCH + 1);
+        Label body = new Label();
+
+        code.aload(INPUT).invoke(INVOKEVIRTUAL, CHAR_ARRAY, "length", "()I").istore(LEN);
+        code.iload(POS).iload(LEN).jump(IF_ICMPLT, body);
+        writeEnd(code, node);
+
+        code.mark(body);
+        if (next.length == 0) {
+            code.op(ICONST_0).op(IRETURN);
+            return addMethod("n" + id, NODE_DESC, code);
+        }
+        code.op(ICONST_M1).istore(BEST).op(ICONST_M1).istore(BEST_INDEX);
+
+        List<Integer> consts = new ArrayList<>();
+        List<Integer> fallback = new ArrayList<>();
+        int totalChars = 0;
+        for (int i = 0; i < next.length; i++) {
+            if (next[i].token() instanceof ConstToken constToken && constToken.buffer().isNotEmpty()) {
+                consts.add(i);
+                totalChars += constToken.buffer().length();
+            } else {
+                fallback.add(i);
+            }
+        }
+
+        Label fallbackStart = new Label();
+        Label decided = new Label();
+        if (consts.size() <= MAX_INLINE_CONSTS && totalChars <= MAX_INLINE_CHARS) {
+            writeInlineConsts(code, node, consts, fallbackStart, decided);
+        } else if (!consts.isEmpty()) {
+            dispatches.set(id, node.dispatch());
+            writeDispatchConsts(code, id, fallbackStart);
+        }
+        code.mark(fallbackStart);
+        for (int i : fallback) {
+            writeFallback(code, next[i], i);
+        }
+
+        code.mark(decided);
+        Label fail = new Label();
+        code.iload(BEST_INDEX).jump(IFLT, fail);
+        if (next.length <= 1 << SWITCH_CHUNK_BITS) {
+            writeSwitch(code, next, 0, next.length, BEST, BEST_INDEX, fail);
+        } else {
+            int chunks = ((next.length - 1) >> SWITCH_CHUNK_BITS) + 1;
+            Label[] labels = new Label[chunks];
+            Arrays.setAll(labels, i -> new Label());
+            code.iload(BEST_INDEX).iconst(SWITCH_CHUNK_BITS).op(ISHR).tableswitch(0, fail, labels);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                code.mark(labels[chunk]);
+                code.aload(SELF).aload(INPUT).iload(POS).aload(OUT).iload(BEST).iload(BEST_INDEX);
+                code.invoke(INVOKESTATIC, NAME, "d%d_%d".formatted(id, chunk), CHUNK_DESC).op(IRETURN);
+                if (!writeChunk(id, chunk, next)) {
+                    return false;
+                }
+            }
+        }
+        code.mark(fail);
+        code.op(ICONST_0).op(IRETURN);
+        return addMethod("n" + id, NODE_DESC, code);
+    }
+
+    // The input is fully matched: succeed on the terminal node.
+    private void writeEnd(Code code, Router.Node<?> node) {
+        if (node.isTerminal()) {
+            rules.add(node.terminalRule());
+            code.aload(SELF).aload(OUT).iconst(rules.size() - 1);
+            code.invoke(INVOKEVIRTUAL, BASE, "terminal", "(L" + HOLDER + ";I)Z").op(IRETURN);
+        } else {
+            code.op(ICONST_0).op(IRETURN);
+        }
+    }
+
+    // switch (input[pos]) { case 'a': if (input[pos+1:pos+n] == "...") { best = n; bestIndex = i; } ... }
+    // The match skips the fallback children if they can't match longer (see `ChildDispatch.isDecisive()`).
+    private void writeInlineConsts(Code code, Router.Node<?> node, List<Integer> consts, Label done, Label decided) {
+        Router.Node<?>[] next = node.next();
+        if (consts.isEmpty()) {
+            return;
+        }
+        TreeMap<Character, List<Integer>> byFirstChar = new TreeMap<>();
+        for (int i : consts) {
+            byFirstChar.computeIfAbsent(buffer(next[i]).charAt(0), key -> new ArrayList<>()).add(i);
+        }
+        int[] keys = byFirstChar.keySet().stream().mapToInt(Character::charValue).toArray();
+        Label[] labels = new Label[keys.length];
+        Arrays.setAll(labels, i -> new Label());
+
+        code.aload(INPUT).iload(POS).invoke(INVOKEVIRTUAL, CHAR_ARRAY, "charAt", "(I)C");
+        code.lookupswitch(done, keys, labels);
+        int k = 0;
+        for (List<Integer> group : byFirstChar.values()) {
+            code.mark(labels[k++]);
+            group.sort(Comparator.comparing((Integer i) -> buffer(next[i]).length()).reversed());  // the longest first
+            for (int i : group) {
+                CharSequence buffer = buffer(next[i]);
+                Label mismatch = new Label();
+                if (buffer.length() > 1) {
+                    code.iload(LEN).iload(POS).op(ISUB).iconst(buffer.length()).jump(IF_ICMPLT, mismatch);
+                    for (int j = 1; j < buffer.length(); j++) {
+                        code.aload(INPUT).iload(POS).iconst(j).op(IADD).invoke(INVOKEVIRTUAL, CHAR_ARRAY, "charAt", "(I)C");
+                        code.iconst(buffer.charAt(j)).jump(IF_ICMPNE, mismatch);
+                    }
+                }
+                code.iconst(buffer.length()).istore(BEST).iconst(i).istore(BEST_INDEX);
+                code.jump(GOTO, node.dispatch().isDecisive(i) ? decided : done);
+                code.mark(mismatch);
+            }
+            code.jump(GOTO, done);
+        }
+    }
+
+    // key = constMatch(node, input, pos); if (key >= 0) { best = constLength(node, key); bestIndex = constChild(...); }
+    private void writeDispatchConsts(Code code, int id, Label done) {
+        code.aload(SELF).iconst(id).aload(INPUT).iload(POS).aload(OUT);
+        code.invoke(INVOKEVIRTUAL, BASE, "constMatch", "(IL" + CHAR_ARRAY + ";IL" + HOLDER + ";)I").istore(TMP);
+        code.iload(TMP).jump(IFLT, done);
+        code.aload(SELF).iconst(id).iload(TMP).invoke(INVOKEVIRTUAL, BASE, "constLength", "(II)I").istore(BEST);
+        code.aload(SELF).iconst(id).iload(TMP).invoke(INVOKEVIRTUAL, BASE, "constChild", "(II)I").istore(BEST_INDEX);
+    }
+
+    // match = ...; if (match > best || match == best && match >= 0 && i < bestIndex) { best = match; bestIndex = i; }
+    private void writeFallback(Code code, Router.Node<?> child, int i) {
+        if (child.token() instanceof SeparableVariableToken variable) {
+            Label nonEmpty = new Label();
+            code.aload(INPUT).iconst(variable.separator()).iload(POS).iload(LEN);
+            code.invoke(INVOKEVIRTUAL, CHAR_ARRAY, "indexOf", "(CII)I").iload(POS).op(ISUB).istore(MATCH);
+            code.iload(MATCH).jump(IFNE, nonEmpty).op(ICONST_M1).istore(MATCH).mark(nonEmpty);
+        } else if (child.token() instanceof WildcardToken) {
+            code.iload(LEN).iload(POS).op(ISUB).istore(MATCH);  // not empty: pos < len
+        } else {
+            code.op(ICONST_0).istore(MATCH);  // empty const
+        }
+        Label take = new Label();
+        Label skip = new Label();
+        code.iload(MATCH).iload(BEST).jump(IF_ICMPGT, take);
+        code.iload(MATCH).iload(BEST).jump(IF_ICMPNE, skip);
+        code.iload(MATCH).jump(IFLT, skip);
+        code.iconst(i).iload(BEST_INDEX).jump(IF_ICMPGE, skip);
+        code.mark(take);
+        code.iload(MATCH).istore(BEST).iconst(i).istore(BEST_INDEX);
+        code.mark(skip);
+    }
+
+    // switch (bestIndex) { case i: [out.addVariable(pos, pos + best);] return n<child>(self, input, pos + best, out); }
+    private void writeSwitch(Code code, Router.Node<?>[] next, int from, int to, int best, int bestIndex, Label fail) {
+        Label[] labels = new Label[to - from];
+        Arrays.setAll(labels, i -> new Label());
+        code.iload(bestIndex).tableswitch(from, fail, labels);
+        for (int i = from; i < to; i++) {
+            code.mark(labels[i - from]);
+            if (next[i].token() instanceof Variable) {
+                code.aload(OUT).iload(POS).iload(POS).iload(best).op(IADD);
+                code.invoke(INVOKEVIRTUAL, HOLDER, "addVariable", "(II)V");
+            }
+            Integer id = ids.get(next[i]);
+            if (id != null) {
+                code.aload(SELF).aload(INPUT).iload(POS).iload(best).op(IADD).aload(OUT);
+                code.invoke(INVOKESTATIC, NAME, "n" + id, NODE_DESC).op(IRETURN);
+            } else {
+                int continuation = continuations.computeIfAbsent(next[i], node -> continuations.size());
+                code.aload(SELF).iconst(continuation).aload(INPUT).iload(POS).iload(best).op(IADD).aload(OUT);
+                code.invoke(INVOKEVIRTUAL, BASE, "interpret", "(IL" + CHAR_ARRAY + ";IL" + HOLDER + ";)Z").op(IRETURN);
+            }
+        }
+    }
+
+    private boolean writeChunk(int id, int chunk, Router.Node<?>[] next) {
+        Code code = writer.new Code(MAX_STACK, 6);
+        Label fail = new Label();
+        int from = chunk << SWITCH_CHUNK_BITS;
+        int to = Math.min(next.length, from + (1 << SWITCH_CHUNK_BITS));
+        writeSwitch(code, next, from, to, 4, 5, fail);
+        code.mark(fail);
+        code.op(ICONST_0).op(IRETURN);
+        return addMethod("d%d_%d".formatted(id, chunk), CHUNK_DESC, code);
+    }
+
+    private void writeConstructor() {
+        Code code = writer.new Code(4, 4);
+        code.aload(0).aload(1).aload(2).aload(3).invoke(INVOKESPECIAL, BASE, "<init>", INIT_DESC).op(RETURN);
+        writer.addMethod(ACC_PUBLIC, "<init>", INIT_DESC, code);
+    }
+
+    private void writeNavigate() {
+        Code code = writer.new Code(4, 3);
+        code.aload(0).aload(1).iconst(0).aload(2).invoke(INVOKESTATIC, NAME, "n0", NODE_DESC).op(IRETURN);
+        writer.addMethod(0, "navigate", NAVIGATE_DESC, code);
+    }
+
+    private boolean addMethod(String name, String descriptor, Code code) {
+        if (code.size() > MAX_CODE_SIZE) {
+            return false;
+        }
+        writer.addMethod(ACC_PRIVATE | ACC_STATIC, name, descriptor, code);
+        return true;
+    }
+
+    private static CharSequence buffer(Router.Node<?> node) {
+        return ((ConstToken) node.token()).buffer();
+    }
+}
@@ -0,0 +1,281 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * A separable variable of the primitive type, e.g. {@code {id:long}}: matches everything until the first
+ * {@code separator} if it's a valid value of the type, otherwise doesn't match, so that the input falls through
+ * to the sibling rules (e.g. {@code /user/{id:long}} and {@code /user/{name}}, the first declared wins the tie).
+ * <p>
+ * The value is only validated by the {@code match}, it's parsed once the rule is matched and stored into
+ * the {@link MatchHolder} (see {@link MatchHolder#longValue(int)}), so the handler doesn't parse the string.
+ */
+public final class TypedVariableToken extends Variable implements Token {
+    private final Type type;
+    private final char separator;
+    private final byte[] separatorBytes;
+
+    public TypedVariableToken(String name, Type type, char separator) {
+        super(name);
+        this.type = type;
+        this.separator = separator;
+        this.separatorBytes = String.valueOf(separator).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public TypedVariableToken(String name, Type type) {
+        this(name, type, SimpleQueryParser.DEFAULT_SEPARATOR);
+    }
+
+    @Override
+    public int match(CharArray charArray) {
+        int match = handleEmptyMatch(charArray.indexOf(separator, 0, charArray.length()));  // match until separator
+        return match > 0 && type.isValid(charArray, 0, match) ? match : -1;
+    }
+
+    @Override
+    public int match(ByteArray byteArray) {
+        int index = separatorBytes.length == 1 ?
+                byteArray.indexOf(separatorBytes[0], 0, byteArray.length()) :
+                byteArray.indexOf(separatorBytes, 0, byteArray.length());
+        int match = handleEmptyMatch(index);  // match until separator
+        return match > 0 && type.isValid(byteArray, 0, match) ? match : -1;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public char separator() {
+        return separator;
+    }
+
+    @Override
+    public String constraint() {
+        return type.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "TypedVariableToken[%s:%s]".formatted(name(), type);
+    }
+
+    /**
+     * The value types. The value is stored as one long, the UUID as two (the most and the least significant bits).
+     */
+    public enum Type {
+        /** The decimal {@code int}: the digits with an optional leading {@code -}, within the {@code int} range. */
+        INT {
+            @Override
+            /*package*/ boolean isValid(CharArray chars, int from, int to) {
+                return isDecimal(chars, from, to, INT_MAX, INT_MIN);
+            }
+
+            @Override
+            /*package*/ boolean isValid(ByteArray bytes, int from, int to) {
+                return isDecimal(bytes, from, to, INT_MAX, INT_MIN);
+            }
+        },
+        /** The decimal {@code long}: the digits with an optional leading {@code -}, within the {@code long} range. */
+        LONG {
+            @Override
+            /*package*/ boolean isValid(CharArray chars, int from, int to) {
+                return isDecimal(chars, from, to, LONG_MAX, LONG_MIN);
+            }
+
+            @Override
+            /*package*/ boolean isValid(ByteArray bytes, int from, int to) {
+                return isDecimal(bytes, from, to, LONG_MAX, LONG_MIN);
+            }
+        },
+        /** The {@link java.util.UUID} in the canonical 8-4-4-4-12 hex form, in either case. */
+        UUID {
+            @Override
+            /*package*/ boolean isValid(CharArray chars, int from, int to) {
+                if (to - from != UUID_LENGTH) {
+                    return false;
+                }
+                for (int i = 0; i < UUID_LENGTH; i++) {
+                    int ch = chars.charAt(from + i);
+                    if (isUuidDash(i) ? ch != '-' : hexDigit(ch) < 0) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            /*package*/ boolean isValid(ByteArray bytes, int from, int to) {
+                if (to - from != UUID_LENGTH) {
+                    return false;
+                }
+                for (int i = 0; i < UUID_LENGTH; i++) {
+                    int ch = bytes.byteAt(from + i);
+                    if (isUuidDash(i) ? ch != '-' : hexDigit(ch) < 0) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            /*package*/ long value(CharArray chars, int from, int to) {
+                return hex(chars, from, from + 8) << 32 | hex(chars, from + 9, from + 13) << 16 | hex(chars, from + 14, from + 18);
+            }
+
+            @Override
+            /*package*/ long value(ByteArray bytes, int from, int to) {
+                return hex(bytes, from, from + 8) << 32 | hex(bytes, from + 9, from + 13) << 16 | hex(bytes, from + 14, from + 18);
+            }
+
+            @Override
+            /*package*/ long lowBits(CharArray chars, int from, int to) {
+                return hex(chars, from + 19, from + 23) << 48 | hex(chars, from + 24, to);
+            }
+
+            @Override
+            /*package*/ long lowBits(ByteArray bytes, int from, int to) {
+                return hex(bytes, from + 19, from + 23) << 48 | hex(bytes, from + 24, to);
+            }
+        };
+
+        // The limits of the absolute value
+        private static final String INT_MAX = String.valueOf(Integer.MAX_VALUE);
+        private static final String INT_MIN = String.valueOf(Integer.MIN_VALUE).substring(1);
+        private static final String LONG_MAX = String.valueOf(Long.MAX_VALUE);
+        private static final String LONG_MIN = String.valueOf(Long.MIN_VALUE).substring(1);
+        private static final int UUID_LENGTH = 36;
+
+        /**
+         * Returns the type by its name in the query (e.g. {@code int}) or null if there's no such type.
+         */
+        public static Type of(String name) {
+            for (Type type : values()) {
+                if (type.toString().equals(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        /*package*/ abstract boolean isValid(CharArray chars, int from, int to);
+
+        /*package*/ abstract boolean isValid(ByteArray bytes, int from, int to);
+
+        // Returns the value of the valid [from, to) range or the most significant bits of the UUID.
+        /*package*/ long value(CharArray chars, int from, int to) {
+            boolean negative = chars.charAt(from) == '-';
+            long result = 0;
+            for (int i = negative ? from + 1 : from; i < to; i++) {
+                result = 10 * result - (chars.charAt(i) - '0');  // accumulated negatively: MIN_VALUE has no positive pair
+            }
+            return negative ? result : -result;
+        }
+
+        /*package*/ long value(ByteArray bytes, int from, int to) {
+            boolean negative = bytes.byteAt(from) == '-';
+            long result = 0;
+            for (int i = negative ? from + 1 : from; i < to; i++) {
+                result = 10 * result - (bytes.byteAt(i) - '0');
+            }
+            return negative ? result : -result;
+        }
+
+        // Returns the least significant bits of the UUID, 0 for the numbers.
+        /*package*/ long lowBits(CharArray chars, int from, int to) {
+            return 0;
+        }
+
+        /*package*/ long lowBits(ByteArray bytes, int from, int to) {
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        // The digits with the optional minus sign and leading zeros, the absolute value is within the limit of the sign.
+        private static boolean isDecimal(CharArray chars, int from, int to, String max, String min) {
+            boolean negative = chars.charAt(from) == '-';
+            String limit = negative ? min : max;
+            int start = negative ? from + 1 : from;
+            if (start == to) {
+                return false;
+            }
+            while (start < to - 1 && chars.charAt(start) == '0') {
+                start++;
+            }
+            if (to - start > limit.length()) {
+                return false;
+            }
+            int compare = to - start < limit.length() ? -1 : 0;  // the sign of `value - limit` by the first different digit
+            for (int i = start; i < to; i++) {
+                int ch = chars.charAt(i);
+                if (ch < '0' || ch > '9') {
+                    return false;
+                }
+                if (compare == 0) {
+                    compare = Integer.compare(ch, limit.charAt(i - start));
+                }
+            }
+            return compare <= 0;
+        }
+
+        private static boolean isDecimal(ByteArray bytes, int from, int to, String max, String min) {
+            boolean negative = bytes.byteAt(from) == '-';
+            String limit = negative ? min : max;
+            int start = negative ? from + 1 : from;
+            if (start == to) {
+                return false;
+            }
+            while (start < to - 1 && bytes.byteAt(start) == '0') {
+                start++;
+            }
+            if (to - start > limit.length()) {
+                return false;
+            }
+            int compare = to - start < limit.length() ? -1 : 0;
+            for (int i = start; i < to; i++) {
+                int ch = bytes.byteAt(i);
+                if (ch < '0' || ch > '9') {
+                    return false;
+                }
+                if (compare == 0) {
+                    compare = Integer.compare(ch, limit.charAt(i - start));
+                }
+            }
+            return compare <= 0;
+        }
+
+        private static boolean isUuidDash(int index) {
+            return index == 8 || index == 13 || index == 18 || index == 23;
+        }
+
+        private static long hex(CharArray chars, int from, int to) {
+            long result = 0;
+            for (int i = from; i < to; i++) {
+                result = result << 4 | hexDigit(chars.charAt(i));
+            }
+            return result;
+        }
+
+        private static long hex(ByteArray bytes, int from, int to) {
+            long result = 0;
+            for (int i = from; i < to; i++) {
+                result = result << 4 | hexDigit(bytes.byteAt(i));
+            }
+            return result;
+        }
+
+        private static int hexDigit(int ch) {
+            if (ch >= '0' && ch <= '9') return ch - '0';
+            if (ch >= 'a' && ch <= 'f') return ch - 'a' + 10;
+            if (ch >= 'A' && ch <= 'F') return ch - 'A' + 10;
+            return -1;
+        }
+    }
+}
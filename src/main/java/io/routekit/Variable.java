@@ -16,6 +16,14 @@ public abstract class Variable {
         return name;
     }
 
+    /**
+     * Returns the constraint of the value as written in the query (e.g. {@code int} of {@code {id:int}}),
+     * or null if the variable matches any value.
+     */
+    public String constraint() {
+        return null;
+    }
+
     // Makes sure that empty match satisfies the option.
     protected static int handleEmptyMatch(int match) {
         return (match == 0) ? -1 : match;
@@ -23,12 +31,13 @@ public abstract class Variable {
 
     @Override
     public boolean equals(Object other) {
-        // Note: does not matter if it's a wildcard or not
-        return this == other || other instanceof Variable variable && Objects.equals(name, variable.name);
+        // Note: does not matter if it's a wildcard or not, but the constrained variables are different
+        return this == other || other instanceof Variable variable && Objects.equals(name, variable.name) &&
+                Objects.equals(constraint(), variable.constraint());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return Objects.hash(name, constraint());
     }
 }
@@ -0,0 +1,96 @@
+package io.routekit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The variable names of a rule in the order of appearance, computed once when the rule is set up.
+ * The index of the name is the slot of the variable in the {@link Match} or {@link MatchHolder}.
+ * <p>
+ * Rules have just a few variables, so the lookup by name is a linear scan: no hashing and no boxing.
+ * The types of the typed variables (see {@link TypedVariableToken}) are kept along with the names.
+ */
+public final class VariableSchema {
+    public static final VariableSchema EMPTY = new VariableSchema(new String[0], null);
+
+    private final String[] names;
+    private final TypedVariableToken.Type[] types;  // null if none is typed
+
+    private VariableSchema(String[] names, TypedVariableToken.Type[] types) {
+        this.names = names;
+        this.types = types;
+    }
+
+    public static VariableSchema of(String ... names) {
+        return names.length == 0 ? EMPTY : new VariableSchema(names.clone(), null);
+    }
+
+    public static VariableSchema of(List<Token> tokens) {
+        List<Variable> variables = tokens.stream()
+                .filter(token -> token instanceof Variable)
+                .map(token -> (Variable) token)
+                .toList();
+        String[] names = variables.stream().map(Variable::name).toArray(String[]::new);
+        TypedVariableToken.Type[] types = variables.stream()
+                .map(variable -> variable instanceof TypedVariableToken typed ? typed.type() : null)
+                .toArray(TypedVariableToken.Type[]::new);
+        boolean isTyped = Arrays.stream(types).anyMatch(Objects::nonNull);
+        return names.length == 0 ? EMPTY : new VariableSchema(names, isTyped ? types : null);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Returns the type of the variable in the {@code slot} or null if it's not typed.
+     */
+    public TypedVariableToken.Type type(int slot) {
+        return types != null ? types[slot] : null;
+    }
+
+    /*package*/ boolean hasTypes() {
+        return types != null;
+    }
+
+    /**
+     * Returns the slot of the variable {@code name} or -1 if the rule has no such variable.
+     */
+    public int slotOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public List<String> names() {
+        return List.of(names);
+    }
+
+    @Override
+    public String toString() {
+        return "VariableSchema%s".formatted(Arrays.toString(names));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof VariableSchema that && Arrays.equals(names, that.names) &&
+                Arrays.equals(types, that.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + Arrays.hashCode(types);
+    }
+}
@@ -1,5 +1,6 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
 
 /**
@@ -15,6 +16,11 @@ public final class WildcardToken extends Variable implements Token {
         return handleEmptyMatch(charArray.length());
     }
 
+    @Override
+    public int match(ByteArray byteArray) {
+        return handleEmptyMatch(byteArray.length());
+    }
+
     @Override
     public String toString() {
         return "WildcardToken[%s]".formatted(name());
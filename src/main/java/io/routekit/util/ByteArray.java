@@ -0,0 +1,217 @@
+package io.routekit.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A byte counterpart of the {@link CharArray}: a view over the UTF-8 encoded {@code byte[]} array,
+ * providing efficient slice and search operations without decoding the bytes into chars.
+ * <p>
+ * `ByteArray` owns the encapsulated byte array, but, by default, is immutable (see also {@link MutableByteArray}).
+ */
+public class ByteArray {
+    protected byte[] bytes;
+    protected int start;
+    protected int end;
+
+    public ByteArray(byte[] bytes, int start, int end) {
+        assert bytes != null : "ByteArray bytes array is null";
+        assert 0 <= start : "ByteArray start=%d can't be negative".formatted(start);
+        assert start <= end : "ByteArray start=%d is greater than end=%d".formatted(start, end);
+        assert end <= bytes.length : "ByteArray end=%d is greater than array.length=%d".formatted(end, bytes.length);
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+    }
+
+    public ByteArray(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public ByteArray(String s) {
+        this(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Note: wraps the heap buffer without copying, direct and read-only buffers are copied.
+    public ByteArray(ByteBuffer buffer) {
+        this(buffer.hasArray() ? buffer.array() : copyOf(buffer),
+             buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0,
+             buffer.hasArray() ? buffer.arrayOffset() + buffer.limit() : buffer.remaining());
+    }
+
+    public ByteArray(ByteArray s) {
+        this(s.bytes, s.start, s.end);
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    public boolean isNotEmpty() {
+        return start < end;
+    }
+
+    public byte byteAt(int index) {
+        assert index >= 0 : "Index can't be negative: %d".formatted(index);
+        return bytes[start + index];
+    }
+
+    // Returns the unsigned byte value or -1 if the index is out of bounds.
+    public int at(int index) {
+        return index >= 0 && index < length() ? bytes[start + index] & 0xff : -1;
+    }
+
+    public ByteArray substringFrom(int start) {
+        return substring(start, length());
+    }
+
+    public ByteArray substringUntil(int end) {
+        return substring(0, end);
+    }
+
+    public ByteArray substring(int start, int end) {
+        assert start >= 0 : "Start index can't be negative: %d".formatted(start);
+        assert start <= end : "Start index can't be larger than end index: %d >= %d".formatted(start, end);
+        return new ByteArray(bytes, this.start + start, this.start + end);
+    }
+
+    public boolean startsWith(byte[] prefix) {
+        return length() >= prefix.length && Arrays.equals(bytes, start, start + prefix.length, prefix, 0, prefix.length);
+    }
+
+    public boolean startsWith(ByteArray prefix) {
+        return length() >= prefix.length() &&
+                Arrays.equals(bytes, start, start + prefix.length(), prefix.bytes, prefix.start, prefix.end);
+    }
+
+    public boolean startsWith(byte b) {
+        return isNotEmpty() && bytes[start] == b;
+    }
+
+    public int indexOf(byte b) {
+        return indexOf(b, 0, -1);
+    }
+
+    public int indexOf(byte b, int from) {
+        return indexOf(b, from, -1);
+    }
+
+    public int indexOf(byte b, int from, int def) {
+        assert from >= 0 && from <= length() : "From index is out of array bounds: %d".formatted(from);
+        assert def < 0 || def >= length() : "Default index can't be within array bounds: %d".formatted(def);
+        int index = Swar.indexOf(bytes, start + from, end, b);  // 8 bytes at a time
+        return (index >= 0) ? index - start : def;
+    }
+
+    public int indexOf(byte[] seq, int from, int def) {
+        assert from >= 0 && from <= length() : "From index is out of array bounds: %d".formatted(from);
+        assert def < 0 || def >= length() : "Default index can't be within array bounds: %d".formatted(def);
+        for (int i = start + from; i <= end - seq.length; ++i) {
+            if (Arrays.equals(bytes, i, i + seq.length, seq, 0, seq.length)) {
+                return i - start;
+            }
+        }
+        return def;
+    }
+
+    // Returns the length of the common prefix
+    public int commonPrefix(ByteArray array) {
+        int index = Arrays.mismatch(bytes, start, end, array.bytes, array.start, array.end);
+        return (index >= 0) ? index : length();
+    }
+
+    // Compares the bytes as Latin-1 chars with the `array[start:end]` (same as UTF-8 for the ASCII chars).
+    public boolean latin1Equals(char[] array, int start, int end) {
+        if (length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < end - start; ++i) {
+            if ((bytes[this.start + i] & 0xff) != array[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isAscii() {
+        return Swar.isAscii(bytes, start, end);
+    }
+
+    public MutableByteArray mutableCopy() {
+        return new MutableByteArray(bytes, start, end);
+    }
+
+    public ByteArray immutable() {
+        return this;
+    }
+
+    public ByteArray immutableCopy() {
+        return new ByteArray(Arrays.copyOfRange(bytes, start, end));
+    }
+
+    public ByteBuffer asNioBuffer() {
+        return ByteBuffer.wrap(bytes, start, end - start).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Decodes the UTF-8 bytes into a new {@link CharArray}.
+     */
+    public CharArray decode() {
+        return new CharArray(toString());
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 encoding of the {@code chars[start:end]}.
+     */
+    public static int encodedLength(CharSequence chars, int start, int end) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char ch = chars.charAt(i);
+            if (ch < 0x80) {
+                length += 1;
+            } else if (ch < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof ByteArray that && Arrays.equals(bytes, start, end, that.bytes, that.start, that.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return Swar.hash(bytes, start, end);  // same as `CharArray.hashCode()` for ASCII
+    }
+
+    private static byte[] copyOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(buffer.position(), bytes);
+        return bytes;
+    }
+}
@@ -11,9 +11,10 @@ import java.util.stream.IntStream;
  * `CharArray` owns the encapsulated char array, but, by default, is immutable (see also {@link MutableCharArray}).
  */
 public class CharArray implements CharSequence {
-    protected final char[] chars;
+    protected char[] chars;
     protected int start;
     protected int end;
+    private int hash;  // cached as in `String`, 0 if not computed yet
 
     public CharArray(char[] chars, int start, int end) {
         assert chars != null : "CharArray chars array is null";
@@ -38,13 +39,14 @@ public class CharArray implements CharSequence {
     }
 
     public CharArray(CharSequence s) {
-        this(s.toString().toCharArray(), 0, s.length());
+        this(toCharArray(s), 0, s.length());
     }
 
+    // Note: wraps the buffer backing array without copying, read-only and direct buffers are copied.
     public CharArray(CharBuffer buffer) {
-        this(buffer.isReadOnly() ? buffer.toString().toCharArray() : buffer.array(),
-             buffer.isReadOnly() ? 0 : buffer.position(),
-             buffer.isReadOnly() ? buffer.length() : buffer.position() + buffer.length());
+        this(buffer.hasArray() ? buffer.array() : buffer.toString().toCharArray(),
+             buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0,
+             buffer.hasArray() ? buffer.arrayOffset() + buffer.limit() : buffer.length());
     }
 
     public CharArray(CharArray s) {
@@ -135,6 +137,9 @@ public class CharArray implements CharSequence {
     }
 
     public boolean startsWith(CharSequence prefix) {
+        if (prefix instanceof CharArray array) {
+            return startsWith(array);  // compared by the `Arrays.equals()` intrinsic
+        }
         int length = prefix.length();
         if (length() < length) {
             return false;
@@ -158,6 +163,39 @@ public class CharArray implements CharSequence {
         return i > length;
     }
 
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        assert 0 <= srcBegin && srcBegin <= srcEnd && srcEnd <= length() : "Invalid range: [%d, %d)".formatted(srcBegin, srcEnd);
+        System.arraycopy(chars, start + srcBegin, dst, dstBegin, srcEnd - srcBegin);
+    }
+
+    /**
+     * Copies the {@code s[srcBegin:srcEnd]} chars into the {@code dst} array, in bulk for the known JDK sequences
+     * and without the intermediate {@link String} for the rest.
+     */
+    public static void getChars(CharSequence s, int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        if (s instanceof String string) {
+            string.getChars(srcBegin, srcEnd, dst, dstBegin);
+        } else if (s instanceof StringBuilder builder) {
+            builder.getChars(srcBegin, srcEnd, dst, dstBegin);
+        } else if (s instanceof StringBuffer buffer) {
+            buffer.getChars(srcBegin, srcEnd, dst, dstBegin);
+        } else if (s instanceof CharArray array) {
+            array.getChars(srcBegin, srcEnd, dst, dstBegin);
+        } else if (s instanceof CharBuffer buffer) {
+            buffer.get(buffer.position() + srcBegin, dst, dstBegin, srcEnd - srcBegin);
+        } else {
+            for (int i = srcBegin; i < srcEnd; i++) {
+                dst[dstBegin++] = s.charAt(i);
+            }
+        }
+    }
+
+    private static char[] toCharArray(CharSequence s) {
+        char[] chars = new char[s.length()];
+        getChars(s, 0, chars.length, chars, 0);
+        return chars;
+    }
+
     public CharBuffer asNioBuffer() {
         return asRawBuffer().asReadOnlyBuffer();
     }
@@ -193,12 +231,8 @@ public class CharArray implements CharSequence {
     public int indexOf(char ch, int from, int def) {
         assert from >= 0 && from <= length() : "From index is out of array bounds: %d".formatted(from);
         assert def < 0 || def >= length() : "Default index can't be within array bounds: %d".formatted(def);
-        for (int i = start + from; i < end; ++i) {
-            if (chars[i] == ch) {
-                return i - start;
-            }
-        }
-        return def;
+        int index = CharScan.INSTANCE.indexOf(chars, start + from, end, ch);
+        return (index >= 0) ? index - start : def;
     }
 
     public int indexOfAny(char ch1, char ch2) {
@@ -212,12 +246,8 @@ public class CharArray implements CharSequence {
     public int indexOfAny(char ch1, char ch2, int from, int def) {
         assert from >= 0 && from <= length() : "From index is out of array bounds: %d".formatted(from);
         assert def < 0 || def >= length() : "Default index can't be within array bounds: %d".formatted(def);
-        for (int i = start + from; i < end; ++i) {
-            if (chars[i] == ch1 || chars[i] == ch2) {
-                return i - start;
-            }
-        }
-        return def;
+        int index = CharScan.INSTANCE.indexOfAny(chars, start + from, end, ch1, ch2);
+        return (index >= 0) ? index - start : def;
     }
 
     public int lastIndexOf(char ch) {
@@ -328,17 +358,27 @@ public class CharArray implements CharSequence {
         return new String(chars, start, end - start);
     }
 
+    public boolean contentEquals(char[] array, int start, int end) {
+        return Arrays.equals(chars, this.start, this.end, array, start, end);
+    }
+
     @Override
     public boolean equals(Object o) {
         return this == o || o instanceof CharArray that && Arrays.equals(chars, start, end, that.chars, that.start, that.end);
     }
 
+    /**
+     * Returns the polynomial hash of the chars, same as {@link Arrays#hashCode(char[])} of the slice.
+     * The hash is computed once: the immutable arrays are the map keys (e.g. the constant rules and the cached
+     * inputs), which are hashed again on every probe. {@link MutableCharArray} doesn't cache it.
+     */
     @Override
     public int hashCode() {
-        int result = 1;
-        for (int i = start; i < end; ++i) {
-            result = 31 * result + chars[i];
+        int h = hash;
+        if (h == 0) {
+            h = CharScan.INSTANCE.hash(chars, start, end);
+            hash = h;  // the racy write is fine: the same value is computed by any thread
         }
-        return result;
+        return h;
     }
 }
@@ -0,0 +1,78 @@
+package io.routekit.util;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The char array scanning loops behind the {@link CharArray} search, comparison and hashing methods.
+ * <p>
+ * The implementation is chosen once: the SIMD one (see {@link VectorCharScan}) if the JVM is run with
+ * {@code --add-modules jdk.incubator.vector} and the CPU has the wide enough vectors, otherwise the scalar one.
+ * The SIMD one can be disabled with {@code -Dio.routekit.vector=false}.
+ */
+/*package*/ abstract class CharScan {
+    private static final Logger log = Logger.getLogger("RouteKit");
+
+    /*package*/ static final CharScan SCALAR = new Scalar();
+    /*package*/ static final CharScan INSTANCE = load();
+
+    // Returns the index of the first `ch` in `chars[from:to]` or -1.
+    public abstract int indexOf(char[] chars, int from, int to, char ch);
+
+    // Returns the index of the first `ch1` or `ch2` in `chars[from:to]` or -1.
+    public abstract int indexOfAny(char[] chars, int from, int to, char ch1, char ch2);
+
+    // Returns the same hash as `Arrays.hashCode(chars[from:to])`.
+    public abstract int hash(char[] chars, int from, int to);
+
+    private static CharScan load() {
+        if (!Boolean.parseBoolean(System.getProperty("io.routekit.vector", "true")) ||
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            CharScan vector = (CharScan) Class.forName("io.routekit.util.VectorCharScan")
+                    .getDeclaredConstructor()
+                    .newInstance();
+            return vector.isSupported() ? vector : SCALAR;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.log(Level.FINE, "The vector char scan is not available", e);
+            return SCALAR;
+        }
+    }
+
+    /*package*/ boolean isSupported() {
+        return true;
+    }
+
+    private static final class Scalar extends CharScan {
+        @Override
+        public int indexOf(char[] chars, int from, int to, char ch) {
+            for (int i = from; i < to; ++i) {
+                if (chars[i] == ch) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int indexOfAny(char[] chars, int from, int to, char ch1, char ch2) {
+            for (int i = from; i < to; ++i) {
+                if (chars[i] == ch1 || chars[i] == ch2) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int hash(char[] chars, int from, int to) {
+            int result = 1;
+            for (int i = from; i < to; ++i) {
+                result = 31 * result + chars[i];
+            }
+            return result;
+        }
+    }
+}
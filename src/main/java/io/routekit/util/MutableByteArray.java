@@ -0,0 +1,55 @@
+package io.routekit.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A mutable version of the {@link ByteArray}.
+ */
+public class MutableByteArray extends ByteArray {
+    public MutableByteArray(byte[] bytes, int start, int end) {
+        super(bytes, start, end);
+    }
+
+    public MutableByteArray(byte[] bytes) {
+        super(bytes);
+    }
+
+    public MutableByteArray(String s) {
+        super(s);
+    }
+
+    public MutableByteArray(ByteBuffer buffer) {
+        super(buffer);
+    }
+
+    public MutableByteArray(ByteArray s) {
+        super(s);
+    }
+
+    @Override
+    public ByteArray immutable() {
+        return new ByteArray(bytes, start, end);
+    }
+
+    public void reset(byte[] bytes, int start, int end) {
+        assert bytes != null : "ByteArray bytes array is null";
+        assert 0 <= start && start <= end && end <= bytes.length : "Invalid bounds: [%d, %d)".formatted(start, end);
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+    }
+
+    public void reset(ByteArray array) {
+        reset(array.bytes, array.start, array.end);
+    }
+
+    public void offsetStart(int offset) {
+        assert start+offset <= end : "Invalid offset: makes start=%d greater than end=%d".formatted(start+offset, end);
+        start += offset;
+    }
+
+    public void offsetEnd(int offset) {
+        assert start <= end-offset : "Invalid offset: makes start=%d greater than end=%d".formatted(start, end-offset);
+        end -= offset;
+    }
+}
@@ -58,6 +58,18 @@ public class MutableCharArray extends CharArray {
         end = chars.length;
     }
 
+    public void reset(char[] chars, int start, int end) {
+        assert chars != null : "CharArray chars array is null";
+        assert 0 <= start && start <= end && end <= chars.length : "Invalid bounds: [%d, %d)".formatted(start, end);
+        this.chars = chars;
+        this.start = start;
+        this.end = end;
+    }
+
+    public void reset(CharArray array) {
+        reset(array.chars, array.start, array.end);
+    }
+
     public void resetStart() {
         start = 0;
     }
@@ -102,6 +114,15 @@ public class MutableCharArray extends CharArray {
         }
     }
 
+    /**
+     * Returns the hash of the chars, same as {@link CharArray#hashCode()}, computed on every call:
+     * the bounds may move and the chars may be modified in place (e.g. the reused buffer refilled).
+     */
+    @Override
+    public int hashCode() {
+        return CharScan.INSTANCE.hash(chars, start, end);
+    }
+
     public static MutableCharArray join(CharArray lhs, CharArray rhs) {
         if (lhs.chars == rhs.chars && lhs.end == rhs.start) {
             return new MutableCharArray(lhs.chars, lhs.start, rhs.end);
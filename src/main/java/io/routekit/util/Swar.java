@@ -0,0 +1,77 @@
+package io.routekit.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The SWAR (SIMD within a register) byte scanning: the {@code byte[]} is read 8 bytes at a time
+ * as little-endian longs (see {@link MethodHandles#byteArrayViewVarHandle}), the tail by the byte loop.
+ * <p>
+ * The byte search is the "has zero byte" trick on {@code word ^ pattern}: {@code (x - 0x01..) & ~x & 0x80..}
+ * sets the high bit of the zero bytes. A borrow can only set the bits above the first zero byte,
+ * so the lowest set bit is exact in the little-endian order.
+ */
+/*package*/ final class Swar {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    // The powers of 31 for the hash
+    private static final int POW2 = 31 * 31;
+    private static final int POW3 = POW2 * 31;
+    private static final int POW4 = POW3 * 31;
+    private static final int POW5 = POW4 * 31;
+    private static final int POW6 = POW5 * 31;
+    private static final int POW7 = POW6 * 31;
+    private static final int POW8 = POW7 * 31;
+
+    private Swar() {}
+
+    // Returns the index of the first `b` in `bytes[from:to]` or -1.
+    public static int indexOf(byte[] bytes, int from, int to, byte b) {
+        long pattern = ONES * (b & 0xff);
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long x = (long) LONGS.get(bytes, i) ^ pattern;
+            long found = (x - ONES) & ~x & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; ++i) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Returns true if all `bytes[from:to]` are ASCII (the high bit isn't set).
+    public static boolean isAscii(byte[] bytes, int from, int to) {
+        long high = 0;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            high |= (long) LONGS.get(bytes, i);
+        }
+        for (; i < to; ++i) {
+            high |= bytes[i];
+        }
+        return (high & HIGH_BITS) == 0;
+    }
+
+    // Returns the same hash as `Arrays.hashCode(bytes[from:to])`: 8 bytes at a time, the multiplications
+    // by the powers of 31 are independent, unlike in the loop `h = 31 * h + b`.
+    public static int hash(byte[] bytes, int from, int to) {
+        int result = 1;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            result = result * POW8 +
+                    bytes[i] * POW7 + bytes[i + 1] * POW6 + bytes[i + 2] * POW5 + bytes[i + 3] * POW4 +
+                    bytes[i + 4] * POW3 + bytes[i + 5] * POW2 + bytes[i + 6] * 31 + bytes[i + 7];
+        }
+        for (; i < to; ++i) {
+            result = 31 * result + bytes[i];
+        }
+        return result;
+    }
+}
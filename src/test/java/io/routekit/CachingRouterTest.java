@@ -0,0 +1,149 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import io.routekit.util.MutableCharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class CachingRouterTest {
+    private static final Router<String> ROUTER = new RouterSetup<String>()
+            .add("/", "home")
+            .add("/user/{id}", "user")
+            .add("/post/{id}/{*path}", "post")
+            .build();
+
+    @Test
+    public void cache_hit_same_as_router() {
+        CachingRouter<String> router = new CachingRouter<>(ROUTER, 1 << 20);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(ROUTER.routeOrNull("/user/1"), router.routeOrNull("/user/1"));
+            Assertions.assertEquals(ROUTER.routeOrNull("/post/1/a/b"), router.routeOrNull("/post/1/a/b"));
+            Assertions.assertEquals(ROUTER.routeOrNull("/"), router.routeOrNull("/"));
+            Assertions.assertNull(router.routeOrNull("/user"));
+        }
+        Assertions.assertEquals(3, router.size());  // admitted on the second miss
+        Assertions.assertEquals(3, router.hitCount());
+        Assertions.assertEquals(9, router.missCount());
+
+        MatchHolder<String> holder = new MatchHolder<>();
+        Assertions.assertTrue(router.routeInto(new CharArray("/post/2/c"), holder));
+        Assertions.assertTrue(router.routeInto(new CharArray("/post/2/c"), holder));
+        Assertions.assertEquals("post", holder.handler());
+        Assertions.assertEquals(new CharArray("2"), holder.variable("id"));
+        Assertions.assertEquals(new CharArray("c"), holder.variable("path"));
+        Assertions.assertFalse(router.routeInto("/post", holder));
+        Assertions.assertFalse(holder.isMatched());
+    }
+
+    @Test
+    public void cache_key_detached_from_input() {
+        CachingRouter<String> router = new CachingRouter<>(ROUTER, 1 << 20);
+        char[] buffer = "/user/1".toCharArray();
+        MutableCharArray input = new MutableCharArray(buffer);
+        MatchHolder<String> holder = new MatchHolder<>();
+        Assertions.assertTrue(router.routeInto(input, holder));
+        Assertions.assertTrue(router.routeInto(input, holder));
+        Assertions.assertEquals(1, router.size());
+
+        buffer[6] = '2';  // the caller reuses the buffer
+        Assertions.assertTrue(router.routeInto(input, holder));
+        Assertions.assertEquals(new CharArray("2"), holder.variable("id"));
+        Assertions.assertEquals(new Match<>("user", Map.of("id", new CharArray("1"))), router.routeOrNull("/user/1"));
+        Assertions.assertEquals(1, router.hitCount());
+    }
+
+    @Test
+    public void cache_buffer_refilled_in_place() {
+        Router<String> constants = new RouterSetup<String>()
+                .add("/aa", "aa")
+                .add("/bb", "bb")
+                .build();
+        CachingRouter<String> router = new CachingRouter<>(constants, 1 << 20, CachingRouter.Mode.ALL);
+        char[] buffer = "/aa".toCharArray();
+        MutableCharArray input = new MutableCharArray(buffer);
+        MatchHolder<String> holder = new MatchHolder<>();
+        for (int i = 0; i < 3; i++) {
+            "/aa".getChars(0, 3, buffer, 0);
+            Assertions.assertTrue(router.routeInto(input, holder));
+            Assertions.assertEquals("aa", holder.handler());
+
+            "/bb".getChars(0, 3, buffer, 0);  // same length, no reset
+            Assertions.assertTrue(router.routeInto(input, holder));
+            Assertions.assertEquals("bb", holder.handler());
+
+            "/cc".getChars(0, 3, buffer, 0);
+            Assertions.assertFalse(router.routeInto(input, holder));
+        }
+        Assertions.assertEquals(3, router.size());
+    }
+
+    @Test
+    public void cache_evicts_within_budget() {
+        CachingRouter<String> router = new CachingRouter<>(ROUTER, 4096);
+        for (int i = 0; i < 1000; i++) {
+            router.routeOrNull("/user/hot");
+            for (int j = 0; j < 2; j++) {
+                Assertions.assertEquals(new Match<>("user", Map.of("id", new CharArray(String.valueOf(i)))),
+                                        router.routeOrNull("/user/" + i));
+            }
+            Assertions.assertTrue(router.estimatedBytes() <= 4096);
+        }
+        Assertions.assertTrue(router.size() < 1000);
+        long hits = router.hitCount();
+        router.routeOrNull("/user/hot");
+        Assertions.assertEquals(hits + 1, router.hitCount());  // the hot entry keeps the second chance
+    }
+
+    @Test
+    public void cache_misses() {
+        CachingRouter<String> router = new CachingRouter<>(ROUTER, 1 << 20, CachingRouter.Mode.ALL);
+        MatchHolder<String> holder = new MatchHolder<>();
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertFalse(router.routeInto("/wp-admin", holder));
+            Assertions.assertFalse(holder.isMatched());
+            Assertions.assertNull(router.routeOrNull("/.env"));
+            Assertions.assertTrue(router.routeInto("/user/1", holder));
+        }
+        Assertions.assertEquals(3, router.size());
+        Assertions.assertEquals(3, router.hitCount());
+
+        CachingRouter<String> misses = new CachingRouter<>(ROUTER, 1 << 20, CachingRouter.Mode.MISSES);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertNull(misses.routeOrNull("/.env"));
+            Assertions.assertTrue(misses.routeInto("/user/1", holder));
+            Assertions.assertEquals(new CharArray("1"), holder.variable("id"));
+        }
+        Assertions.assertEquals(1, misses.size());
+    }
+
+    @Test
+    public void cache_concurrent() throws Exception {
+        CachingRouter<String> router = new CachingRouter<>(ROUTER, 2048);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                MatchHolder<String> holder = new MatchHolder<>();
+                try {
+                    for (int i = 0; i < 20000; i++) {
+                        String id = String.valueOf((i * 31 + seed) % 200);
+                        Assertions.assertTrue(router.routeInto("/user/" + id, holder));
+                        Assertions.assertEquals(new CharArray(id), holder.variable("id"));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(List.of(), errors);
+    }
+}
@@ -0,0 +1,139 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class ChildDispatchTest {
+    @Test
+    public void longestConstMatch_simple() {
+        Token[] tokens = tokens("foo", "{var}", "foobar", "f", "bar");
+        ChildDispatch dispatch = ChildDispatch.of(tokens);
+
+        assertLongestMatch(dispatch, "foobar/", 2);
+        assertLongestMatch(dispatch, "foobaz", 0);
+        assertLongestMatch(dispatch, "fo", 3);
+        assertLongestMatch(dispatch, "bar", 4);
+        assertLongestMatch(dispatch, "ba", -1);
+        assertLongestMatch(dispatch, "", -1);
+        Assertions.assertArrayEquals(new int[] {1}, dispatch.fallback());
+    }
+
+    @Test
+    public void longestConstMatch_non_ascii() {
+        Token[] tokens = tokens("\u00fc", "\u00fcb", "\u00fcber", "a", "b", "c", "d", "e", "f", "g", "h", "{var}");
+        ChildDispatch dispatch = ChildDispatch.of(tokens);
+
+        assertLongestMatch(dispatch, "\u00fcber/", 2);
+        assertLongestMatch(dispatch, "\u00fcbe", 1);
+        assertLongestMatch(dispatch, "\u00fc", 0);
+        assertLongestMatch(dispatch, "\u00f6", -1);
+        assertLongestMatch(dispatch, "hh", 10);
+        Assertions.assertArrayEquals(new int[] {11}, dispatch.fallback());
+    }
+
+    @Test
+    public void longestConstMatch_random_same_as_linear_scan() {
+        Random random = new Random(0);
+        for (int size : List.of(3, 10, 100, 1000)) {
+            Token[] tokens = IntStream.range(0, size)
+                    .mapToObj(i -> randomString(random, 1, 6))
+                    .distinct()
+                    .map(ConstToken::new)
+                    .toArray(Token[]::new);
+            ChildDispatch dispatch = ChildDispatch.of(tokens);
+
+            for (int i = 0; i < 1000; i++) {
+                CharArray input = new CharArray(randomString(random, 0, 8));
+                int expected = -1;
+                for (int j = 0; j < tokens.length; j++) {
+                    int match = tokens[j].match(input);
+                    if (match > 0 && (expected < 0 || match > tokens[expected].match(input))) {
+                        expected = j;
+                    }
+                }
+                int pos = dispatch.longestConstMatch(input);
+                Assertions.assertEquals(expected, pos >= 0 ? dispatch.childIndex(pos) : -1, "Input: " + input);
+            }
+        }
+    }
+
+    @Test
+    public void isDecided_static_and_exhausted() {
+        ChildDispatch dispatch = ChildDispatch.of(tokens("bar", "foo/", "{var}", "baz"));
+
+        Assertions.assertFalse(dispatch.isDecisive(0));
+        Assertions.assertTrue(dispatch.isDecisive(1));  // `{var}` stops at `/`
+        Assertions.assertTrue(dispatch.isDecided(0, true));
+        Assertions.assertFalse(dispatch.isDecided(0, false));
+        Assertions.assertFalse(dispatch.isDecided(3, true));  // `{var}` wins the tie
+
+        Token[] wildcard = { new ConstToken("foo/"), new WildcardToken("path") };
+        Assertions.assertFalse(ChildDispatch.of(wildcard).isDecisive(0));
+    }
+
+    @Test
+    public void withHotKeys_same_as_search() {
+        Random random = new Random(0);
+        for (int size : List.of(3, 10, 100, 1000)) {
+            Token[] tokens = IntStream.range(0, size)
+                    .mapToObj(i -> randomString(random, 1, 6))
+                    .distinct()
+                    .map(ConstToken::new)
+                    .toArray(Token[]::new);
+            ChildDispatch dispatch = ChildDispatch.of(tokens);
+            ChildDispatch counting = dispatch.withHits();
+            for (int i = 0; i < 1000; i++) {
+                counting.recordHit(Math.min(random.nextInt(tokens.length), random.nextInt(tokens.length)));
+            }
+            ChildDispatch hot = counting.withHotKeys();
+            if (size > 3) {
+                Assertions.assertNotSame(counting.hits(), hot.hits());  // counts anew
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                String input = randomString(random, 0, 8);
+                Assertions.assertEquals(childOrNone(dispatch, dispatch.longestConstMatch(new CharArray(input))),
+                                        childOrNone(hot, hot.longestConstMatch(new CharArray(input))), "Input: " + input);
+                ByteArray bytes = new ByteArray(input.getBytes(StandardCharsets.UTF_8));
+                int expected = dispatch.longestConstMatch(bytes);
+                int pos = hot.longestConstMatch(bytes);
+                Assertions.assertEquals(expected >= 0 ? dispatch.byteChildIndex(expected) : -1,
+                                        pos >= 0 ? hot.byteChildIndex(pos) : -1, "Input: " + input);
+            }
+        }
+    }
+
+    private static int childOrNone(ChildDispatch dispatch, int pos) {
+        return pos >= 0 ? dispatch.childIndex(pos) : -1;
+    }
+
+    private static void assertLongestMatch(ChildDispatch dispatch, String input, int expected) {
+        int pos = dispatch.longestConstMatch(new CharArray(input));
+        Assertions.assertEquals(expected, pos >= 0 ? dispatch.childIndex(pos) : -1);
+    }
+
+    private static Token[] tokens(String ... tokens) {
+        return Arrays.stream(tokens)
+                .map(token -> token.startsWith("{") ?
+                        new SeparableVariableToken(token.replaceAll("[{}]", "")) :
+                        new ConstToken(token))
+                .toArray(Token[]::new);
+    }
+
+    private static String randomString(Random random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+}
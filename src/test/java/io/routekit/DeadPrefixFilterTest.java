@@ -0,0 +1,74 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class DeadPrefixFilterTest {
+    private static final List<String> RULES = List.of(
+            "/", "/about", "/user/{id}", "/post/{id}/{*path}", "/b{id}", "/\u00fcber/{id}", "x{id}"
+    );
+
+    @Test
+    public void isDead_first_two_chars() {
+        RouterSetup<String> setup = setup(RULES);
+        Router.Node<String> root = new RouterBuilder().buildStateMachine(setup.getRules());
+        DeadPrefixFilter filter = DeadPrefixFilter.of(List.of(new CharArray("/about")), root);
+        Assertions.assertNotNull(filter);
+
+        assertDead(filter, "/.env", true);
+        assertDead(filter, "/wp-admin/setup.php", true);
+        assertDead(filter, "//", true);
+        assertDead(filter, "y1", true);
+        assertDead(filter, "/about", false);
+        assertDead(filter, "/abc", false);  // only the first two chars are checked
+        assertDead(filter, "/u", false);
+        assertDead(filter, "/b", false);
+        assertDead(filter, "xy", false);   // the variable follows "x"
+        assertDead(filter, "/", false);    // too short to check
+        assertDead(filter, "", false);
+        assertDead(filter, "/\u00f6", false);  // non-ASCII
+    }
+
+    @Test
+    public void of_variable_at_root() {
+        RouterSetup<String> setup = setup(List.of("/foo", "{id}/bar"));
+        Assertions.assertNull(DeadPrefixFilter.of(List.of(), new RouterBuilder().buildStateMachine(setup.getRules())));
+    }
+
+    @Test
+    public void reject_same_as_router() {
+        Router<String> plain = setup(RULES).build();
+        Router<String> filtered = setup(RULES).withBuilder(new RouterBuilder().setRejectDeadPrefixes(true)).build();
+        Router<String> flat = setup(RULES).withBuilder(new RouterBuilder().setRejectDeadPrefixes(true).setFlattenTrie(true)).build();
+
+        Random random = new Random(0);
+        String alphabet = "/abx.uoe\u00fc1";
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(8); j >= 0; j--) {
+                input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String url = random.nextBoolean() ? RULES.get(random.nextInt(RULES.size())).replaceAll("\\{\\*?[a-z]+}", input.toString()) : input.toString();
+            Match<String> expected = plain.routeOrNull(url);
+            Assertions.assertEquals(expected, filtered.routeOrNull(url), url);
+            Assertions.assertEquals(expected, flat.routeOrNull(url), url);
+            Assertions.assertEquals(expected, filtered.routeOrNull(new ByteArray(url)), url);
+        }
+    }
+
+    private static RouterSetup<String> setup(List<String> rules) {
+        RouterSetup<String> setup = new RouterSetup<>();
+        rules.forEach(rule -> setup.add(rule, rule));
+        return setup;
+    }
+
+    private static void assertDead(DeadPrefixFilter filter, String input, boolean expected) {
+        Assertions.assertEquals(expected, filter.isDead(new CharArray(input)), input);
+        Assertions.assertEquals(expected, filter.isDead(new ByteArray(input)), input);
+    }
+}
@@ -0,0 +1,115 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class FlatTrieTest {
+    @Test
+    public void flat_simple_rules() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("/", "home");
+        rules.put("/user/{id}", "user");
+        rules.put("/post/{id}/{slug}", "post");
+        rules.put("/post/{id}/{slug}/comments", "comments");
+        rules.put("/p/{id}/{*rest}", "rest");
+        rules.put("/p/{id}/foo", "foo");
+
+        Router<String> router = InterpreterDiff.router(flatBuilder(), rules);
+        Assertions.assertEquals(new Match<>("user", Map.of("id", new CharArray("1"))), router.routeOrNull("/user/1"));
+        Assertions.assertEquals(new Match<>("rest", Map.of("id", new CharArray("1"), "rest", new CharArray("foo/"))),
+                                router.routeOrNull("/p/1/foo/"));
+        Assertions.assertNull(router.routeOrNull("/post/1/"));
+        assertSameAsInterpreter(rules, List.of(
+                "", "/", "//", "/user", "/user/", "/user/1", "/user/1/", "/post/1/a", "/post/1/a/comments",
+                "/post/1/a/comments/", "/p/1/foo", "/p/1/foo/", "/p/1/bar/baz", "/p//foo", "/p/1/fo"
+        ));
+    }
+
+    @Test
+    public void flat_random_rules_same_as_interpreter() {
+        InterpreterDiff.forEachRandomRules(new Random(0), 200, FlatTrieTest::assertSameAsInterpreter);
+    }
+
+    @Test
+    public void flat_wide_fan_out() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int i = 0; i < 300; i++) {
+            rules.put("/api/name%d/{id}".formatted(i * 7), "api" + i);
+            rules.put("/api/\u00E9%d\uD83D\uDE00/{id}".formatted(i), "utf" + i);
+            rules.put("/api/\uFF21%d/{id}".formatted(i), "wide" + i);
+        }
+        rules.put("/api/{name}", "other");
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 300 * 8; i += 3) {
+            inputs.add("/api/name%d/%d".formatted(i, i));
+            inputs.add("/api/name%d".formatted(i));
+            inputs.add("/api/\u00E9%d\uD83D\uDE00/%d".formatted(i, i));
+            inputs.add("/api/\uFF21%d/x".formatted(i));
+        }
+        assertSameAsInterpreter(rules, inputs);
+    }
+
+    @Test
+    public void flat_custom_tokens() {
+        Token custom = new Token() {
+            @Override
+            public int match(CharArray charArray) {
+                return charArray.startsWith('!') ? 1 : -1;
+            }
+        };
+        RouterSetup<String> setup = new RouterSetup<String>()
+                .withBuilder(new RouterBuilder().setFlattenTrie(true))
+                .add(new StringQuery("/!", List.of(new ConstToken("/"), custom)), "1")
+                .add("/{id}", "2");
+        Router<String> router = setup.build();
+        Assertions.assertEquals(new Match<>("1", Map.of()), router.routeOrNull("/!"));
+        Assertions.assertEquals(new Match<>("1", Map.of()), router.routeOrNull("/!".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(new Match<>("2", Map.of("id", new CharArray("1"))), router.routeOrNull("/1"));
+    }
+
+    @Test
+    public void flat_backtracking() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("/files/{name:[a-z]+}/raw", "1");
+        rules.put("/files/{any}/meta", "2");
+        rules.put("/v/{x:alpha}/a", "3");
+        rules.put("/v/abc/{y}/b", "4");
+        rules.put("/v/{z}/{w}/c", "5");
+        rules.put("/v/{id:int}", "6");
+        assertSameAsInterpreter(rules, List.of("/files/abc/raw", "/files/abc/meta", "/files/ABC/meta", "/files/abc/other",
+                                               "/v/abc/x/b", "/v/abc/a", "/v/abc/x/c", "/v/abc/x/d", "/v/12", "/v/12/a"));
+    }
+
+    @Test
+    public void flat_size() {
+        Router.Node<String> root = new RouterBuilder().buildStateMachine(new RouterSetup<String>()
+                .add("/foo/{id}", "1")
+                .add("/bar/{id}", "2")
+                .getRules());
+        Assertions.assertEquals(count(root), FlatTrie.of(root).size());
+    }
+
+    private static void assertSameAsInterpreter(Map<String, String> rules, List<String> inputs) {
+        InterpreterDiff.assertSameAsInterpreter(flatBuilder(), rules, inputs);
+    }
+
+    private static RouterBuilder flatBuilder() {
+        return new RouterBuilder().setFlattenTrie(true);
+    }
+
+    private static int count(Router.Node<?> node) {
+        int count = 1;
+        for (Router.Node<?> child : node.next()) {
+            count += count(child);
+        }
+        return count;
+    }
+}
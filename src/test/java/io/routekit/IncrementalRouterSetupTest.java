@@ -0,0 +1,180 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static io.routekit.NodePrinter.printlnToString;
+
+public class IncrementalRouterSetupTest {
+    private static final String[] PIECES = {
+        "/", "foo", "/bar", "ba", "r/", "f", "/foo/", "{v}", "{w}", "{*x}"
+    };
+
+    @Test
+    public void incremental_add_and_remove() {
+        IncrementalRouterSetup<String> setup = new RouterSetup<String>()
+                .add("/", "home")
+                .add("/user/{id}", "user")
+                .toIncremental();
+        Router<String> first = setup.build();
+
+        setup.add("/user/{id}/posts", "posts").add("/user/{id}/posts/{post}", "post");
+        Router<String> second = setup.build();
+        Assertions.assertEquals(new Match<>("posts", Map.of("id", new CharArray("1"))), second.routeOrNull("/user/1/posts"));
+        Assertions.assertNull(first.routeOrNull("/user/1/posts"));
+
+        Assertions.assertTrue(setup.remove("/user/{id}"));
+        Assertions.assertFalse(setup.remove("/user/{id}"));
+        Router<String> third = setup.build();
+        Assertions.assertNull(third.routeOrNull("/user/1"));
+        Assertions.assertEquals(new Match<>("post", Map.of("id", new CharArray("1"), "post", new CharArray("2"))),
+                                third.routeOrNull("/user/1/posts/2"));
+        Assertions.assertEquals(new Match<>("user", Map.of("id", new CharArray("1"))), second.routeOrNull("/user/1"));
+        Assertions.assertEquals(3, setup.size());
+    }
+
+    @Test
+    public void incremental_constants() {
+        IncrementalRouterSetup<String> setup = new RouterSetup<String>().add("/health", "health").toIncremental();
+        setup.add("/ready", "ready");
+        Assertions.assertEquals(new Match<>("ready", Map.of()), setup.build().routeOrNull("/ready"));
+        Assertions.assertThrows(RouteException.class, () -> setup.add(new StringQuery("/ready/", List.of(new ConstToken("/ready"))), "x"));
+
+        Assertions.assertTrue(setup.remove("/health"));
+        Router<String> router = setup.build();
+        Assertions.assertNull(router.routeOrNull("/health"));
+        Assertions.assertEquals(new Match<>("ready", Map.of()), router.routeOrNull("/ready"));
+    }
+
+    @Test
+    public void incremental_shares_unchanged_nodes() {
+        IncrementalRouterSetup<String> setup = new RouterSetup<String>()
+                .add("/foo/{id}", "1")
+                .add("/bar/{id}", "2")
+                .add("/bar/{id}/baz", "3")
+                .toIncremental();
+        Router.Node<String> before = setup.buildStateMachine();
+        Assertions.assertSame(before, setup.buildStateMachine());
+
+        setup.add("/foo/{id}/qux", "4");
+        Router.Node<String> after = setup.buildStateMachine();
+        Assertions.assertNotSame(before, after);
+        Assertions.assertNotSame(child(before, "foo/").next(), child(after, "foo/").next());
+        Assertions.assertSame(child(before, "bar/").next(), child(after, "bar/").next());  // the joined node is re-created
+    }
+
+    @Test
+    public void incremental_failed_add_not_applied() {
+        IncrementalRouterSetup<String> setup = new RouterSetup<String>()
+                .add("/foo/{id}", "1")
+                .add("/foo/{id}/bar", "2")
+                .toIncremental();
+        String before = printlnToString(setup.buildStateMachine());
+
+        Assertions.assertThrows(RouteException.class, () -> setup.add("/foo/{id}", "3"));
+        Assertions.assertThrows(RouteException.class, () -> setup.add(new StringQuery("/foo/{id}/", List.of(
+                new ConstToken("/foo/"), new SeparableVariableToken("id"), new ConstToken("/bar"))), "3"));
+        Assertions.assertThrows(RouteException.class, () -> setup.add("/foo/{name}/baz", "3"));
+        Assertions.assertEquals(before, printlnToString(setup.buildStateMachine()));
+        Assertions.assertEquals(2, setup.size());
+
+        setup.add("/foo/{id}/baz", "3");
+        Assertions.assertEquals(new Match<>("3", Map.of("id", new CharArray("1"))), setup.build().routeOrNull("/foo/1/baz"));
+    }
+
+    @Test
+    public void incremental_random_same_as_full_build() {
+        Random random = new Random(0);
+        for (int attempt = 0; attempt < 300; attempt++) {
+            RouterBuilder builder = new RouterBuilder()
+                    .setMinCommonPrefixLength(1 + random.nextInt(3))
+                    .setExcludeConstFromFSM(random.nextBoolean());
+            IncrementalRouterSetup<String> setup = new RouterSetup<String>().withBuilder(builder).toIncremental();
+            List<RouterSetup.Rule<String>> rules = new ArrayList<>();
+            for (int step = 0; step < 40; step++) {
+                List<RouterSetup.Rule<String>> next = new ArrayList<>(rules);
+                boolean add = rules.isEmpty() || random.nextInt(3) > 0;
+                RouterSetup.Rule<String> rule = add ? randomRule(random, "r" + step) : rules.get(random.nextInt(rules.size()));
+                if (add) {
+                    next.add(rule);
+                } else {
+                    next.remove(rule);
+                }
+
+                String expected = buildOrNull(builder, next);
+                try {
+                    if (add) {
+                        setup.add(rule.query(), rule.handler());
+                    } else {
+                        Assertions.assertTrue(setup.remove(rule.query()));
+                    }
+                    Assertions.assertNotNull(expected, "Rules: %s, %s: %s".formatted(queries(rules), add, rule.query()));
+                    rules = next;
+                } catch (RouteException e) {
+                    Assertions.assertNull(expected, "Rules: %s, %s: %s".formatted(queries(rules), add, rule.query()));
+                }
+                Assertions.assertEquals(printlnToString(builder.buildStateMachine(rules)),
+                                        printlnToString(setup.buildStateMachine()),
+                                        "Rules: %s".formatted(queries(rules)));
+                Assertions.assertEquals(rules.size(), setup.size());
+            }
+        }
+    }
+
+    private static String buildOrNull(RouterBuilder builder, List<RouterSetup.Rule<String>> rules) {
+        try {
+            builder.buildRouter(rules);
+            return printlnToString(builder.buildStateMachine(rules));
+        } catch (RouteException e) {
+            return null;
+        }
+    }
+
+    private static RouterSetup.Rule<String> randomRule(Random random, String tag) {
+        List<Token> tokens = new ArrayList<>();
+        int size = random.nextInt(5);
+        for (int i = 0; i < size; i++) {
+            String piece = PIECES[random.nextInt(PIECES.length)];
+            if (piece.startsWith("{*")) {
+                tokens.add(new WildcardToken("x"));
+                break;
+            }
+            tokens.add(piece.startsWith("{") ? new SeparableVariableToken(piece.substring(1, 2)) : new ConstToken(piece));
+        }
+        List<String> names = tokens.stream().map(Object::toString).toList();
+        return new RouterSetup.Rule<>(new Query() {
+            @Override
+            public List<Token> tokens() {
+                return tokens;
+            }
+
+            @Override
+            public String toString() {
+                return names.toString();
+            }
+        }, tag);
+    }
+
+    private static List<Query> queries(List<RouterSetup.Rule<String>> rules) {
+        return rules.stream().map(RouterSetup.Rule::query).toList();
+    }
+
+    private static Router.Node<String> child(Router.Node<String> node, String token) {
+        for (Router.Node<String> next : node.next()) {
+            if (next.token().equals(new ConstToken(token))) {
+                return next;
+            }
+            Router.Node<String> found = child(next, token);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
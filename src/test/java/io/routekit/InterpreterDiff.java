@@ -0,0 +1,88 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+/**
+ * The differential test fixture: routes the same inputs by the router built with the given {@link RouterBuilder}
+ * and by the default (interpreted) router and asserts the same matches.
+ */
+class InterpreterDiff {
+    private static final String[] SEGMENTS = {
+        "foo", "bar", "foobar", "f", "ba", "caf\u00E9", "\uD83D\uDE00", "\uFF21", "{v}", "{*w}"
+    };
+
+    static Router<String> router(RouterBuilder builder, Map<String, String> rules) {
+        return new RouterSetup<String>().withBuilder(builder).addMany(rules).build();
+    }
+
+    static void assertSameAsInterpreter(RouterBuilder builder, Map<String, String> rules, List<String> inputs) {
+        Router<String> interpreted = new RouterSetup<String>().addMany(rules).build();
+        Router<String> router = router(builder, rules);
+        MatchHolder<String> holder = new MatchHolder<>();
+        for (String input : inputs) {
+            Match<String> expected = interpreted.routeOrNull(input);
+            Assertions.assertEquals(expected, router.routeOrNull(input), "Rules: %s, input: %s".formatted(rules, input));
+            Assertions.assertEquals(expected != null, router.routeInto(input, holder));
+            Assertions.assertEquals(expected, holder.toMatchOrNull());
+
+            ByteArray bytes = new ByteArray(input);
+            Match<String> expectedBytes = interpreted.routeOrNull(bytes);
+            Assertions.assertEquals(expectedBytes, router.routeOrNull(bytes), "Rules: %s, input: %s".formatted(rules, input));
+        }
+    }
+
+    /**
+     * Generates the random rule sets which build and the inputs for each: the random paths and the rules themselves.
+     */
+    static void forEachRandomRules(Random random, int attempts, BiConsumer<Map<String, String>, List<String>> consumer) {
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            Map<String, String> rules = new LinkedHashMap<>();
+            int size = 1 + random.nextInt(12);
+            for (int i = 0; i < size; i++) {
+                rules.putIfAbsent(randomRule(random), "r" + i);
+            }
+            if (!canBuild(rules)) {
+                continue;
+            }
+            List<String> inputs = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                inputs.add(randomRule(random).replace("{v}", "x").replace("{*w}", "y/z"));
+            }
+            inputs.addAll(rules.keySet());
+            consumer.accept(rules, inputs);
+        }
+    }
+
+    static boolean canBuild(Map<String, String> rules) {
+        try {
+            new RouterSetup<String>().addMany(rules).build();
+            return true;
+        } catch (RouteException e) {
+            return false;
+        }
+    }
+
+    static String randomRule(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int segments = random.nextInt(4);
+        for (int i = 0; i < segments; i++) {
+            String segment = SEGMENTS[random.nextInt(SEGMENTS.length)];
+            if (segment.startsWith("{*") && i < segments - 1) {
+                segment = "x";
+            }
+            builder.append(random.nextBoolean() ? "/" : "").append(segment.replace("v}", "v" + i + "}"));
+            if (segment.startsWith("{*")) {
+                break;
+            }
+        }
+        return builder.toString();
+    }
+}
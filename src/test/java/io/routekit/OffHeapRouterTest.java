@@ -0,0 +1,67 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OffHeapRouterTest {
+    @Test
+    public void route_same_as_on_heap() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("/", "home");
+        rules.put("/index", "index");
+        rules.put("/caf\u00E9", "cafe");
+        rules.put("/user/{id}", "user");
+        rules.put("/post/{id}/{slug}", "post");
+        rules.put("/post/{id}/{slug}/comments", "comments");
+        rules.put("/p/{id}/{*rest}", "rest");
+        rules.put("/p/{id}/foo", "foo");
+        for (int i = 0; i < 100; i++) {
+            rules.put("/api/name%d/{id}".formatted(i * 7), "api" + i);
+            rules.put("/const/\u00E9%d\uD83D\uDE00".formatted(i), "const" + i);
+        }
+
+        List<String> inputs = new ArrayList<>(List.of(
+                "", "/", "//", "/index", "/index/", "/caf\u00E9", "/cafe", "/user", "/user/", "/user/1", "/user/1/",
+                "/post/1/a", "/post/1/a/comments", "/p/1/foo", "/p/1/foo/", "/p/1/bar/baz", "/p//foo"
+        ));
+        for (int i = 0; i < 800; i += 3) {
+            inputs.add("/api/name%d/%d".formatted(i, i));
+            inputs.add("/const/\u00E9%d\uD83D\uDE00".formatted(i));
+        }
+
+        Router<String> onHeap = new RouterSetup<String>().addMany(rules).build();
+        try (OffHeapRouter<String> offHeap = new RouterSetup<String>().addMany(rules).buildOffHeap()) {
+            Assertions.assertTrue(offHeap.offHeapSize() > 0);
+            MatchHolder<String> holder = new MatchHolder<>();
+            for (String input : inputs) {
+                Match<String> expected = onHeap.routeOrNull(input);
+                Assertions.assertEquals(expected, offHeap.routeOrNull(input), input);
+                Assertions.assertEquals(expected != null, offHeap.routeInto(input, holder));
+                Assertions.assertEquals(expected, holder.toMatchOrNull());
+                Assertions.assertEquals(onHeap.routeOrNull(new ByteArray(input)), offHeap.routeOrNull(new ByteArray(input)));
+            }
+        }
+    }
+
+    @Test
+    public void route_after_close() {
+        OffHeapRouter<String> router = new RouterSetup<String>()
+                .add("/", "home")
+                .add("/user/{id}", "user")
+                .buildOffHeap();
+        Assertions.assertEquals(new Match<>("user", Map.of("id", new CharArray("1"))), router.routeOrNull("/user/1"));
+
+        router.close();
+        Assertions.assertEquals(0, router.offHeapSize());
+        Assertions.assertThrows(IllegalStateException.class, () -> router.routeOrNull("/"));
+        Assertions.assertThrows(IllegalStateException.class, () -> router.routeOrNull("/user/1"));
+        Assertions.assertThrows(IllegalStateException.class, () -> router.routeOrNull(new ByteArray("/user/1")));
+    }
+}
@@ -0,0 +1,53 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class OpenHashIndexTest {
+    @Test
+    public void get_empty() {
+        OpenHashIndex<String> index = OpenHashIndex.of(Map.of());
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertNull(index.get(new CharArray("")));
+        Assertions.assertNull(index.get(new CharArray("foo")));
+    }
+
+    @Test
+    public void get_simple() {
+        OpenHashIndex<String> index = OpenHashIndex.of(Map.of(
+                new CharArray("/"), "1",
+                new CharArray("/foo"), "2",
+                new CharArray("/bar"), "3",
+                new CharArray(""), "4"
+        ));
+        Assertions.assertEquals(4, index.size());
+        Assertions.assertEquals("1", index.get(new CharArray("/")));
+        Assertions.assertEquals("2", index.get(new CharArray("/foo")));
+        Assertions.assertEquals("3", index.get(new CharArray("/bar")));
+        Assertions.assertEquals("4", index.get(new CharArray("")));
+        Assertions.assertEquals("2", index.get(new CharArray("//foo/", 1, 5)));
+
+        Assertions.assertNull(index.get(new CharArray("/baz")));
+        Assertions.assertNull(index.get(new CharArray("/fo")));
+        Assertions.assertNull(index.get(new CharArray("/foo/")));
+        Assertions.assertNull(index.get(new CharArray("x".repeat(1000))));
+    }
+
+    @Test
+    public void get_many_same_hash() {
+        // "Aa" and "BB" have the same hash code, so do all of their concatenations
+        Map<CharArray, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < 64; i++) {
+            String key = Integer.toBinaryString(i | 64).substring(1).replace("0", "Aa").replace("1", "BB");
+            map.put(new CharArray(key), key);
+        }
+        OpenHashIndex<String> index = OpenHashIndex.of(map);
+        Assertions.assertEquals(64, index.size());
+        map.forEach((key, value) -> Assertions.assertEquals(value, index.get(key)));
+        Assertions.assertNull(index.get(new CharArray("AaAaAaAaAaAb")));
+    }
+}
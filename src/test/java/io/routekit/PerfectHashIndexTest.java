@@ -0,0 +1,68 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PerfectHashIndexTest {
+    @Test
+    public void get_empty() {
+        PerfectHashIndex<String> index = PerfectHashIndex.of(Map.of());
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertNull(index.get(new CharArray("")));
+        Assertions.assertNull(index.get(new CharArray("foo")));
+    }
+
+    @Test
+    public void get_simple() {
+        PerfectHashIndex<String> index = PerfectHashIndex.of(Map.of(
+                new CharArray("/"), "1",
+                new CharArray("/foo"), "2",
+                new CharArray("/bar"), "3"
+        ));
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals("1", index.get(new CharArray("/")));
+        Assertions.assertEquals("2", index.get(new CharArray("/foo")));
+        Assertions.assertEquals("3", index.get(new CharArray("/bar")));
+        Assertions.assertEquals("2", index.get(new CharArray("//foo/", 1, 5)));
+
+        Assertions.assertNull(index.get(new CharArray("")));
+        Assertions.assertNull(index.get(new CharArray("/baz")));
+        Assertions.assertNull(index.get(new CharArray("/fo")));
+        Assertions.assertNull(index.get(new CharArray("/foo/")));
+    }
+
+    @Test
+    public void get_many() {
+        for (int size : List.of(1, 2, 5, 100, 10_000)) {
+            Map<CharArray, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(new CharArray("/page/" + i), String.valueOf(i));
+            }
+            PerfectHashIndex<String> index = PerfectHashIndex.of(map);
+            Assertions.assertEquals(size, index.size());
+            map.forEach((key, value) -> Assertions.assertEquals(value, index.get(key)));
+            Assertions.assertNull(index.get(new CharArray("/page/" + size)));
+            Assertions.assertNull(index.get(new CharArray("/page/")));
+        }
+    }
+
+    @Test
+    public void router_with_perfect_hash() {
+        Router<String> router = new RouterSetup<String>()
+                .withBuilder(new RouterBuilder().setPerfectHashForConst(true))
+                .add("/foo", "1")
+                .add("/bar", "2")
+                .add("/foo/{name}", "3")
+                .build();
+
+        Assertions.assertEquals(new Match<>("1", Map.of()), router.routeOrNull("/foo"));
+        Assertions.assertEquals(new Match<>("2", Map.of()), router.routeOrNull("/bar"));
+        Assertions.assertEquals(new Match<>("3", Map.of("name", new CharArray("bar"))), router.routeOrNull("/foo/bar"));
+        Assertions.assertNull(router.routeOrNull("/baz"));
+    }
+}
@@ -0,0 +1,130 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ReloadableRouterTest {
+    @Test
+    public void reload_swap() {
+        ReloadableRouter<String> router = new ReloadableRouter<>(new RouterSetup<String>().add("/user/{id}", "old").build());
+        Assertions.assertEquals(new Match<>("old", Map.of("id", new CharArray("1"))), router.routeOrNull("/user/1"));
+
+        Router<String> old = router.current();
+        Assertions.assertSame(old, router.swap(new RouterSetup<String>().add("/user/{id}", "new").build()));
+        Assertions.assertEquals(new Match<>("new", Map.of("id", new CharArray("1"))), router.routeOrNull("/user/1"));
+        MatchHolder<String> holder = new MatchHolder<>();
+        Assertions.assertTrue(router.routeInto("/user/2", holder));
+        Assertions.assertEquals("new", holder.handler());
+
+        router.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> router.routeOrNull("/user/1"));
+        Assertions.assertThrows(IllegalStateException.class, () -> router.swap(old));
+    }
+
+    @Test
+    public void reload_async() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Router<String> initial = new RouterSetup<String>().add("/foo", "old").build();
+            ReloadableRouter<String> router = new ReloadableRouter<>(initial);
+            AtomicReference<Thread> builder = new AtomicReference<>();
+            CompletableFuture<Router<String>> future = router.reloadAsync(() -> {
+                builder.set(Thread.currentThread());
+                return new RouterSetup<String>().add("/foo", "new").build();
+            }, executor);
+            Assertions.assertSame(initial, future.get(10, TimeUnit.SECONDS));
+            Assertions.assertNotSame(Thread.currentThread(), builder.get());
+            Assertions.assertEquals(new Match<>("new", Map.of()), router.routeOrNull("/foo"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reload_release_waits_in_flight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        Token blocking = new Token() {
+            @Override
+            public int match(CharArray charArray) {
+                started.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return charArray.length();
+            }
+        };
+        Router<String> old = new RouterSetup<String>()
+                .add(new StringQuery("/*", List.of(new ConstToken("/"), blocking)), "old")
+                .build();
+        List<Router<String>> released = new CopyOnWriteArrayList<>();
+        ReloadableRouter<String> router = new ReloadableRouter<>(old, released::add);
+
+        CompletableFuture<Match<String>> routing = CompletableFuture.supplyAsync(() -> router.routeOrNull("/x"));
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Router<String>> swap = CompletableFuture.supplyAsync(
+                () -> router.swap(new RouterSetup<String>().add("/x", "new").build()));
+
+        Assertions.assertThrows(TimeoutException.class, () -> swap.get(100, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(new Match<>("new", Map.of()), router.routeOrNull("/x"));  // already published
+        Assertions.assertTrue(released.isEmpty());
+
+        proceed.countDown();
+        Assertions.assertEquals(new Match<>("old", Map.of()), routing.get(10, TimeUnit.SECONDS));
+        Assertions.assertSame(old, swap.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(old), released);
+    }
+
+    @Test
+    public void reload_concurrent_off_heap() throws Exception {
+        RouterSetup<String> setup = new RouterSetup<String>()
+                .add("/", "home")
+                .add("/user/{id}", "user")
+                .add("/post/{id}/{*path}", "post");
+        ReloadableRouter<String> router = new ReloadableRouter<>(setup.buildOffHeap(),
+                                                                 old -> ((OffHeapRouter<String>) old).close());
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                MatchHolder<String> holder = new MatchHolder<>();
+                try {
+                    while (!done.get()) {
+                        Assertions.assertTrue(router.routeInto("/user/1", holder));
+                        Assertions.assertTrue(router.routeInto(new ByteArray("/post/1/a/b"), holder));
+                        Assertions.assertTrue(router.routeInto("/", holder));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < 300; i++) {
+            router.swap(setup.buildOffHeap());
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        router.close();
+        Assertions.assertEquals(List.of(), errors);
+    }
+}
@@ -3,8 +3,10 @@ package io.routekit;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static io.routekit.NodePrinter.printlnToString;
 
@@ -379,6 +381,33 @@ public class RouterBuilderTest {
                 )));
     }
 
+    @Test
+    public void buildStateMachine_parallel_same_as_sequential() {
+        List<RouterSetup.Rule<String>> rules = new ArrayList<>();
+        for (int service = 0; service < 200; service++) {
+            for (int resource = 0; resource < 10; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.add(rule(prefix, prefix));
+                rules.add(rule(prefix + "/id", prefix + "/", "{id}"));
+                rules.add(rule(prefix + "/item", prefix + "/", "{id}", "/items/", "{item}"));
+                rules.add(rule(prefix + "/files", prefix + "/", "{id}", "/files/", "{*path}"));
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RouterBuilder sequential = new RouterBuilder().setExcludeConstFromFSM(false);
+            RouterBuilder parallel = new RouterBuilder().setExcludeConstFromFSM(false).setBuildPool(pool);
+            Assertions.assertEquals(printlnToString(sequential.buildStateMachine(rules)),
+                                    printlnToString(parallel.buildStateMachine(rules)));
+            Assertions.assertNotNull(parallel.buildRouter(rules).routeOrNull("/api/v1/service3/resource1/1/items/2"));
+
+            rules.add(rule("duplicate", "/api/v2/service1/resource9/", "{id}"));
+            Assertions.assertThrows(RouteException.class, () -> parallel.buildRouter(rules));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     private static RouterSetup.Rule<String> rule(String tag, String ... tokens) {
         return new RouterSetup.Rule<>(() -> Arrays.stream(tokens).map(RouterBuilderTest::convert).toList(), tag);
     }
@@ -0,0 +1,97 @@
+package io.routekit;
+
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class RouterSnapshotTest {
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void write_and_load() throws IOException {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("/", "home");
+        rules.put("/index", "index");
+        rules.put("/caf\u00E9", "cafe");
+        rules.put("/user/{id}", "user");
+        rules.put("/post/{id}/{slug}", "post");
+        rules.put("/post/{id}/{slug}/comments", "comments");
+        rules.put("/p/{id}/{*rest}", "rest");
+        rules.put("/p/{id}/foo", "foo");
+        for (int i = 0; i < 100; i++) {
+            rules.put("/api/name%d/{id}".formatted(i * 7), "api" + i);
+            rules.put("/const/\u00E9%d".formatted(i), "const" + i);
+        }
+        List<String> inputs = new ArrayList<>(List.of(
+                "", "/", "/index", "/caf\u00E9", "/cafe", "/user", "/user/1", "/user/1/", "/post/1/a",
+                "/post/1/a/comments", "/p/1/foo", "/p/1/foo/", "/p/1/bar/baz"
+        ));
+        for (int i = 0; i < 800; i += 3) {
+            inputs.add("/api/name%d/%d".formatted(i, i));
+            inputs.add("/const/\u00E9%d".formatted(i));
+        }
+
+        Path path = dir.resolve("router.snapshot");
+        RouterSnapshot.write(new RouterSetup<String>().addMany(rules), handler -> handler, path);
+        Router<String> expected = new RouterSetup<String>().addMany(rules).build();
+        try (OffHeapRouter<String> loaded = RouterSnapshot.load(path, Function.identity())) {
+            for (String input : inputs) {
+                Assertions.assertEquals(expected.routeOrNull(input), loaded.routeOrNull(input), input);
+                Assertions.assertEquals(expected.routeOrNull(new ByteArray(input)), loaded.routeOrNull(new ByteArray(input)));
+            }
+            Match<String> match = loaded.routeOrNull("/post/1/a");
+            Assertions.assertNotNull(match);
+            Assertions.assertEquals(List.of("id", "slug"), match.variables().keySet().stream().sorted().toList());
+        }
+    }
+
+    @Test
+    public void write_and_load_handler_keys() throws IOException {
+        Path path = dir.resolve("router.snapshot");
+        RouterSnapshot.write(new RouterSetup<Integer>().add("/", 1).add("/user/{id}", 2), String::valueOf, path);
+        try (OffHeapRouter<Integer> loaded = RouterSnapshot.load(path, Integer::valueOf)) {
+            Assertions.assertEquals(new Match<>(1, Map.of()), loaded.routeOrNull("/"));
+            Assertions.assertEquals(new Match<>(2, Map.of("id", new CharArray("3"))), loaded.routeOrNull("/user/3"));
+        }
+        Assertions.assertThrows(RouteException.class, () -> RouterSnapshot.load(path, key -> null));
+    }
+
+    @Test
+    public void load_invalid() throws IOException {
+        Path path = dir.resolve("router.snapshot");
+        Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        Assertions.assertThrows(RouteException.class, () -> RouterSnapshot.load(path, Function.identity()));
+
+        RouterSnapshot.write(new RouterSetup<String>().add("/user/{id}", "user"), handler -> handler, path);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, 20));
+        Assertions.assertThrows(RouteException.class, () -> RouterSnapshot.load(path, Function.identity()));
+    }
+
+    @Test
+    public void write_custom_tokens() {
+        Token custom = new Token() {
+            @Override
+            public int match(CharArray charArray) {
+                return charArray.startsWith('!') ? 1 : -1;
+            }
+        };
+        RouterSetup<String> setup = new RouterSetup<String>()
+                .add(new StringQuery("/!", List.of(new ConstToken("/"), custom)), "1");
+        Assertions.assertThrows(RouteException.class,
+                                () -> RouterSnapshot.write(setup, handler -> handler, dir.resolve("router.snapshot")));
+    }
+}
@@ -1,14 +1,20 @@
 package io.routekit;
 
+import io.routekit.util.ByteArray;
 import io.routekit.util.CharArray;
 import io.routekit.util.MutableCharArray;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class RouterTest {
@@ -497,6 +503,409 @@ public class RouterTest {
         assert404(router.routeOrNull(new CharArray("//foo/bar/", 0, 9)));
     }
 
+    @Test
+    public void routeOrNull_variables_by_slot() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/post/{id}/{slug}/comments", "1")
+                .build();
+
+        Match<String> match = router.routeOrNull("/post/123/foo/comments");
+        Assertions.assertNotNull(match);
+        Assertions.assertEquals(VariableSchema.of("id", "slug"), match.schema());
+        Assertions.assertEquals(new CharArray("123"), match.variable(0));
+        Assertions.assertEquals(new CharArray("foo"), match.variable(1));
+        Assertions.assertEquals(new CharArray("123"), match.variable("id"));
+        Assertions.assertEquals(new CharArray("foo"), match.variable("slug"));
+        Assertions.assertNull(match.variable("comments"));
+        Assertions.assertEquals(Arrays.asList("id", "slug"), match.variables().keySet().stream().toList());
+    }
+
+    @Test
+    public void match_equals_same_as_variables_map() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/post/{id}/{slug}", "1")
+                .add("/user/{slug}/{id}", "1")
+                .build();
+
+        Match<String> chars = router.routeOrNull("/post/123/caf\u00e9");
+        Match<String> bytes = router.routeOrNull(bytes("/post/123/caf\u00e9"));
+        Match<String> swapped = router.routeOrNull("/user/caf\u00e9/123");
+        Match<String> map = new Match<>("1", Map.of("id", new CharArray("123"), "slug", new CharArray("caf\u00e9")));
+        for (Match<String> match : List.of(bytes, swapped, map)) {
+            Assertions.assertEquals(chars, match);
+            Assertions.assertEquals(match, chars);
+            Assertions.assertEquals(chars.hashCode(), match.hashCode());
+            Assertions.assertEquals(chars.variables().hashCode() + 31 * "1".hashCode(), match.hashCode());
+        }
+        Assertions.assertNotEquals(chars, router.routeOrNull("/post/123/cafe"));
+        Assertions.assertNotEquals(chars, router.routeOrNull("/post/1234/caf\u00e9"));
+        Assertions.assertNotEquals(chars, new Match<>("1", Map.of("id", new CharArray("123"))));
+        Assertions.assertEquals("Match[handler=1, variables={id=123, slug=caf\u00e9}]", chars.toString());
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> chars.variables().put("id", new CharArray("1")));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> map.variables().remove("id"));
+    }
+
+    @Test
+    public void routeInto_reuse_holder() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/foo", "1")
+                .add("/foo/{name}", "2")
+                .add("/foo/{name}/{*rest}", "3")
+                .build();
+        MatchHolder<String> holder = new MatchHolder<>(1);
+
+        Assertions.assertTrue(router.routeInto(new CharArray("/foo"), holder));
+        assertOK(holder.toMatchOrNull(), "1");
+
+        Assertions.assertTrue(router.routeInto(new CharArray("/foo/bar"), holder));
+        assertOK(holder.toMatchOrNull(), "2", "name=bar");
+        Assertions.assertEquals(5, holder.start(0));
+        Assertions.assertEquals(8, holder.end(0));
+
+        Assertions.assertTrue(router.routeInto(new CharArray("/foo/bar/baz/"), holder));
+        assertOK(holder.toMatchOrNull(), "3", "name=bar", "rest=baz/");
+        Assertions.assertEquals(new CharArray("baz/"), holder.variable("rest"));
+
+        Assertions.assertFalse(router.routeInto(new CharArray("/foo/bar/"), holder));
+        Assertions.assertFalse(holder.isMatched());
+        Assertions.assertEquals(0, holder.size());
+        assert404(holder.toMatchOrNull());
+    }
+
+    @Test
+    public void routeInto_typed_variables() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/user/{id:int}", "1")
+                .add("/user/{key:uuid}", "2")
+                .add("/user/{name}", "3")
+                .add("/order/{id:long}/items/{item:int}", "4")
+                .build();
+        MatchHolder<String> holder = new MatchHolder<>(1);
+
+        Assertions.assertTrue(router.routeInto(new CharArray("/user/123"), holder));
+        Assertions.assertEquals("1", holder.handler());
+        Assertions.assertEquals(123, holder.intValue(0));
+        Assertions.assertEquals(123, holder.longValue("id"));
+        Assertions.assertEquals(-2147483648, router.routeOrNull("/user/-2147483648").intValue("id"));
+        Assertions.assertEquals(7, router.routeOrNull("/user/0007").intValue(0));
+
+        // Not an int: falls through to the siblings
+        assertOK(router.routeOrNull("/user/2147483648"), "3", "name=2147483648");
+        assertOK(router.routeOrNull("/user/-"), "3", "name=-");
+        assertOK(router.routeOrNull("/user/12a"), "3", "name=12a");
+        assertOK(router.routeOrNull("/user/bob"), "3", "name=bob");
+        Assertions.assertThrows(RouteException.class, () -> router.routeOrNull("/user/bob").longValue("name"));
+
+        UUID uuid = UUID.randomUUID();
+        Assertions.assertTrue(router.routeInto(new CharArray("/user/" + uuid), holder));
+        Assertions.assertEquals("2", holder.handler());
+        Assertions.assertEquals(uuid, holder.uuidValue(0));
+        Assertions.assertEquals(uuid, router.routeOrNull("/user/" + uuid.toString().toUpperCase()).uuidValue("key"));
+        Assertions.assertThrows(RouteException.class, () -> holder.longValue(0));
+
+        Assertions.assertTrue(router.routeInto(new CharArray("/order/9223372036854775807/items/-1"), holder));
+        Assertions.assertEquals(Long.MAX_VALUE, holder.longValue("id"));
+        Assertions.assertEquals(-1, holder.intValue("item"));
+        Assertions.assertTrue(router.routeInto(new ByteArray("/order/-9223372036854775808/items/42"), holder));
+        Assertions.assertEquals(Long.MIN_VALUE, holder.longValue("id"));
+        Assertions.assertEquals(42, holder.intValue("item"));
+        Assertions.assertEquals(42, holder.toMatchOrNull().intValue("item"));
+        Assertions.assertFalse(router.routeInto(new ByteArray("/order/9223372036854775808/items/1"), holder));
+        Assertions.assertFalse(router.routeInto(new CharArray("/order/1/items/x"), holder));
+    }
+
+    @Test
+    public void routeOrNull_char_class_variables() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/post/{slug:[a-z0-9-]+}", "1")
+                .add("/api/{id:[0-9]+}.json", "2")
+                .add("/post/{name}", "3")
+                .add("/hex/{id:hex}", "4")
+                .add("/not/{id:[^0-9]}", "5")
+                .add("/ru/{word:[\u0430-\u044f\u0451]+}", "6")
+                .build();
+
+        assertOK(router.routeOrNull("/post/hello-world-2"), "1", "slug=hello-world-2");
+        assertOK(router.routeOrNull("/api/42.json"), "2", "id=42");
+        assertOK(router.routeOrNull("/post/Hello"), "3", "name=Hello");
+        assertOK(router.routeOrNull("/post/42.json"), "3", "name=42.json");  // the longest match wins
+        assertOK(router.routeOrNull("/hex/00fF"), "4", "id=00fF");
+        assertOK(router.routeOrNull("/not/ab-c"), "5", "id=ab-c");
+        assertOK(router.routeOrNull("/ru/\u043f\u0440\u0438\u0432\u0435\u0442"), "6", "word=\u043f\u0440\u0438\u0432\u0435\u0442");
+
+        assert404(router.routeOrNull("/api/42.xml"));
+        assert404(router.routeOrNull("/hex/0x1"));
+        assert404(router.routeOrNull("/hex/"));
+        assert404(router.routeOrNull("/not/a1"));
+        assert404(router.routeOrNull("/not/a/b"));
+        assert404(router.routeOrNull("/ru/hello"));
+
+        assertOK(router.routeOrNull(bytes("/api/42.json")), "2", "id=42");
+        assertOK(router.routeOrNull(bytes("/post/\u00fcber")), "3", "name=\u00fcber");
+        assertOK(router.routeOrNull(bytes("/not/\u00fcber")), "5", "id=\u00fcber");
+        assertOK(router.routeOrNull(bytes("/ru/\u0451\u0436")), "6", "word=\u0451\u0436");
+        assert404(router.routeOrNull(bytes("/ru/\u0451\u0436z")));
+    }
+
+    @Test
+    public void routeOrNull_backtracking() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/files/{name:[a-z]+}/raw", "1")
+                .add("/files/{any}/meta", "2")
+                .add("/v/{x:alpha}/a", "3")
+                .add("/v/abc/{y}/b", "4")
+                .add("/v/{z}/{w}/c", "5")
+                .build();
+
+        assertOK(router.routeOrNull("/files/abc/raw"), "1", "name=abc");
+        assertOK(router.routeOrNull("/files/abc/meta"), "2", "any=abc");  // the greedy choice is {name}
+        assertOK(router.routeOrNull("/files/ABC/meta"), "2", "any=ABC");
+        assertOK(router.routeOrNull("/v/abc/x/b"), "4", "y=x");
+        assertOK(router.routeOrNull("/v/abc/a"), "3", "x=abc");             // the greedy choice is `abc/`
+        assertOK(router.routeOrNull("/v/abc/x/c"), "5", "z=abc", "w=x");    // after both `abc/` and {x}
+        assertOK(router.routeOrNull(bytes("/files/abc/meta")), "2", "any=abc");
+        assertOK(router.routeOrNull(bytes("/v/abc/a")), "3", "x=abc");
+        assertOK(router.routeOrNull(bytes("/v/abc/x/c")), "5", "z=abc", "w=x");
+
+        assert404(router.routeOrNull("/files/abc/other"));
+        assert404(router.routeOrNull("/v/abc/x/d"));
+        assert404(router.routeOrNull(bytes("/v/abc/x/d")));
+
+        MatchHolder<String> holder = new MatchHolder<>();
+        Assertions.assertTrue(router.routeInto(new CharArray("/v/abc/x/c"), holder));
+        Assertions.assertEquals(2, holder.size());  // the variables of the failed tries are dropped
+        Assertions.assertFalse(router.routeInto(new CharArray("/v/abc/x/d"), holder));
+        Assertions.assertEquals(0, holder.size());
+    }
+
+    @Test
+    public void routeInto_input_not_modified() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/foo/{name}", "1")
+                .build();
+        MatchHolder<String> holder = new MatchHolder<>();
+
+        MutableCharArray input = new MutableCharArray("//foo/bar/", 1, 9);
+        Assertions.assertTrue(router.routeInto(input, holder));
+        assertOK(holder.toMatchOrNull(), "1", "name=bar");
+        Assertions.assertEquals("/foo/bar", input.toString());
+    }
+
+    @Test
+    public void routeInto_buffer_refilled_in_place() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/aa", "aa")
+                .add("/bb", "bb")
+                .add("/{name}", "name")
+                .build();
+        MatchHolder<String> holder = new MatchHolder<>();
+
+        char[] buffer = "/aa".toCharArray();
+        MutableCharArray input = new MutableCharArray(buffer);
+        Assertions.assertTrue(router.routeInto(input, holder));
+        Assertions.assertEquals("aa", holder.handler());
+
+        "/bb".getChars(0, 3, buffer, 0);  // same length, no reset
+        Assertions.assertTrue(router.routeInto(input, holder));
+        Assertions.assertEquals("bb", holder.handler());
+
+        "/cc".getChars(0, 3, buffer, 0);
+        Assertions.assertTrue(router.routeInto(input, holder));
+        assertOK(holder.toMatchOrNull(), "name", "name=cc");
+    }
+
+    @Test
+    public void routeOrNull_bytes() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/foo", "1")
+                .add("/foo/{name}", "2")
+                .add("/foo/{name}/{*rest}", "3")
+                .add("/caf\u00e9/{name}", "4")
+                .build();
+
+        assertOK(router.routeOrNull(bytes("/foo")), "1");
+        assertOK(router.routeOrNull(bytes("/foo/bar")), "2", "name=bar");
+        assertOK(router.routeOrNull(bytes("/foo/bar/baz/")), "3", "name=bar", "rest=baz/");
+        assertOK(router.routeOrNull(bytes("/foo/\u00fcber")), "2", "name=\u00fcber");
+        assertOK(router.routeOrNull(bytes("/caf\u00e9/\u20ac")), "4", "name=\u20ac");
+
+        assert404(router.routeOrNull(bytes("/cafe/bar")));
+        assert404(router.routeOrNull(bytes("/foo/bar/")));
+        assert404(router.routeOrNull(bytes("")));
+    }
+
+    @Test
+    public void routeOrNull_bytes_const_index() {
+        for (boolean perfectHash : new boolean[] { false, true }) {
+            Router<String> router = new RouterSetup<String>()
+                    .withBuilder(new RouterBuilder().setPerfectHashForConst(perfectHash))
+                    .add("/foo", "1")
+                    .add("/\u00fcber", "2")
+                    .build();
+
+            assertOK(router.routeOrNull(bytes("/foo")), "1");
+            assertOK(router.routeOrNull(bytes("/\u00fcber")), "2");
+            assert404(router.routeOrNull(bytes("/uber")));
+            assert404(router.routeOrNull(bytes("/fo")));
+        }
+    }
+
+    @Test
+    public void routeInto_bytes_offsets() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/{name}/{id}", "1")
+                .build();
+        MatchHolder<String> holder = new MatchHolder<>();
+
+        Assertions.assertTrue(router.routeInto(new ByteArray("/\u00fcber/1"), holder));
+        Assertions.assertEquals(1, holder.start(0));
+        Assertions.assertEquals(6, holder.end(0));  // in bytes
+        Assertions.assertEquals(new ByteArray("\u00fcber"), holder.variableBytes(0));
+        Assertions.assertEquals(new CharArray("\u00fcber"), holder.variable(0));
+        Assertions.assertEquals(new CharArray("1"), holder.variable("id"));
+        Assertions.assertNull(holder.input());
+
+        Assertions.assertTrue(router.routeInto(new CharArray("/foo/1"), holder));
+        Assertions.assertNull(holder.inputBytes());
+        assertOK(holder.toMatchOrNull(), "1", "name=foo", "id=1");
+    }
+
+    @Test
+    public void routeInto_byte_buffers() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/foo/{name}", "1")
+                .build();
+        MatchHolder<String> holder = new MatchHolder<>(1);
+
+        ByteBuffer heap = ByteBuffer.wrap("GET /foo/bar HTTP/1.1".getBytes(StandardCharsets.UTF_8), 4, 8).slice();
+        Assertions.assertTrue(router.routeInto(heap, holder));
+        Assertions.assertEquals(0, heap.position());
+        assertOK(holder.toMatchOrNull(), "1", "name=bar");
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(64);
+        direct.put("/foo/\u00fcber".getBytes(StandardCharsets.UTF_8)).flip();
+        Match<String> match = router.routeOrNull(direct);
+        direct.clear().put("/foo/bar".getBytes(StandardCharsets.UTF_8)).flip();
+        assertOK(match, "1", "name=\u00fcber");  // detached from the buffer
+        Assertions.assertTrue(router.routeInto(direct, holder));
+        assertOK(holder.toMatchOrNull(), "1", "name=bar");
+        Assertions.assertFalse(router.routeInto(direct.position(1), holder));
+    }
+
+    @Test
+    public void routeInto_char_sequences() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/foo", "1")
+                .add("/foo/{name}", "2")
+                .build();
+        MatchHolder<String> holder = new MatchHolder<>();
+
+        StringBuilder builder = new StringBuilder("/foo/bar");
+        Assertions.assertTrue(router.routeInto(builder, holder));
+        Match<String> match = holder.toMatchOrNull();
+        builder.setLength(0);
+        builder.append("/foo");
+        assertOK(match, "2", "name=bar");  // detached from the builder
+        Assertions.assertTrue(router.routeInto(builder, holder));
+        assertOK(holder.toMatchOrNull(), "1");
+
+        CharBuffer heap = CharBuffer.wrap("GET /foo/baz HTTP/1.1".toCharArray(), 4, 8).slice();
+        Assertions.assertTrue(router.routeInto(heap, holder));
+        Assertions.assertEquals(0, heap.position());
+        assertOK(holder.toMatchOrNull(), "2", "name=baz");
+        assertOK(router.routeOrNull(heap), "2", "name=baz");
+
+        CharBuffer direct = ByteBuffer.allocateDirect(64).asCharBuffer().put("/foo/qux").flip();
+        Assertions.assertTrue(router.routeInto(direct, holder));
+        assertOK(holder.toMatchOrNull(), "2", "name=qux");
+
+        CharSequence custom = new CharSequence() {
+            private final String value = "/foo/quux";
+            @Override public int length() { return value.length(); }
+            @Override public char charAt(int index) { return value.charAt(index); }
+            @Override public CharSequence subSequence(int start, int end) { return value.subSequence(start, end); }
+            @Override public String toString() { throw new UnsupportedOperationException(); }
+        };
+        Assertions.assertTrue(router.routeInto(custom, holder));
+        assertOK(holder.toMatchOrNull(), "2", "name=quux");
+        assertOK(router.routeOrNull(custom), "2", "name=quux");
+
+        Assertions.assertFalse(router.routeInto("/foo/bar/", holder));
+    }
+
+    @Test
+    public void routeOrNull_nested_on_same_thread() {
+        Router<String> inner = new RouterSetup<String>().add("/{id}", "inner").build();
+        Token nested = new Token() {
+            @Override
+            public int match(CharArray charArray) {
+                // The thread-local scratch is in use by the outer routing
+                return inner.routeOrNull(charArray) != null ? charArray.length() : -1;
+            }
+        };
+        Router<String> outer = new RouterSetup<String>()
+                .add(new StringQuery("/outer/*", List.of(new ConstToken("/outer"), nested)), "outer")
+                .build();
+
+        assertOK(outer.routeOrNull("/outer/1"), "outer");
+        assert404(outer.routeOrNull("/outer/1/2"));
+        assertOK(inner.routeOrNull("/2"), "inner", "id=2");
+    }
+
+    @Test
+    public void routeAll_same_as_routeOrNull() {
+        Router<String> router = new RouterSetup<String>()
+                .add("/", "home")
+                .add("/user", "all_users")
+                .add("/user/{id}", "get_user")
+                .add("/user/{id}/{*path}", "user_files")
+                .add("/post/{id}", "get_post")
+                .withBuilder(new RouterBuilder().setRejectDeadPrefixes(true))
+                .build();
+        String[] inputs = { "/user/1", "/", "/foo", "/user", "/post/2", "/user/1/a/b", "", "/post", "/user/3" };
+        CharArray[] arrays = Arrays.stream(inputs).map(CharArray::new).toArray(CharArray[]::new);
+
+        Match<?>[] matches = new Match<?>[inputs.length];
+        boolean[] seen = new boolean[inputs.length];
+        router.routeAll(arrays, (index, holder) -> {
+            Assertions.assertFalse(seen[index]);
+            seen[index] = true;
+            matches[index] = holder.toMatchOrNull();
+        });
+        for (int i = 0; i < inputs.length; i++) {
+            Assertions.assertTrue(seen[i]);
+            Assertions.assertEquals(router.routeOrNull(inputs[i]), matches[i]);
+        }
+    }
+
+    @Test
+    public void reorderedByHits_same_matches() {
+        RouterSetup<String> setup = new RouterSetup<String>()
+                .withBuilder(new RouterBuilder().setCountHits(true));
+        for (int i = 0; i < 20; i++) {
+            setup.add("/item%d/{id}".formatted(i), "item" + i);
+            setup.add("/item%d/{id}/{*path}".formatted(i), "path" + i);
+        }
+        setup.add("/{name}/all", "all");
+        Router<String> router = setup.build();
+        String[] inputs = { "/item1/2", "/item1/2/3", "/item12/4", "/item12/", "/item7/all", "/item/all", "/item1", "/item20/1" };
+        for (int i = 0; i < 100; i++) {
+            router.routeOrNull(inputs[i % 3]);
+        }
+
+        Router<String> reordered = router.reorderedByHits();
+        Assertions.assertNotSame(router, reordered);
+        for (String input : inputs) {
+            Assertions.assertEquals(router.routeOrNull(input), reordered.routeOrNull(input));
+            Assertions.assertEquals(router.routeOrNull(bytes(input)), reordered.routeOrNull(bytes(input)));
+        }
+    }
+
+    private static byte[] bytes(String input) {
+        return input.getBytes(StandardCharsets.UTF_8);
+    }
+
     private static void assertOK(Match<String> match, String tag, String ... variables) {
         Assertions.assertEquals(match(tag, variables), match);
     }
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import static io.routekit.SimpleQueryParser.DEFAULT;
 
@@ -55,6 +56,45 @@ public class SimpleQueryParserTest {
         assertOrdered(DEFAULT.parse("{*XyZ}"), wildcard("XyZ"));
     }
 
+    @Test
+    public void parse_typed_variable() {
+        assertOrdered(DEFAULT.parse("/{id:int}"), constant("/"), typed("id", TypedVariableToken.Type.INT));
+        assertOrdered(DEFAULT.parse("/{id:long}/{name}"),
+                      constant("/"), typed("id", TypedVariableToken.Type.LONG), constant("/"), var("name"));
+        assertOrdered(DEFAULT.parse("/{key:uuid}/"), constant("/"), typed("key", TypedVariableToken.Type.UUID), constant("/"));
+
+        Assertions.assertNotEquals(var("id"), typed("id", TypedVariableToken.Type.INT));
+        Assertions.assertNotEquals(typed("id", TypedVariableToken.Type.INT), var("id"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{id:short}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{id:}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{:int}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{*id:int}"));
+    }
+
+    @Test
+    public void parse_char_class_variable() {
+        assertOrdered(DEFAULT.parse("/{slug:[a-z0-9-]+}"), constant("/"), charClass("slug", "[a-z0-9-]+"));
+        assertOrdered(DEFAULT.parse("/{id:hex}/{name}"), constant("/"), charClass("id", "hex"), constant("/"), var("name"));
+        assertOrdered(DEFAULT.parse("/{id:[0-9]+}.json"), constant("/"), charClass("id", "[0-9]+"), constant(".json"));
+        assertOrdered(DEFAULT.parse("/{id:[0-9]+}-{name}"),
+                      constant("/"), charClass("id", "[0-9]+"), constant("-"), var("name"));
+
+        Assertions.assertNotEquals(var("id"), charClass("id", "hex"));
+        Assertions.assertNotEquals(charClass("id", "hex"), charClass("id", "[0-9a-fA-F]"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{id:[]}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{id:[z-a]}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{id:[a-z}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{id:[a-z\\]}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{*id:hex}"));
+        Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse("/{id:[0-9-]+}-"));  // doesn't stop at `-`
+
+        // The errors refer to the query
+        for (String query : List.of("/{id:[]}", "/{id:[z-a]}", "/{id:[a-z}", "/{id:[a-z\\]}")) {
+            QueryParseException e = Assertions.assertThrows(QueryParseException.class, () -> DEFAULT.parse(query));
+            Assertions.assertTrue(e.getMessage().endsWith(": " + query), e.getMessage());
+        }
+    }
+
     @Test
     public void parse_wildcard_and_variable() {
         assertOrdered(DEFAULT.parse("{foo}/{*bar}"), var("foo"), constant("/"), wildcard("bar"));
@@ -142,6 +182,14 @@ public class SimpleQueryParserTest {
         return new SeparableVariableToken(name);
     }
 
+    private static TypedVariableToken typed(String name, TypedVariableToken.Type type) {
+        return new TypedVariableToken(name, type);
+    }
+
+    private static CharClassVariableToken charClass(String name, String constraint) {
+        return CharClassVariableToken.of(name, constraint);
+    }
+
     private static WildcardToken wildcard(String name) {
         return new WildcardToken(name);
     }
@@ -0,0 +1,121 @@
+package io.routekit;
+
+import io.routekit.util.CharArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TrieCompilerTest {
+    @Test
+    public void compileOrNull_simple_rules() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("/", "home");
+        rules.put("/user/{id}", "user");
+        rules.put("/post/{id}/{slug}", "post");
+        rules.put("/post/{id}/{slug}/comments", "comments");
+        rules.put("/p/{id}/{*rest}", "rest");
+        rules.put("/p/{id}/foo", "foo");
+
+        Router<String> router = InterpreterDiff.router(compiledBuilder(), rules);
+        Assertions.assertEquals(new Match<>("user", Map.of("id", new CharArray("1"))), router.routeOrNull("/user/1"));
+        Assertions.assertEquals(new Match<>("rest", Map.of("id", new CharArray("1"), "rest", new CharArray("foo/"))),
+                                router.routeOrNull("/p/1/foo/"));  // the longest match wins
+        Assertions.assertNull(router.routeOrNull("/post/1/"));
+        assertSameAsInterpreter(rules, List.of(
+                "", "/", "//", "/user", "/user/", "/user/1", "/user/1/", "/post/1/a", "/post/1/a/comments",
+                "/post/1/a/comments/", "/p/1/foo", "/p/1/foo/", "/p/1/bar/baz", "/p//foo", "/p/1/fo"
+        ));
+    }
+
+    @Test
+    public void compileOrNull_random_rules_same_as_interpreter() {
+        InterpreterDiff.forEachRandomRules(new Random(0), 200, TrieCompilerTest::assertSameAsInterpreter);
+    }
+
+    @Test
+    public void compileOrNull_wide_fan_out() {
+        for (int siblings : List.of(20, 300, 1000)) {
+            Map<String, String> rules = new LinkedHashMap<>();
+            for (int i = 0; i < siblings; i++) {
+                rules.put("/api/name%d/{id}".formatted(i * 7), "api" + i);
+            }
+            rules.put("/api/{name}", "other");
+            List<String> inputs = new ArrayList<>();
+            for (int i = 0; i < siblings * 8; i += 3) {
+                inputs.add("/api/name%d/%d".formatted(i, i));
+                inputs.add("/api/name%d".formatted(i));
+            }
+            assertSameAsInterpreter(rules, inputs);
+        }
+    }
+
+    @Test
+    public void compileOrNull_only_top_nodes() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            rules.put("/api/v%d/service%d/{id}".formatted(i % 3, i), "s" + i);
+            rules.put("/api/v%d/service%d/{id}/items/{item}".formatted(i % 3, i), "i" + i);
+            rules.put("/api/v%d/service%d/{id}/files/{*path}".formatted(i % 3, i), "f" + i);
+        }
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            inputs.add("/api/v%d/service%d/%d".formatted(i % 3, i, i));
+            inputs.add("/api/v%d/service%d/%d/items/x".formatted(i % 3, i, i));
+            inputs.add("/api/v%d/service%d/%d/files/a/b".formatted(i % 3, i, i));
+            inputs.add("/api/v%d/service%d/%d/files".formatted(i % 3, i, i));
+        }
+        RouterBuilder builder = new RouterBuilder();
+        List<RouterSetup.Rule<String>> setupRules = new RouterSetup<String>().addMany(rules).getRules();
+        Router.Node<String> root = builder.buildStateMachine(setupRules);
+        for (int maxNodes : List.of(1, 2, 5, 20)) {
+            CompiledTrie<String> compiled = TrieCompiler.compileOrNull(root, maxNodes);
+            Assertions.assertNotNull(compiled);
+            Router<String> router = new Router<>(builder.buildQuickMatchIndex(setupRules), root, compiled, null);
+            Router<String> interpreted = new RouterSetup<String>().addMany(rules).build();
+            for (String input : inputs) {
+                Assertions.assertEquals(interpreted.routeOrNull(input), router.routeOrNull(input), input);
+            }
+        }
+        assertSameAsInterpreter(rules, inputs);
+    }
+
+    @Test
+    public void compileOrNull_custom_token_interpreted() {
+        Token custom = new Token() {
+            @Override
+            public int match(CharArray charArray) {
+                return charArray.startsWith('!') ? 1 : -1;
+            }
+        };
+        RouterSetup<String> setup = new RouterSetup<String>()
+                .add(new StringQuery("!", List.of(custom)), "0")
+                .add(new StringQuery("/!", List.of(new ConstToken("/"), custom)), "1");
+        Router.Node<String> root = new RouterBuilder().buildStateMachine(setup.getRules());
+        Assertions.assertNull(TrieCompiler.compileOrNull(root));  // the root children are custom
+
+        setup = new RouterSetup<String>()
+                .add(new StringQuery("/!", List.of(new ConstToken("/"), custom)), "1")
+                .add("/{id}", "2");
+        root = new RouterBuilder().buildStateMachine(setup.getRules());
+        Assertions.assertNotNull(TrieCompiler.compileOrNull(root));  // the "/" node is interpreted
+
+        Router<String> router = setup.withBuilder(new RouterBuilder().setCompileToBytecode(true)).build();
+        Assertions.assertEquals(new Match<>("1", Map.of()), router.routeOrNull("/!"));
+        Assertions.assertEquals(new Match<>("2", Map.of("id", new CharArray("1"))), router.routeOrNull("/1"));
+    }
+
+    private static void assertSameAsInterpreter(Map<String, String> rules, List<String> inputs) {
+        Router.Node<String> root = new RouterBuilder().buildStateMachine(new RouterSetup<String>().addMany(rules).getRules());
+        Assertions.assertNotNull(TrieCompiler.compileOrNull(root), "Not compiled: " + rules);
+        InterpreterDiff.assertSameAsInterpreter(compiledBuilder(), rules, inputs);
+    }
+
+    private static RouterBuilder compiledBuilder() {
+        return new RouterBuilder().setCompileToBytecode(true);
+    }
+}
@@ -0,0 +1,98 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.MatchSink;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The routing of the same inputs one by one vs in the batches (see {@link Router#routeAll}).
+ * The time is per input: each invocation routes all of the {@link #INPUTS} inputs.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class BatchRoutingBenchmark {
+    private static final int INPUTS = 4096;
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "1", "16", "256" })
+        private int batch = 0;
+        private Router<String> router;
+        private CharArray[] inputs;
+        private CharArray[][] batches;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, String> rules = largeRules(10000);
+            router = new RouterSetup<String>().addMany(rules).build();
+
+            List<String> keys = List.copyOf(rules.keySet());
+            Random random = new Random(0);
+            inputs = new CharArray[INPUTS];
+            for (int i = 0; i < INPUTS; i++) {
+                String rule = keys.get(random.nextInt(keys.size()));
+                inputs[i] = new CharArray(rule.replaceAll("\\{\\*?[a-z]+}", String.valueOf(random.nextInt(1000))));
+            }
+            batches = new CharArray[INPUTS / batch][];
+            for (int i = 0; i < batches.length; i++) {
+                batches[i] = Arrays.copyOfRange(inputs, i * batch, (i + 1) * batch);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPlan {
+        private final MatchHolder<String> holder = new MatchHolder<>();
+        private MatchSink<String> sink;
+
+        @Setup(Level.Trial)
+        public void setUp(Blackhole blackhole) {
+            sink = (index, holder) -> blackhole.consume(holder.handler());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void route_single(ExecutionPlan plan, ThreadPlan thread, Blackhole blackhole) {
+        for (CharArray input : plan.inputs) {
+            plan.router.routeInto(input, thread.holder);
+            blackhole.consume(thread.holder.handler());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void route_all(ExecutionPlan plan, ThreadPlan thread) {
+        for (CharArray[] batch : plan.batches) {
+            plan.router.routeAll(batch, thread.holder, thread.sink);
+        }
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,51 @@
+package io.routekit.jmh;
+
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sequential build time of the router from the already parsed rules. Run with {@code -prof gc}
+ * to see the allocated bytes per build ({@code gc.alloc.rate.norm}).
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BuildBenchmark {
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "10000", "100000", "1000000" })
+        private int rules = 0;
+        private RouterSetup<String> setup;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            setup = new RouterSetup<String>().addMany(largeRules(rules));
+        }
+    }
+
+    @Benchmark
+    public Router<String> build(ExecutionPlan plan) {
+        return plan.setup.build();
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
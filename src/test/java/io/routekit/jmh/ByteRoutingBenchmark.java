@@ -0,0 +1,78 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the UTF-8 encoded URL (as it comes from the network): decoding into chars first vs routing the bytes directly,
+ * from a heap and a direct {@link ByteBuffer}.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class ByteRoutingBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "/post/12345/my-first-post/comments", "/user/12345", "/about" })
+        private String url = "";
+        private Router<String> router;
+        private ByteBuffer heap;
+        private ByteBuffer direct;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            router = new RouterSetup<String>()
+                    .add("/", "home")
+                    .add("/about", "about")
+                    .add("/user", "all_users")
+                    .add("/user/{id}", "user")
+                    .add("/post", "all_posts")
+                    .add("/post/{id}", "post")
+                    .add("/post/{id}/{slug}", "post")
+                    .add("/post/{id}/{slug}/comments", "post_comments")
+                    .add("/tag/{tag}", "tag")
+                    .build();
+            byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+            heap = ByteBuffer.wrap(bytes);
+            direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+    }
+
+    @Benchmark
+    public boolean route_decoded_heap(ExecutionPlan plan) {
+        CharArray input = new CharArray(StandardCharsets.UTF_8.decode(plan.heap.duplicate()));
+        return plan.router.routeInto(input, plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_bytes_heap(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.heap, plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_decoded_direct(ExecutionPlan plan) {
+        CharArray input = new CharArray(StandardCharsets.UTF_8.decode(plan.direct.duplicate()));
+        return plan.router.routeInto(input, plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_bytes_direct(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.direct, plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_bytes_array(ExecutionPlan plan) {
+        return plan.router.routeInto(new ByteArray(plan.heap), plan.holder);
+    }
+}
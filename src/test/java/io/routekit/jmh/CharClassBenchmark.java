@@ -0,0 +1,97 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The constrained variables, 20% of the inputs don't satisfy the constraint:
+ * <ul>
+ *     <li>{@code char_class}: the {@code {slug:[a-z0-9-]+}} variables (see {@link io.routekit.CharClassVariableToken}),
+ *     <li>{@code regex_check}: the plain variables checked by the handler with the precompiled {@link Pattern},
+ *     <li>{@code regex_rules}: the rules as the precompiled patterns tried one by one (the regex-based router).
+ * </ul>
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class CharClassBenchmark {
+    private static final int SAMPLES = 1 << 16;
+    private static final int RESOURCES = 50;
+    private static final Pattern SLUG = Pattern.compile("[a-z0-9-]+");
+    private static final Pattern ID = Pattern.compile("[0-9]+");
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "char_class", "regex_check", "regex_rules" })
+        private String constraint = "";
+        private Router<String> router;
+        private Pattern[] patterns;
+        private CharArray[] inputs;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            boolean charClass = constraint.equals("char_class");
+            Map<String, String> rules = new LinkedHashMap<>();
+            for (int i = 0; i < RESOURCES; i++) {
+                String prefix = "/api/v1/resource%d".formatted(i);
+                rules.put(prefix + (charClass ? "/{slug:[a-z0-9-]+}" : "/{slug}"), prefix);
+                rules.put(prefix + (charClass ? "/{slug:[a-z0-9-]+}/comments/{id:digit}" : "/{slug}/comments/{id}"),
+                          prefix + "_comment");
+            }
+            router = new RouterSetup<String>().addMany(rules).build();
+            patterns = charClass ? null : rules.keySet().stream()
+                    .map(rule -> rule.replace("{slug}", "([a-z0-9-]+)").replace("{id}", "([0-9]+)"))
+                    .map(Pattern::compile)
+                    .toArray(Pattern[]::new);
+
+            Random random = new Random(0);
+            inputs = new CharArray[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                String slug = "post-%d-%s".formatted(random.nextInt(1000), random.nextInt(5) == 0 ? "Draft" : "draft");
+                String url = "/api/v1/resource%d/%s".formatted(random.nextInt(RESOURCES), slug);
+                inputs[i] = new CharArray(random.nextBoolean() ? url : url + "/comments/" + random.nextInt(1000));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPlan {
+        private final MatchHolder<String> holder = new MatchHolder<>();
+        private int index = 0;
+    }
+
+    @Benchmark
+    public boolean route(ExecutionPlan plan, ThreadPlan thread) {
+        CharArray input = plan.inputs[thread.index++ & (SAMPLES - 1)];
+        switch (plan.constraint) {
+            case "char_class":
+                return plan.router.routeInto(input, thread.holder);
+            case "regex_check":
+                MatchHolder<String> holder = thread.holder;
+                if (!plan.router.routeInto(input, holder)) {
+                    return false;
+                }
+                return SLUG.matcher(holder.variable(0)).matches() && (holder.size() < 2 || ID.matcher(holder.variable(1)).matches());
+            default:
+                for (Pattern pattern : plan.patterns) {
+                    Matcher matcher = pattern.matcher(input);
+                    if (matcher.matches()) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the non-String {@link CharSequence} inputs: {@link StringBuilder}, heap {@link CharBuffer}
+ * and a custom sequence (like Netty {@code AsciiString}). The {@code copy_*} cases are the conversion
+ * through {@code toString().toCharArray()}, the rest route the sequences via the reusable holder.
+ * Run with {@code -prof gc} to see the allocations.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class CharSequenceRoutingBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "/post/12345/my-first-post/comments" })
+        private String url = "";
+        private Router<String> router;
+        private StringBuilder builder;
+        private CharBuffer buffer;
+        private CharSequence custom;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            router = new RouterSetup<String>()
+                    .add("/", "home")
+                    .add("/user/{id}", "user")
+                    .add("/post/{id}", "post")
+                    .add("/post/{id}/{slug}", "post")
+                    .add("/post/{id}/{slug}/comments", "post_comments")
+                    .build();
+            builder = new StringBuilder(url);
+            buffer = CharBuffer.wrap(url.toCharArray());
+            custom = new AsciiSequence(url);
+        }
+    }
+
+    @Benchmark
+    public boolean copy_string_builder(ExecutionPlan plan) {
+        return plan.router.routeInto(new CharArray(plan.builder.toString().toCharArray()), plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_string_builder(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.builder, plan.holder);
+    }
+
+    @Benchmark
+    public boolean copy_char_buffer(ExecutionPlan plan) {
+        return plan.router.routeInto(new CharArray(plan.buffer.toString().toCharArray()), plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_char_buffer(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.buffer, plan.holder);
+    }
+
+    @Benchmark
+    public boolean copy_custom_sequence(ExecutionPlan plan) {
+        return plan.router.routeInto(new CharArray(plan.custom.toString().toCharArray()), plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_custom_sequence(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.custom, plan.holder);
+    }
+
+    // A byte-backed sequence, similar to Netty `AsciiString`.
+    private record AsciiSequence(byte[] bytes) implements CharSequence {
+        AsciiSequence(String value) {
+            this(value.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(Arrays.copyOfRange(bytes, start, end));
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+}
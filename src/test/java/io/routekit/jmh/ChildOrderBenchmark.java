@@ -0,0 +1,103 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterBuilder;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the skewed (Zipfian) inputs through a wide node of const siblings next to a variable:
+ * {@code /api/<name>/{id}} and {@code /api/{name}/all}. Compares the router as built with the one rebuilt
+ * from the counted hits (see {@link Router#reorderedByHits}), which probes the hottest siblings first.
+ * The {@code count} profile only counts the hits, to see the cost of the counting.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class ChildOrderBenchmark {
+    private static final int SAMPLES = 1 << 12;
+
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "1000" })
+        private int siblings = 0;
+        @Param({ "none", "count", "hits" })
+        private String profile = "";
+        @Param({ "0.99", "1.5" })
+        private double skew = 0;
+        private Router<String> router;
+        private CharArray[] inputs;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(0);
+            String[] names = new String[siblings];
+            RouterSetup<String> setup = new RouterSetup<String>()
+                    .withBuilder(new RouterBuilder().setCountHits(!profile.equals("none")));
+            for (int i = 0; i < siblings; i++) {
+                names[i] = randomName(random) + i;
+                setup.add("/api/%s/{id}".formatted(names[i]), names[i]);
+            }
+            setup.add("/api/{name}/all", "all");
+            router = setup.build();
+
+            double[] cdf = zipfCdf(siblings, skew);
+            inputs = new CharArray[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                String name = names[sample(cdf, random.nextDouble())];
+                inputs[i] = new CharArray("/api/%s/%d".formatted(name, random.nextInt(1000000)));
+            }
+            if (profile.equals("hits")) {
+                for (CharArray input : inputs) {
+                    router.routeInto(input, holder);
+                }
+                router = router.reorderedByHits();
+            }
+        }
+
+        private CharArray nextInput() {
+            return inputs[index++ & (SAMPLES - 1)];
+        }
+    }
+
+    @Benchmark
+    public boolean route_skewed(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.nextInput(), plan.holder);
+    }
+
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double value) {
+        int index = Arrays.binarySearch(cdf, value);
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private static String randomName(Random random) {
+        char[] chars = new char[4 + random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,97 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterBuilder;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the interpreted and the compiled to bytecode state machine (see {@code RouterBuilder.setCompileToBytecode})
+ * on the {@link RouterBenchmark} rule set and on a 5k-rule set with variables.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class CompiledRouterBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "default", "5k" })
+        private String rules = "";
+        @Param({ "false", "true" })
+        private boolean compiled = false;
+        private Router<String> router;
+        private CharArray[] inputs;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, String> map = rules.equals("5k") ? largeRules() : defaultRules();
+            router = new RouterSetup<String>()
+                    .withBuilder(new RouterBuilder().setCompileToBytecode(compiled))
+                    .addMany(map)
+                    .build();
+
+            Random random = new Random(0);
+            List<String> urls = new ArrayList<>(map.keySet());
+            inputs = new CharArray[1024];
+            for (int i = 0; i < inputs.length; i++) {
+                String url = urls.get(random.nextInt(urls.size()))
+                        .replaceAll("\\{\\*[a-z]+}", "a/b/c")
+                        .replaceAll("\\{[a-z]+}", String.valueOf(random.nextInt(100000)));
+                inputs[i] = new CharArray(url);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean route(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.inputs[plan.index++ & 1023], plan.holder);
+    }
+
+    private static Map<String, String> defaultRules() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        rules.put("/", "home");
+        rules.put("/index", "index");
+        rules.put("/about", "about");
+        rules.put("/contact", "contact");
+        rules.put("/user", "all_users");
+        rules.put("/user/{id}", "user");
+        rules.put("/blog", "all_blogs");
+        rules.put("/blog/{id}", "blog");
+        rules.put("/post", "all_posts");
+        rules.put("/post/{id}", "post");
+        rules.put("/post/{id}/{slug}", "post");
+        rules.put("/post/{id}/{slug}/comments", "post_comments");
+        rules.put("/p/{id}/{*slug}", "post");
+        rules.put("/comment/{id}", "comment");
+        rules.put("/tag", "all_tags");
+        rules.put("/tag/{tag}", "tag");
+        return rules;
+    }
+
+    private static Map<String, String> largeRules() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; service < 50; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items", prefix + "_items");
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
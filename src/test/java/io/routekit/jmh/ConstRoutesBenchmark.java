@@ -0,0 +1,74 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the constant URLs, which are resolved by the quick-match index: hits, misses of the same length
+ * and misses of a length that no rule has.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class ConstRoutesBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "16", "50000" })
+        private int constants = 0;
+        private Router<String> router;
+        private CharArray[] hits;
+        private CharArray[] misses;
+        private CharArray[] longMisses;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(0);
+            RouterSetup<String> setup = new RouterSetup<>();
+            String[] urls = new String[constants];
+            for (int i = 0; i < constants; i++) {
+                urls[i] = "/page/%08x".formatted(i * 7919);
+                setup.add(urls[i], urls[i]);
+            }
+            router = setup.build();
+
+            hits = new CharArray[1024];
+            misses = new CharArray[1024];
+            longMisses = new CharArray[1024];
+            for (int i = 0; i < hits.length; i++) {
+                String url = urls[random.nextInt(constants)];
+                hits[i] = new CharArray(url);
+                misses[i] = new CharArray(url.replace("/page/", "/pagE/"));
+                longMisses[i] = new CharArray(url + "/index.html");
+            }
+        }
+
+        private int next() {
+            return index++ & 1023;
+        }
+    }
+
+    @Benchmark
+    public boolean route_const_hit(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.hits[plan.next()], plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_const_miss(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.misses[plan.next()], plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_const_miss_length(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.longMisses[plan.next()], plan.holder);
+    }
+}
@@ -0,0 +1,64 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes through a node with a large number of const siblings: {@code /api/<name>/{id}}.
+ * The cost of the lookup is expected to stay (almost) flat as the fan-out grows.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class FanOutBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "10", "200", "1000", "10000" })
+        private int siblings = 0;
+        private Router<String> router;
+        private CharArray[] inputs;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(0);
+            String[] names = new String[siblings];
+            RouterSetup<String> setup = new RouterSetup<>();
+            for (int i = 0; i < siblings; i++) {
+                names[i] = randomName(random) + i;
+                setup.add("/api/%s/{id}".formatted(names[i]), names[i]);
+            }
+            router = setup.build();
+            inputs = new CharArray[64];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new CharArray("/api/%s/%d".formatted(names[random.nextInt(siblings)], random.nextInt()));
+            }
+        }
+
+        private CharArray nextInput() {
+            return inputs[index++ & (inputs.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public boolean route_wide_node(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.nextInput(), plan.holder);
+    }
+
+    private static String randomName(Random random) {
+        char[] chars = new char[4 + random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
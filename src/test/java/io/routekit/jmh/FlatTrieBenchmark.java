@@ -0,0 +1,78 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterBuilder;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the node graph and the flattened trie (see {@code RouterBuilder.setFlattenTrie}) on the large rule sets
+ * with random inputs (the cache misses dominate). The retained heap size of each router is printed on setup.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class FlatTrieBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "10000", "100000" })
+        private int rules = 0;
+        @Param({ "false", "true" })
+        private boolean flat = false;
+        private Router<String> router;
+        private CharArray[] inputs;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws ClassNotFoundException {
+            Map<String, String> map = largeRules(rules);
+            router = new RouterSetup<String>()
+                    .withBuilder(new RouterBuilder().setFlattenTrie(flat))
+                    .addMany(map)
+                    .build();
+            System.out.printf("%nRetained size (rules=%d, flat=%b): %,d bytes%n", rules, flat,
+                              HeapFootprint.retainedSize(router, Class.forName("io.routekit.RouterSetup$Rule")));
+
+            Random random = new Random(0);
+            List<String> urls = new ArrayList<>(map.keySet());
+            inputs = new CharArray[4096];
+            for (int i = 0; i < inputs.length; i++) {
+                String url = urls.get(random.nextInt(urls.size()))
+                        .replaceAll("\\{\\*[a-z]+}", "a/b/c")
+                        .replaceAll("\\{[a-z]+}", String.valueOf(random.nextInt(100000)));
+                inputs[i] = new CharArray(url);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean route(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.inputs[plan.index++ & 4095], plan.holder);
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items", prefix + "_items");
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
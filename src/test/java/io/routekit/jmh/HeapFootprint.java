@@ -0,0 +1,95 @@
+package io.routekit.jmh;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A rough JOL-style estimate of the retained heap size of an object graph: walks the instance fields reflectively
+ * and sums up the shallow sizes, assuming the 64-bit JVM with the compressed oops and class pointers
+ * (12-byte object header, 16-byte array header, 8-byte alignment).
+ * <p>
+ * The walk stops at the objects of the {@code stopAt} classes (e.g. the rules and the handlers, which are shared
+ * by all the representations) and at the JDK classes which can't be inspected (only the shallow size is counted).
+ */
+public class HeapFootprint {
+    private static final int HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    public static long retainedSize(Object root, Class<?>... stopAt) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> queue = new ArrayDeque<>();
+        queue.add(root);
+        seen.add(root);
+        long total = 0;
+        while (!queue.isEmpty()) {
+            Object object = queue.poll();
+            Class<?> klass = object.getClass();
+            if (klass.isArray()) {
+                Class<?> component = klass.getComponentType();
+                int length = Array.getLength(object);
+                total += align(ARRAY_HEADER + (long) length * sizeOf(component));
+                if (!component.isPrimitive()) {
+                    for (int i = 0; i < length; i++) {
+                        follow(Array.get(object, i), seen, queue, stopAt);
+                    }
+                }
+                continue;
+            }
+            long size = HEADER;
+            for (Class<?> c = klass; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    size += sizeOf(field.getType());
+                    if (!field.getType().isPrimitive() && field.trySetAccessible()) {
+                        try {
+                            follow(field.get(object), seen, queue, stopAt);
+                        } catch (IllegalAccessException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+            }
+            total += align(size);
+        }
+        return total;
+    }
+
+    private static void follow(Object value, Set<Object> seen, Deque<Object> queue, Class<?>[] stopAt) {
+        if (value == null || !seen.add(value)) {
+            return;
+        }
+        for (Class<?> klass : stopAt) {
+            if (klass.isInstance(value)) {
+                return;
+            }
+        }
+        queue.add(value);
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == char.class || type == short.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
@@ -0,0 +1,87 @@
+package io.routekit.jmh;
+
+import io.routekit.IncrementalRouterSetup;
+import io.routekit.Query;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.SimpleQueryParser;
+import io.routekit.StringQuery;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of adding a single rule to a large router: the full rebuild from the already parsed rules
+ * vs {@link IncrementalRouterSetup}. The added rule is removed after each invocation (not measured),
+ * so the size stays the same.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class IncrementalBuildBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "1000", "10000", "100000" })
+        private int rules = 0;
+        private RouterSetup<String> full;
+        private IncrementalRouterSetup<String> incremental;
+        private Query[] added;
+        private int index = 0;
+        private Query last;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, String> map = largeRules(rules);
+            full = new RouterSetup<String>().addMany(map).add("/api/v1/service0/resource0/{id}/new", "new");
+            incremental = new RouterSetup<String>().addMany(map).toIncremental();
+
+            Random random = new Random(0);
+            int services = rules / 100;
+            added = new Query[1024];
+            for (int i = 0; i < added.length; i++) {
+                int service = random.nextInt(services);
+                String query = "/api/v%d/service%d/resource%d/{id}/new%d".formatted(service % 3 + 1, service, random.nextInt(25), i);
+                added[i] = new StringQuery(query, SimpleQueryParser.DEFAULT.parse(query));
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            if (last != null) {
+                incremental.remove(last);
+                last = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public Router<String> full_rebuild(ExecutionPlan plan) {
+        return plan.full.build();
+    }
+
+    @Benchmark
+    public Router<String> incremental_insert(ExecutionPlan plan) {
+        Query query = plan.added[plan.index++ & 1023];
+        plan.last = query;
+        return plan.incremental.add(query, "new").build();
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items", prefix + "_items");
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
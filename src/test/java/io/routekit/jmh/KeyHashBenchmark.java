@@ -0,0 +1,88 @@
+package io.routekit.jmh;
+
+import io.routekit.CachingRouter;
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The routing of the long constant paths (about 150 chars) against 10k constant rules, where the hash of the input
+ * dominates the quick-match lookup. The {@code cached} inputs are the same immutable arrays (the hash is computed once),
+ * the {@code fresh} ones are the strings copied into the holder's view on every call (the hash is computed once
+ * per call and shared by the result cache and the constant index, see {@link CachingRouter}).
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class KeyHashBenchmark {
+    private static final int SAMPLES = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "cached", "fresh" })
+        private String input = "";
+        @Param({ "none", "misses" })
+        private String cache = "";
+        private Router<String> router;
+        private CachingRouter<String> caching;
+        private CharArray[] arrays;
+        private String[] strings;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, String> rules = longConstants(10000);
+            router = new RouterSetup<String>().addMany(rules).build();
+            // Only the misses are cached: the constant inputs go through the lookup and the constant index
+            caching = cache.equals("misses") ? new CachingRouter<>(router, 1 << 20, CachingRouter.Mode.MISSES) : null;
+
+            List<String> keys = new ArrayList<>(rules.keySet());
+            Random random = new Random(0);
+            arrays = new CharArray[SAMPLES];
+            strings = new String[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                strings[i] = keys.get(random.nextInt(keys.size()));
+                arrays[i] = new CharArray(strings[i]);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPlan {
+        private final MatchHolder<String> holder = new MatchHolder<>();
+        private int index = 0;
+    }
+
+    @Benchmark
+    public boolean route(ExecutionPlan plan, ThreadPlan thread) {
+        int index = thread.index++ & (SAMPLES - 1);
+        if (plan.input.equals("cached")) {
+            CharArray input = plan.arrays[index];
+            return plan.caching != null ? plan.caching.routeInto(input, thread.holder) : plan.router.routeInto(input, thread.holder);
+        }
+        String input = plan.strings[index];
+        return plan.caching != null ? plan.caching.routeInto(input, thread.holder) : plan.router.routeInto(input, thread.holder);
+    }
+
+    private static Map<String, String> longConstants(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/organizations/default/projects/service%d/environments/production".formatted(service % 3 + 1, service);
+                String rule = prefix + "/resources/resource%d/configuration/settings/advanced".formatted(resource);
+                rules.put(rule, rule);
+            }
+        }
+        return rules;
+    }
+}
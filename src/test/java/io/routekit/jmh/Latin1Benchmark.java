@@ -0,0 +1,116 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.ByteArray;
+import io.routekit.util.CharArray;
+import io.routekit.util.MutableByteArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ASCII URLs of the realistic lengths as the UTF-16 {@link CharArray} vs the compact {@link ByteArray}
+ * (8 bytes at a time, see {@code Swar}): the search of an absent char (the full scan), the hash and the routing.
+ * The {@code *_string} benchmarks include the copy of the {@link String} into the chars or the bytes scratch.
+ * The fork runs without the vector module, so the chars are scanned by the scalar loops.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class Latin1Benchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "32", "64", "160" })
+        private int length = 0;
+        private Router<String> router;
+        private String url;
+        private CharArray chars;
+        private ByteArray bytes;
+        private byte[] scratch;
+        private final MutableByteArray view = new MutableByteArray(new byte[0]);
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            router = new RouterSetup<String>().addMany(largeRules(10000)).build();
+            // `/{id}` or `/{id}/files/{*path}`
+            StringBuilder builder = new StringBuilder("/api/v1/service0/resource0/12345");
+            if (builder.length() < length) {
+                builder.append("/files");
+                for (int i = 0; builder.length() < length; i++) {
+                    builder.append("/path").append(i);
+                }
+                builder.setLength(length);
+            }
+            url = builder.toString();
+            chars = new CharArray(url);
+            bytes = new ByteArray(url.getBytes(StandardCharsets.US_ASCII));
+            scratch = new byte[1024];
+        }
+    }
+
+    @Benchmark
+    public int index_of_chars(ExecutionPlan plan) {
+        return plan.chars.indexOf('?');
+    }
+
+    @Benchmark
+    public int index_of_bytes(ExecutionPlan plan) {
+        return plan.bytes.indexOf((byte) '?');
+    }
+
+    @Benchmark
+    public int hash_chars(ExecutionPlan plan) {
+        return plan.chars.hashCode();
+    }
+
+    @Benchmark
+    public int hash_bytes(ExecutionPlan plan) {
+        return plan.bytes.hashCode();
+    }
+
+    @Benchmark
+    public boolean route_chars(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.chars, plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_bytes(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.bytes, plan.holder);
+    }
+
+    @Benchmark
+    public boolean route_chars_string(ExecutionPlan plan) {
+        return plan.router.routeInto((CharSequence) plan.url, plan.holder);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public boolean route_bytes_string(ExecutionPlan plan) {
+        String url = plan.url;
+        url.getBytes(0, url.length(), plan.scratch, 0);  // the low bytes of the chars: same as Latin-1
+        plan.view.reset(plan.scratch, 0, url.length());
+        return plan.view.isAscii() && plan.router.routeInto(plan.view, plan.holder);
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,105 @@
+package io.routekit.jmh;
+
+import io.routekit.CachingRouter;
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterBuilder;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mixed traffic where 30% of the inputs are misses: the scanner paths (rejected by the first chars)
+ * and the near misses deep in the trie. Compares the plain router with the dead prefix filter
+ * (see {@link RouterBuilder#setRejectDeadPrefixes}) and the cached misses (see {@link CachingRouter}).
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class NegativeCacheBenchmark {
+    private static final int SAMPLES = 1 << 16;
+    private static final List<String> SCANNER = List.of(
+            "/.env", "/.git/config", "/wp-admin/setup-config.php", "/wp-login.php", "/phpmyadmin/index.php",
+            "/cgi-bin/luci", "/actuator/health", "/vendor/phpunit/phpunit/src/Util/PHP/eval-stdin.php",
+            "/solr/admin/info/system", "/owa/auth/logon.aspx", "/.aws/credentials", "/server-status"
+    );
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "none", "dead_prefix", "miss_cache", "both" })
+        private String filter = "";
+        private Router<String> router;
+        private CachingRouter<String> caching;
+        private CharArray[] inputs;
+        private CharArray[] scanner;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, String> rules = largeRules(10000);
+            boolean deadPrefix = filter.equals("dead_prefix") || filter.equals("both");
+            boolean missCache = filter.equals("miss_cache") || filter.equals("both");
+            router = new RouterSetup<String>()
+                    .withBuilder(new RouterBuilder().setRejectDeadPrefixes(deadPrefix))
+                    .addMany(rules)
+                    .build();
+            caching = missCache ? new CachingRouter<>(router, 4 << 20, CachingRouter.Mode.MISSES) : null;
+
+            List<String> templates = rules.keySet().stream().filter(rule -> rule.contains("{")).toList();
+            Random random = new Random(0);
+            inputs = new CharArray[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                String template = templates.get(random.nextInt(templates.size()));
+                String url = template.replaceAll("\\{\\*?[a-z]+}", String.valueOf(random.nextInt(1000)));
+                int kind = random.nextInt(100);
+                if (kind < 20) {
+                    url = SCANNER.get(random.nextInt(SCANNER.size()));
+                } else if (kind < 30) {
+                    url = url + "/unknown";  // matches up to the last variable
+                }
+                inputs[i] = new CharArray(url);
+            }
+            scanner = SCANNER.stream().map(CharArray::new).toArray(CharArray[]::new);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPlan {
+        private final MatchHolder<String> holder = new MatchHolder<>();
+        private int index = 0;
+    }
+
+    @Benchmark
+    public boolean route(ExecutionPlan plan, ThreadPlan thread) {
+        CharArray input = plan.inputs[thread.index++ & (SAMPLES - 1)];
+        return plan.caching != null ? plan.caching.routeInto(input, thread.holder) : plan.router.routeInto(input, thread.holder);
+    }
+
+    // Only the scanner inputs: the cost of a single rejected request.
+    @Benchmark
+    public boolean route_scanner(ExecutionPlan plan, ThreadPlan thread) {
+        CharArray input = plan.scanner[thread.index++ % plan.scanner.length];
+        return plan.caching != null ? plan.caching.routeInto(input, thread.holder) : plan.router.routeInto(input, thread.holder);
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
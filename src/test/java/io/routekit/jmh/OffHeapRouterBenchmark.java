@@ -0,0 +1,115 @@
+package io.routekit.jmh;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.routekit.MatchHolder;
+import io.routekit.OffHeapRouter;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the on-heap and the off-heap routers (see {@code RouterBuilder.buildOffHeapRouter}) on a large rule set
+ * (the constant and the templated rules), while allocating garbage to keep the GC busy.
+ * The retained heap size of the router, the p99 of the GC pauses and the full GC pause are printed on teardown.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class OffHeapRouterBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "200000" })
+        private int rules = 0;
+        @Param({ "false", "true" })
+        private boolean offHeap = false;
+        private Router<String> router;
+        private CharArray[] inputs;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+        private final List<Long> pauses = new ArrayList<>();
+        private final NotificationListener listener = (notification, handback) -> {
+            if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                CompositeData data = (CompositeData) notification.getUserData();
+                long duration = GarbageCollectionNotificationInfo.from(data).getGcInfo().getDuration();
+                synchronized (pauses) {
+                    pauses.add(duration);
+                }
+            }
+        };
+
+        @Setup(Level.Trial)
+        public void setUp() throws ClassNotFoundException {
+            Map<String, String> map = largeRules(rules);
+            RouterSetup<String> setup = new RouterSetup<String>().addMany(map);
+            router = offHeap ? setup.buildOffHeap() : setup.build();
+            System.out.printf("%nRetained heap size (offHeap=%b): %,d bytes%n", offHeap,
+                              HeapFootprint.retainedSize(router, Class.forName("io.routekit.RouterSetup$Rule")));
+
+            Random random = new Random(0);
+            List<String> urls = new ArrayList<>(map.keySet());
+            inputs = new CharArray[4096];
+            for (int i = 0; i < inputs.length; i++) {
+                String url = urls.get(random.nextInt(urls.size())).replaceAll("\\{[a-z]+}", "12345");
+                inputs[i] = new CharArray(url);
+            }
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) bean).addNotificationListener(listener, null, null);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) bean).removeNotificationListener(listener);
+            }
+            long start = System.nanoTime();
+            System.gc();
+            long fullGc = System.nanoTime() - start;
+            synchronized (pauses) {
+                List<Long> sorted = pauses.stream().sorted().toList();
+                long p99 = sorted.isEmpty() ? 0 : sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+                System.out.printf("%nGC pauses (offHeap=%b): count=%d, p99=%d ms, full GC=%d ms%n",
+                                  offHeap, sorted.size(), p99, TimeUnit.NANOSECONDS.toMillis(fullGc));
+            }
+            if (router instanceof OffHeapRouter<String> closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public void route_with_garbage(ExecutionPlan plan, Blackhole blackhole) {
+        blackhole.consume(plan.router.routeInto(plan.inputs[plan.index++ & 4095], plan.holder));
+        blackhole.consume(new byte[256]);
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/count", prefix + "_count");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+            }
+        }
+        return rules;
+    }
+}
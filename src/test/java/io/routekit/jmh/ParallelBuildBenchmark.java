@@ -0,0 +1,66 @@
+package io.routekit.jmh;
+
+import io.routekit.Router;
+import io.routekit.RouterBuilder;
+import io.routekit.RouterSetup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The build time of the large router from the already parsed rules: the sequential build ({@code threads=0})
+ * vs the parallel build (see {@code RouterBuilder.setBuildPool}) in the pool of the given size.
+ */
+@Fork(value = 1, warmups = 1, jvmArgsAppend = { "-Xmx8g" })
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParallelBuildBenchmark {
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "100000", "500000" })
+        private int rules = 0;
+        @Param({ "0", "1", "2", "4", "8" })
+        private int threads = 0;
+        private ForkJoinPool pool;
+        private RouterSetup<String> setup;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pool = threads > 0 ? new ForkJoinPool(threads) : null;
+            setup = new RouterSetup<String>()
+                    .withBuilder(new RouterBuilder().setBuildPool(pool))
+                    .addMany(largeRules(rules));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Benchmark
+    public Router<String> build(ExecutionPlan plan) {
+        return plan.setup.build();
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
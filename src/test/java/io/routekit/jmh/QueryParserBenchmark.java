@@ -0,0 +1,41 @@
+package io.routekit.jmh;
+
+import io.routekit.SimpleQueryParser;
+import io.routekit.Token;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the typical queries (same as in {@code SimpleQueryParserTest}). Run with {@code -prof gc}
+ * to see the allocated bytes per parse: besides the tokens, nothing is expected to be allocated.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class QueryParserBenchmark {
+    private static final CharArray CONST = new CharArray("/foo/bar/baz");
+    private static final CharArray VARIABLES = new CharArray("/{foo}/{bar}/{baz}");
+    private static final CharArray MIXED = new CharArray("/foo/{xxx}/{y}/{*z}");
+
+    @Benchmark
+    public void parse_const(Blackhole blackhole) {
+        blackhole.consume(SimpleQueryParser.DEFAULT.parse(CONST));
+    }
+
+    @Benchmark
+    public void parse_variables(Blackhole blackhole) {
+        blackhole.consume(SimpleQueryParser.DEFAULT.parse(VARIABLES));
+    }
+
+    @Benchmark
+    public void parse_mixed(Blackhole blackhole) {
+        for (Token token : SimpleQueryParser.DEFAULT.parse(MIXED)) {
+            blackhole.consume(token);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterBuilder;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.ref.Reference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the open-addressing and the minimal perfect hash quick-match indexes on a large static route set:
+ * the build time and the lookup time. The heap footprint is reported by {@link #main(String[])}.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class QuickMatchIndexBenchmark {
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        @Param({ "400000" })
+        private int constants = 0;
+        @Param({ "false", "true" })
+        private boolean perfectHash = false;
+        private Map<String, String> rules;
+        private Router<String> router;
+        private CharArray[] inputs;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            rules = constRules(constants);
+            router = buildRouter(rules, perfectHash);
+            Random random = new Random(0);
+            String[] urls = rules.keySet().toArray(String[]::new);
+            inputs = new CharArray[1024];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new CharArray(urls[random.nextInt(urls.length)]);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Router<String> build(ExecutionPlan plan) {
+        return buildRouter(plan.rules, plan.perfectHash);
+    }
+
+    @Benchmark
+    public boolean lookup(ExecutionPlan plan) {
+        return plan.router.routeInto(plan.inputs[plan.index++ & 1023], plan.holder);
+    }
+
+    private static Map<String, String> constRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            rules.put("/seo/%d/landing-page-%x".formatted(i % 1000, i * 7919L), "page");
+        }
+        return rules;
+    }
+
+    private static Router<String> buildRouter(Map<String, String> rules, boolean perfectHash) {
+        return new RouterSetup<String>()
+                .withBuilder(new RouterBuilder().setPerfectHashForConst(perfectHash))
+                .addMany(rules)
+                .build();
+    }
+
+    // Heap footprint: the retained heap of the router (rules excluded), measured as a used heap delta.
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        Map<String, String> rules = constRules(size);
+        for (boolean perfectHash : new boolean[] { false, true }) {
+            reportFootprint(rules, perfectHash);
+        }
+    }
+
+    private static void reportFootprint(Map<String, String> rules, boolean perfectHash) {
+        RouterSetup<String> setup = new RouterSetup<String>()
+                .withBuilder(new RouterBuilder().setPerfectHashForConst(perfectHash))
+                .addMany(rules);
+        long before = usedHeap();
+        long start = System.nanoTime();
+        Router<String> router = setup.build();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long footprint = usedHeap() - before;
+        System.out.printf("perfectHash=%-5s rules=%d build=%d ms heap=%.1f MB%n",
+                          perfectHash, rules.size(), millis, footprint / 1024.0 / 1024.0);
+        Reference.reachabilityFence(router);
+        Reference.reachabilityFence(setup);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
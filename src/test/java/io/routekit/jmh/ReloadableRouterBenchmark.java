@@ -0,0 +1,125 @@
+package io.routekit.jmh;
+
+import io.routekit.MatchHolder;
+import io.routekit.ReloadableRouter;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The routing from several threads while the rules are reloaded in the background every millisecond:
+ * the {@code synchronized} holder vs {@link ReloadableRouter} without and with the in-flight draining
+ * (the release callback is a no-op, the two routers are published in turn).
+ */
+@Fork(value = 1, warmups = 1)
+@Threads(4)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class ReloadableRouterBenchmark {
+    @State(Scope.Benchmark)
+    public static class Holder {
+        @Param({ "synchronized", "volatile", "draining" })
+        private String holder = "";
+        private SynchronizedHolder<String> synchronizedHolder;
+        private ReloadableRouter<String> reloadable;
+        private List<CharArray> urls;
+        private Thread reloader;
+        private volatile boolean done = false;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, String> map = largeRules(10000);
+            Router<String> first = new RouterSetup<String>().addMany(map).build();
+            Router<String> second = new RouterSetup<String>().addMany(map).build();
+            synchronizedHolder = new SynchronizedHolder<>(first);
+            reloadable = holder.equals("draining") ? new ReloadableRouter<>(first, router -> {}) : new ReloadableRouter<>(first);
+            urls = map.keySet().stream().map(url -> new CharArray(url.replaceAll("\\{[a-z]+}", "12345"))).toList();
+
+            reloader = new Thread(() -> {
+                for (long i = 0; !done; i++) {
+                    Router<String> next = i % 2 == 0 ? second : first;
+                    if (holder.equals("synchronized")) {
+                        synchronizedHolder.set(next);
+                    } else {
+                        reloadable.swap(next);
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            });
+            reloader.setDaemon(true);
+            reloader.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            done = true;
+            reloader.join();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+        private CharArray[] inputs;
+        private int index = 0;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp(Holder plan) {
+            Random random = new Random(Thread.currentThread().getId());
+            inputs = new CharArray[4096];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = plan.urls.get(random.nextInt(plan.urls.size()));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean route(Holder plan, ExecutionPlan thread) {
+        CharArray input = thread.inputs[thread.index++ & 4095];
+        if (plan.holder.equals("synchronized")) {
+            return plan.synchronizedHolder.get().routeInto(input, thread.holder);
+        }
+        return plan.reloadable.routeInto(input, thread.holder);
+    }
+
+    // The baseline: the holder which is typically written by hand.
+    private static class SynchronizedHolder<T> {
+        private Router<T> router;
+
+        SynchronizedHolder(Router<T> router) {
+            this.router = router;
+        }
+
+        synchronized Router<T> get() {
+            return router;
+        }
+
+        synchronized void set(Router<T> router) {
+            this.router = router;
+        }
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
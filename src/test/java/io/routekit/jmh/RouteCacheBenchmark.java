@@ -0,0 +1,119 @@
+package io.routekit.jmh;
+
+import io.routekit.CachingRouter;
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The routing of the concrete URLs drawn from the Zipfian distribution (a few hot URLs make most of the requests)
+ * without the cache vs with {@link CachingRouter} of the given budget. The hit rate is printed at the end of the trial.
+ * With the skew 0.99 over 1M URLs, the top 1% of the URLs make about 60% of the requests.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class RouteCacheBenchmark {
+    private static final int SAMPLES = 1 << 20;
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "none", "clock" })
+        private String cache = "";
+        @Param({ "1", "16" })
+        private int budgetMb = 0;
+        @Param({ "0.99" })
+        private double skew = 0;
+        // The number of the distinct URLs: with many, both the trie and the cache are bound by the memory access
+        @Param({ "10000", "1000000" })
+        private int urls = 0;
+        private Router<String> router;
+        private CachingRouter<String> caching;
+        private CharArray[] inputs;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, String> rules = largeRules(10000);
+            router = new RouterSetup<String>().addMany(rules).build();
+            caching = cache.equals("clock") ? new CachingRouter<>(router, budgetMb << 20) : null;
+
+            List<String> templates = rules.keySet().stream().filter(rule -> rule.contains("{")).toList();
+            Random random = new Random(0);
+            List<CharArray> distinct = new ArrayList<>(urls);
+            for (int i = 0; i < urls; i++) {
+                String template = templates.get(random.nextInt(templates.size()));
+                distinct.add(new CharArray(template.replaceAll("\\{\\*?[a-z]+}", String.valueOf(random.nextInt(1000000)))));
+            }
+            double[] cdf = zipfCdf(urls, skew);
+            inputs = new CharArray[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                inputs[i] = distinct.get(sample(cdf, random.nextDouble()));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (caching != null) {
+                double rate = 100.0 * caching.hitCount() / (caching.hitCount() + caching.missCount());
+                System.out.printf("%nHit rate: %.1f%%, %d entries, %d bytes%n", rate, caching.size(), caching.estimatedBytes());
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPlan {
+        private final MatchHolder<String> holder = new MatchHolder<>();
+        private int index = 0;
+    }
+
+    @Benchmark
+    public boolean route(ExecutionPlan plan, ThreadPlan thread) {
+        CharArray input = plan.inputs[thread.index++ & (SAMPLES - 1)];
+        return plan.caching != null ? plan.caching.routeInto(input, thread.holder) : plan.router.routeInto(input, thread.holder);
+    }
+
+    // The cumulative probabilities of the ranks 1..n with the weights 1 / rank^skew.
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double value) {
+        int index = Arrays.binarySearch(cdf, value);
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
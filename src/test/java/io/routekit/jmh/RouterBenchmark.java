@@ -1,8 +1,14 @@
 package io.routekit.jmh;
 
+import io.routekit.MatchHolder;
 import io.routekit.Router;
 import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.util.concurrent.TimeUnit;
 
@@ -20,27 +26,45 @@ public class RouterBenchmark {
 
         @Setup(Level.Invocation)
         public void setUp() {
-            router = new RouterSetup<String>()
-                    .add("/", "home")
-                    .add("/index", "index")
-                    .add("/about", "about")
-                    .add("/contact", "contact")
-                    .add("/user", "all_users")
-                    .add("/user/{id}", "user")
-                    .add("/blog", "all_blogs")
-                    .add("/blog/{id}", "blog")
-                    .add("/post", "all_posts")
-                    .add("/post/{id}", "post")
-                    .add("/post/{id}/{slug}", "post")
-                    .add("/post/{id}/{slug}/comments", "post_comments")
-                    .add("/p/{id}/{*slug}", "post")
-                    .add("/comment/{id}", "comment")
-                    .add("/tag", "all_tags")
-                    .add("/tag/{tag}", "tag")
-                    .build();
+            router = newRouter();
         }
     }
 
+    // Built once per trial, so that `-prof gc` reports only the routing allocations.
+    @State(Scope.Thread)
+    public static class AllocationPlan {
+        @Param({ "1000" })
+        private int iterations = 0;
+        private Router<String> router;
+        private final MatchHolder<String> holder = new MatchHolder<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            router = newRouter();
+        }
+    }
+
+    private static Router<String> newRouter() {
+        return new RouterSetup<String>()
+                .add("/", "home")
+                .add("/index", "index")
+                .add("/about", "about")
+                .add("/contact", "contact")
+                .add("/user", "all_users")
+                .add("/user/{id}", "user")
+                .add("/blog", "all_blogs")
+                .add("/blog/{id}", "blog")
+                .add("/post", "all_posts")
+                .add("/post/{id}", "post")
+                .add("/post/{id}/{slug}", "post")
+                .add("/post/{id}/{slug}/comments", "post_comments")
+                .add("/p/{id}/{*slug}", "post")
+                .add("/comment/{id}", "comment")
+                .add("/tag", "all_tags")
+                .add("/tag/{tag}", "tag")
+                .build();
+    }
+
     @Benchmark
     public void route_home(ExecutionPlan plan) {
         for (int i = 0; i < plan.iterations; i++) {
@@ -89,4 +113,56 @@ public class RouterBenchmark {
             plan.router.routeOrNull("/post/12345/java-microbenchmark-harness/comments");
         }
     }
+
+    // Allocation-free routing: expected to report ~0 B/op with `-prof gc`.
+
+    private static final CharArray USER = new CharArray("/user/123456");
+    private static final CharArray POST_SLUG = new CharArray("/post/12345/java-microbenchmark-harness");
+    private static final CharArray POST_WILDCARD_SLUG = new CharArray("/p/12345/java-microbenchmark-harness");
+
+    @Benchmark
+    public void route_into_user(AllocationPlan plan) {
+        for (int i = 0; i < plan.iterations; i++) {
+            plan.router.routeInto(USER, plan.holder);
+        }
+    }
+
+    @Benchmark
+    public void route_into_post_slug(AllocationPlan plan) {
+        for (int i = 0; i < plan.iterations; i++) {
+            plan.router.routeInto(POST_SLUG, plan.holder);
+        }
+    }
+
+    @Benchmark
+    public void route_into_post_wildcard_slug(AllocationPlan plan) {
+        for (int i = 0; i < plan.iterations; i++) {
+            plan.router.routeInto(POST_WILDCARD_SLUG, plan.holder);
+        }
+    }
+
+    // The convenience calls: the scratch is thread-local, only the `Match` result is allocated.
+
+    @Benchmark
+    public void route_or_null_user(AllocationPlan plan) {
+        for (int i = 0; i < plan.iterations; i++) {
+            plan.router.routeOrNull("/user/123456");
+        }
+    }
+
+    @Benchmark
+    public void route_or_null_post_slug(AllocationPlan plan) {
+        for (int i = 0; i < plan.iterations; i++) {
+            plan.router.routeOrNull("/post/12345/java-microbenchmark-harness");
+        }
+    }
+
+    // Same as `-prof gc`: compares `gc.alloc.rate.norm` of `routeOrNull` vs `routeInto`.
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RouterBenchmark.class.getSimpleName() + ".route_(into_|or_null_)?(user|post_slug|post_wildcard_slug)$")
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
 }
@@ -0,0 +1,73 @@
+package io.routekit.jmh;
+
+import io.routekit.OffHeapRouter;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.RouterSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The startup cost: parsing the rules and building the router vs loading it from the snapshot
+ * (see {@link RouterSnapshot}), which is already in the page cache.
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SnapshotBenchmark {
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "10000", "100000" })
+        private int rules = 0;
+        private Map<String, String> map;
+        private Path path;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            map = largeRules(rules);
+            path = Files.createTempFile("router", ".snapshot");
+            RouterSnapshot.write(new RouterSetup<String>().addMany(map), Function.identity(), path);
+            System.out.printf("%nSnapshot size (rules=%d): %,d bytes%n", rules, Files.size(path));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Benchmark
+    public Router<String> parse_and_build(ExecutionPlan plan) {
+        return new RouterSetup<String>().addMany(plan.map).build();
+    }
+
+    @Benchmark
+    public Router<String> load_snapshot(ExecutionPlan plan) throws IOException {
+        OffHeapRouter<String> router = RouterSnapshot.load(plan.path, Function.identity());
+        router.close();
+        return router;
+    }
+
+    private static Map<String, String> largeRules(int size) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (int service = 0; rules.size() < size; service++) {
+            for (int resource = 0; resource < 25; resource++) {
+                String prefix = "/api/v%d/service%d/resource%d".formatted(service % 3 + 1, service, resource);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + "/{id}", prefix);
+                rules.put(prefix + "/{id}/items/{item}", prefix + "_item");
+                rules.put(prefix + "/{id}/files/{*path}", prefix + "_files");
+            }
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,89 @@
+package io.routekit.jmh;
+
+import io.routekit.Match;
+import io.routekit.MatchHolder;
+import io.routekit.Router;
+import io.routekit.RouterSetup;
+import io.routekit.util.CharArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The routing plus the access to the numeric id: the {@code string} rules have the plain variables, which are parsed
+ * from the string by the handler (the usual {@code Long.parseLong(match.variables().get("id").toString())}),
+ * the {@code typed} rules have the {@code {id:long}} variables, which are validated during the matching and parsed
+ * into the holder (see {@link io.routekit.TypedVariableToken}).
+ */
+@Fork(value = 1, warmups = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class TypedVariableBenchmark {
+    private static final int SAMPLES = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "string", "typed" })
+        private String variables = "";
+        private boolean typed;
+        private Router<String> router;
+        private CharArray[] inputs;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            typed = variables.equals("typed");
+            Map<String, String> rules = new LinkedHashMap<>();
+            for (int i = 0; i < 100; i++) {
+                String prefix = "/api/v1/resource%d".formatted(i);
+                rules.put(prefix, prefix + "_all");
+                rules.put(prefix + (typed ? "/{id:long}" : "/{id}"), prefix);
+                rules.put(prefix + (typed ? "/{id:long}/items/{item:int}" : "/{id}/items/{item}"), prefix + "_item");
+            }
+            router = new RouterSetup<String>().addMany(rules).build();
+
+            Random random = new Random(0);
+            inputs = new CharArray[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                String prefix = "/api/v1/resource%d/%d".formatted(random.nextInt(100), random.nextInt(Integer.MAX_VALUE));
+                inputs[i] = new CharArray(random.nextBoolean() ? prefix : prefix + "/items/" + random.nextInt(1000));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPlan {
+        private final MatchHolder<String> holder = new MatchHolder<>();
+        private int index = 0;
+    }
+
+    @Benchmark
+    public long holder(ExecutionPlan plan, ThreadPlan thread) {
+        CharArray input = plan.inputs[thread.index++ & (SAMPLES - 1)];
+        MatchHolder<String> holder = thread.holder;
+        if (!plan.router.routeInto(input, holder)) {
+            return -1;
+        }
+        if (plan.typed) {
+            return holder.longValue(0);
+        }
+        return Long.parseLong(holder.variable(0).toString());
+    }
+
+    @Benchmark
+    public long match(ExecutionPlan plan, ThreadPlan thread) {
+        CharArray input = plan.inputs[thread.index++ & (SAMPLES - 1)];
+        Match<String> match = plan.router.routeOrNull(input);
+        if (match == null) {
+            return -1;
+        }
+        if (plan.typed) {
+            return match.longValue("id");
+        }
+        return Long.parseLong(match.variables().get("id").toString());
+    }
+}
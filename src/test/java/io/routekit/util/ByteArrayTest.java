@@ -0,0 +1,135 @@
+package io.routekit.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ByteArrayTest {
+    @Test
+    public void create_empty_string() {
+        ByteArray array = new ByteArray("");
+        Assertions.assertEquals(array.start(), 0);
+        Assertions.assertEquals(array.end(), 0);
+        Assertions.assertEquals(array.length(), 0);
+    }
+
+    @Test
+    public void create_utf8_string() {
+        ByteArray array = new ByteArray("\u00fcber");
+        Assertions.assertEquals(5, array.length());
+        Assertions.assertEquals(0xc3, array.at(0));
+        Assertions.assertEquals(-1, array.at(5));
+        Assertions.assertFalse(array.isAscii());
+        Assertions.assertTrue(array.substringFrom(2).isAscii());
+        Assertions.assertEquals("\u00fcber", array.toString());
+        Assertions.assertEquals(new CharArray("\u00fcber"), array.decode());
+    }
+
+    @Test
+    public void create_from_nio_buffer_heap() {
+        ByteBuffer nioBuffer = ByteBuffer.wrap("foobar".getBytes(StandardCharsets.UTF_8), 2, 3);
+
+        ByteArray array = new ByteArray(nioBuffer);
+        Assertions.assertEquals(new ByteArray("oba"), array);
+        Assertions.assertSame(nioBuffer.array(), array.bytes);
+        Assertions.assertEquals(2, array.start);
+        Assertions.assertEquals(5, array.end);
+    }
+
+    @Test
+    public void create_from_nio_buffer_direct() {
+        ByteBuffer nioBuffer = ByteBuffer.allocateDirect(6).put("foobar".getBytes(StandardCharsets.UTF_8));
+        nioBuffer.position(2).limit(5);
+
+        ByteArray array = new ByteArray(nioBuffer);
+        Assertions.assertEquals(new ByteArray("oba"), array);
+        Assertions.assertEquals(0, array.start);
+        Assertions.assertEquals(3, array.end);
+        Assertions.assertEquals(2, nioBuffer.position());
+    }
+
+    @Test
+    public void startsWith() {
+        ByteArray array = new ByteArray("foobar");
+        Assertions.assertTrue(array.startsWith("foo".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertTrue(array.startsWith(new ByteArray("foobar")));
+        Assertions.assertTrue(array.startsWith((byte) 'f'));
+        Assertions.assertFalse(array.startsWith(new ByteArray("foobarbaz")));
+        Assertions.assertFalse(array.substringFrom(6).startsWith((byte) 'f'));
+    }
+
+    @Test
+    public void indexOf() {
+        ByteArray array = new ByteArray("/foo/bar//");
+        Assertions.assertEquals(0, array.indexOf((byte) '/'));
+        Assertions.assertEquals(4, array.indexOf((byte) '/', 1));
+        Assertions.assertEquals(-1, array.indexOf((byte) 'z'));
+        Assertions.assertEquals(10, array.indexOf((byte) 'z', 0, 10));
+        Assertions.assertEquals(8, array.indexOf("//".getBytes(StandardCharsets.UTF_8), 0, -1));
+        Assertions.assertEquals(-1, array.substringUntil(9).indexOf("//".getBytes(StandardCharsets.UTF_8), 0, -1));
+    }
+
+    @Test
+    public void commonPrefix() {
+        Assertions.assertEquals(3, new ByteArray("foobar").commonPrefix(new ByteArray("foobaz").substringUntil(3)));
+        Assertions.assertEquals(5, new ByteArray("foobar").commonPrefix(new ByteArray("foobaz")));
+        Assertions.assertEquals(0, new ByteArray("foo").commonPrefix(new ByteArray("bar")));
+    }
+
+    @Test
+    public void latin1Equals() {
+        char[] chars = "__foo__".toCharArray();
+        Assertions.assertTrue(new ByteArray("foo").latin1Equals(chars, 2, 5));
+        Assertions.assertFalse(new ByteArray("fo").latin1Equals(chars, 2, 5));
+        Assertions.assertFalse(new ByteArray("fox").latin1Equals(chars, 2, 5));
+    }
+
+    @Test
+    public void encodedLength() {
+        Assertions.assertEquals(0, ByteArray.encodedLength("", 0, 0));
+        Assertions.assertEquals(3, ByteArray.encodedLength("foo", 0, 3));
+        Assertions.assertEquals(2, ByteArray.encodedLength("\u00fc", 0, 1));
+        Assertions.assertEquals(3, ByteArray.encodedLength("\u20ac", 0, 1));
+        Assertions.assertEquals(4, ByteArray.encodedLength("\ud83d\ude00", 0, 2));
+        Assertions.assertEquals(5, ByteArray.encodedLength("a\u00fcb\u00fc", 1, 4));
+    }
+
+    @Test
+    public void mutable_reset() {
+        MutableByteArray array = new MutableByteArray("foo");
+        array.offsetStart(1);
+        Assertions.assertEquals(new ByteArray("oo"), array);
+        array.reset(new ByteArray("barbaz").substring(3, 6));
+        Assertions.assertEquals(new ByteArray("baz"), array);
+        Assertions.assertFalse(array.immutable() instanceof MutableByteArray);
+        Assertions.assertEquals(array, array.immutableCopy());
+    }
+
+    @Test
+    public void swar_same_as_byte_loop() {
+        Random random = new Random(0);
+        for (int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length + 8];
+            for (int i = 0; i < bytes.length; i++) {
+                // Rare separators, non-ASCII bytes and `.` (differs from `/` by the lowest bit, so the borrow hits it)
+                int kind = random.nextInt(32);
+                bytes[i] = (byte) (kind == 0 ? '/' : kind == 1 ? 0x80 | random.nextInt(128) : kind == 2 ? '.' : 'a');
+            }
+            int from = random.nextInt(8);
+            ByteArray array = new ByteArray(bytes, from, from + length);
+            int expected = -1;
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                expected = expected < 0 && bytes[from + i] == '/' ? i : expected;
+                ascii &= bytes[from + i] >= 0;
+            }
+            Assertions.assertEquals(expected, array.indexOf((byte) '/'));
+            Assertions.assertEquals(ascii, array.isAscii());
+            Assertions.assertEquals(Arrays.hashCode(Arrays.copyOfRange(bytes, from, from + length)), array.hashCode());
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package io.routekit.util;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 
 import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Random;
 
 public class CharArrayTest {
     @Test
@@ -46,6 +49,34 @@ public class CharArrayTest {
         Assertions.assertEquals(5, array.end);
     }
 
+    @Test
+    public void create_from_nio_buffer_sliced() {
+        CharBuffer nioBuffer = CharBuffer.wrap("foobar".toCharArray(), 1, 4).slice().position(1);
+
+        CharArray array = new CharArray(nioBuffer);
+        Assertions.assertEquals(new CharArray("oba"), array);
+        Assertions.assertArrayEquals("foobar".toCharArray(), array.chars);
+        Assertions.assertEquals(2, array.start);
+        Assertions.assertEquals(5, array.end);
+    }
+
+    @Test
+    public void create_from_char_sequence() {
+        Assertions.assertEquals(new CharArray("foo"), new CharArray((CharSequence) "foo"));
+        Assertions.assertEquals(new CharArray("foo"), new CharArray(new StringBuilder("foo")));
+        Assertions.assertEquals(new CharArray("foo"), new CharArray(new StringBuffer("foo")));
+        Assertions.assertEquals(new CharArray("foo"), new CharArray((CharSequence) CharBuffer.wrap("foo")));
+    }
+
+    @Test
+    public void getChars_char_sequence() {
+        char[] dst = "______".toCharArray();
+        CharArray.getChars(new StringBuilder("foobar"), 1, 3, dst, 2);
+        Assertions.assertEquals("__oo__", new String(dst));
+        CharArray.getChars(CharBuffer.wrap("foobar").position(3), 0, 2, dst, 0);
+        Assertions.assertEquals("baoo__", new String(dst));
+    }
+
     @Test
     public void equals_and_hashCode() {
         assertEqualsHashCode(new CharArray(""), new CharArray(""));
@@ -56,6 +87,24 @@ public class CharArrayTest {
         assertEqualsHashCode(new CharArray("foo"), new CharArray("foo"));
         assertEqualsHashCode(new CharArray("foo"), new CharArray("foobar", 0, 3));
         assertEqualsHashCode(new CharArray("foo"), new CharArray("barfoo", 3, 6));
+        assertEqualsHashCode(new CharArray("foo"), new MutableCharArray("barfoo", 3, 6));
+    }
+
+    @Test
+    public void contentEquals() {
+        char[] chars = "foobar".toCharArray();
+        Assertions.assertTrue(new CharArray("foo").contentEquals(chars, 0, 3));
+        Assertions.assertTrue(new CharArray("barfoo", 0, 3).contentEquals(chars, 3, 6));
+        Assertions.assertTrue(new CharArray("").contentEquals(chars, 2, 2));
+        Assertions.assertFalse(new CharArray("foo").contentEquals(chars, 0, 4));
+        Assertions.assertFalse(new CharArray("foo").contentEquals(chars, 3, 6));
+    }
+
+    @Test
+    public void getChars() {
+        char[] dst = "______".toCharArray();
+        new CharArray("foobar", 1, 5).getChars(1, 3, dst, 2);
+        Assertions.assertEquals("__ob__", new String(dst));
     }
 
     @Test
@@ -521,6 +570,38 @@ public class CharArrayTest {
         Assertions.assertArrayEquals(new int[]{ 111, 111 }, array);
     }
 
+    @Test
+    public void scan_chosen_by_vector_module() {
+        if (!hasVectorModule()) {
+            Assertions.assertSame(CharScan.SCALAR, CharScan.INSTANCE);  // the `testScalar` run
+        }
+    }
+
+    @Test
+    public void vector_scan_same_as_scalar() {
+        Assumptions.assumeTrue(hasVectorModule(), "Run without the vector module");
+        CharScan vector = new VectorCharScan();
+        Random random = new Random(0);
+        for (int length = 0; length < 300; length++) {
+            char[] chars = new char[length + 8];
+            for (int i = 0; i < chars.length; i++) {
+                // Rare separators and the chars above 0x7fff (sign extension)
+                chars[i] = random.nextInt(64) == 0 ? '/' : (char) (random.nextBoolean() ? 'a' + random.nextInt(26) : 0xfff0);
+            }
+            int from = random.nextInt(8);
+            int to = from + length;
+            Assertions.assertEquals(CharScan.SCALAR.indexOf(chars, from, to, '/'), vector.indexOf(chars, from, to, '/'));
+            Assertions.assertEquals(CharScan.SCALAR.indexOfAny(chars, from, to, '/', 'z'),
+                                    vector.indexOfAny(chars, from, to, '/', 'z'));
+            Assertions.assertEquals(CharScan.SCALAR.hash(chars, from, to), vector.hash(chars, from, to));
+            Assertions.assertEquals(Arrays.hashCode(Arrays.copyOfRange(chars, from, to)), vector.hash(chars, from, to));
+        }
+    }
+
+    private static boolean hasVectorModule() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
     private static void assertEqualsHashCode(CharArray lhs, CharArray rhs) {
         Assertions.assertEquals(lhs, rhs);
         Assertions.assertEquals(lhs.hashCode(), rhs.hashCode());
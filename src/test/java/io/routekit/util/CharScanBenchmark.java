@@ -0,0 +1,54 @@
+package io.routekit.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scalar vs SIMD char scanning (see {@link CharScan}) of the short and long inputs: the separator search
+ * of the variable token (the separator is the last char), the search of either of two chars and the hash.
+ * The forked JVM adds the {@code jdk.incubator.vector} module, otherwise the vector scan isn't available.
+ */
+@Fork(value = 1, warmups = 1, jvmArgsAppend = { "--add-modules=jdk.incubator.vector" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 4, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class CharScanBenchmark {
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+        @Param({ "8", "256" })
+        private int length = 0;
+        @Param({ "scalar", "vector" })
+        private String scan = "";
+        private CharScan impl;
+        private char[] chars;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            impl = scan.equals("vector") ? CharScan.INSTANCE : CharScan.SCALAR;
+            if (scan.equals("vector") && impl == CharScan.SCALAR) {
+                throw new IllegalStateException("The vector char scan is not supported");
+            }
+            chars = new char[length];
+            Arrays.fill(chars, 'a');
+            chars[length - 1] = '/';
+        }
+    }
+
+    @Benchmark
+    public int index_of(ExecutionPlan plan) {
+        return plan.impl.indexOf(plan.chars, 0, plan.chars.length, '/');
+    }
+
+    @Benchmark
+    public int index_of_any(ExecutionPlan plan) {
+        return plan.impl.indexOfAny(plan.chars, 0, plan.chars.length, '/', '?');
+    }
+
+    @Benchmark
+    public int hash(ExecutionPlan plan) {
+        return plan.impl.hash(plan.chars, 0, plan.chars.length);
+    }
+}
@@ -140,6 +140,23 @@ public class MutableCharArrayTest {
         Assertions.assertEquals("foobar", array.toString());
     }
 
+    @Test
+    public void reset_other_buffer() {
+        MutableCharArray array = new MutableCharArray("foo");
+        CharArray other = new CharArray("barbaz", 1, 4);
+
+        array.reset(other);
+        Assertions.assertEquals("arb", array.toString());
+        Assertions.assertSame(other.chars, array.chars);
+
+        array.offsetStart(1);
+        Assertions.assertEquals("rb", array.toString());
+        Assertions.assertEquals("arb", other.toString());
+
+        array.reset("foobar".toCharArray(), 3, 6);
+        Assertions.assertEquals("bar", array.toString());
+    }
+
     @Test
     public void join_same_buffer() {
         MutableCharArray foobar = new MutableCharArray("foobar");
@@ -171,4 +188,28 @@ public class MutableCharArrayTest {
         Assertions.assertNotSame(foobar.chars, MutableCharArray.join(foo, bar.mutable()).chars);
         Assertions.assertNotSame(foobar.chars, MutableCharArray.join(foo.mutable(), bar.mutable()).chars);
     }
+
+    @Test
+    public void hashCode_same_as_immutable() {
+        char[] chars = "/api/v1/users/123".toCharArray();
+        MutableCharArray array = new MutableCharArray(chars, 0, 4);
+        Assertions.assertEquals(new CharArray("/api").hashCode(), array.hashCode());
+
+        array.resetEnd();
+        Assertions.assertEquals(new CharArray("/api/v1/users/123").hashCode(), array.hashCode());
+
+        array.offsetEnd(4);
+        Assertions.assertEquals(new CharArray("/api/v1/users").hashCode(), array.hashCode());
+
+        array.offsetStart(4);
+        Assertions.assertEquals(new CharArray("/v1/users").hashCode(), array.hashCode());
+
+        // The buffer refilled in place
+        "/foo/bar".getChars(0, 8, chars, 0);
+        array.reset(chars, 0, 8);
+        Assertions.assertEquals(new CharArray("/foo/bar").hashCode(), array.hashCode());
+        "/baz/qux".getChars(0, 8, chars, 0);  // no reset
+        Assertions.assertEquals(new CharArray("/baz/qux").hashCode(), array.hashCode());
+        Assertions.assertEquals(array, new CharArray("/baz/qux"));
+    }
 }
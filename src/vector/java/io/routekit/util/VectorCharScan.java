@@ -0,0 +1,85 @@
+package io.routekit.util;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The SIMD char scanning with the {@code jdk.incubator.vector} API: the chars are compared a vector at a time,
+ * the tail shorter than a vector is scanned by the scalar loop. Loaded by {@link CharScan} only if the module
+ * is present, so that the rest of the library doesn't depend on it.
+ * <p>
+ * The hash is the same polynomial as {@link java.util.Arrays#hashCode(char[])}: each vector of chars is widened
+ * to ints and multiplied by the powers of 31, so the hash of the {@code n} lanes is {@code h * 31^n + sum}.
+ */
+/*package*/ final class VectorCharScan extends CharScan {
+    private static final VectorSpecies<Short> CHARS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // Same number of lanes as INTS: the chars are widened to ints
+    private static final VectorSpecies<Short> HASH_CHARS =
+            VectorSpecies.of(short.class, VectorShape.forBitSize(INTS.vectorBitSize() / 2));
+    private static final int MIN_LANES = 8;
+
+    private final IntVector powers;  // 31^(n-1), ..., 31, 1
+    private final int factor;        // 31^n
+
+    public VectorCharScan() {
+        int[] array = new int[INTS.length()];
+        int power = 1;
+        for (int i = array.length - 1; i >= 0; i--) {
+            array[i] = power;
+            power *= 31;
+        }
+        powers = IntVector.fromArray(INTS, array, 0);
+        factor = power;
+    }
+
+    @Override
+    /*package*/ boolean isSupported() {
+        return CHARS.length() >= MIN_LANES && INTS.length() >= MIN_LANES;
+    }
+
+    @Override
+    public int indexOf(char[] chars, int from, int to, char ch) {
+        int i = from;
+        for (int bound = to - CHARS.length(); i <= bound; i += CHARS.length()) {
+            VectorMask<Short> found = ShortVector.fromCharArray(CHARS, chars, i).eq((short) ch);
+            if (found.anyTrue()) {
+                return i + found.firstTrue();
+            }
+        }
+        return SCALAR.indexOf(chars, i, to, ch);
+    }
+
+    @Override
+    public int indexOfAny(char[] chars, int from, int to, char ch1, char ch2) {
+        int i = from;
+        for (int bound = to - CHARS.length(); i <= bound; i += CHARS.length()) {
+            ShortVector vector = ShortVector.fromCharArray(CHARS, chars, i);
+            VectorMask<Short> found = vector.eq((short) ch1).or(vector.eq((short) ch2));
+            if (found.anyTrue()) {
+                return i + found.firstTrue();
+            }
+        }
+        return SCALAR.indexOfAny(chars, i, to, ch1, ch2);
+    }
+
+    @Override
+    public int hash(char[] chars, int from, int to) {
+        int result = 1;
+        int i = from;
+        for (int bound = to - HASH_CHARS.length(); i <= bound; i += HASH_CHARS.length()) {
+            IntVector ints = (IntVector) ShortVector.fromCharArray(HASH_CHARS, chars, i)
+                    .convertShape(VectorOperators.S2I, INTS, 0);
+            // The chars are unsigned: undo the sign extension
+            result = result * factor + ints.and(0xffff).mul(powers).reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < to; ++i) {
+            result = 31 * result + chars[i];
+        }
+        return result;
+    }
+}